@@ -0,0 +1,214 @@
+import javax.swing.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * AsyncDBService runs database work on a small pool of background threads so the Swing
+ * event dispatch thread never waits on SQLite. Results, failures and progress messages
+ * are handed back to the event dispatch thread through a Callback.
+ * <pre>
+ * service.submit(task -&gt; dbHelper.countCars(null), count -&gt; label.setText(count + " cars"));
+ * </pre>
+ */
+class AsyncDBService implements AutoCloseable {
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a service with one worker thread per pooled database connection.
+     */
+    AsyncDBService() {
+        this(CarInventoryDBHelper.DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param threads the number of worker threads
+     */
+    AsyncDBService(int threads) {
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "db-worker-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true); // Never keep the application alive after the window closes
+            return thread;
+        });
+    }
+
+    /**
+     * Database work to run in the background.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    interface Work<T> {
+        /**
+         * @param task the running task, for reporting progress and checking for cancellation
+         * @return the result handed to the callback
+         * @throws Exception if the work fails
+         */
+        T run(Task<?> task) throws Exception;
+    }
+
+    /**
+     * Receives the outcome of a task on the event dispatch thread.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    interface Callback<T> {
+        /**
+         * Called with the result once the work has finished.
+         *
+         * @param result the value returned by the work
+         */
+        void done(T result);
+
+        /**
+         * Called if the work threw, or with a CancellationException if the task was cancelled before it started.
+         *
+         * @param e the failure
+         */
+        default void failed(Exception e) {
+            e.printStackTrace();
+        }
+
+        /**
+         * Called with the latest progress message. Messages sent faster than the
+         * event dispatch thread can show them are coalesced.
+         *
+         * @param message the progress message
+         */
+        default void progress(String message) {
+        }
+    }
+
+    /**
+     * Runs work in the background.
+     *
+     * @param work the database work
+     * @param callback receives the outcome on the event dispatch thread
+     * @param <T> the type of the result
+     * @return the task, which can be cancelled
+     */
+    <T> Task<T> submit(Work<T> work, Callback<? super T> callback) {
+        Task<T> task = new Task<>(callback);
+        try {
+            executor.execute(() -> task.execute(work));
+        } catch (RejectedExecutionException e) {
+            task.cancel(); // Shut down: the callback is told the task was cancelled before it started
+            task.execute(work);
+        }
+        return task;
+    }
+
+    /**
+     * Stops accepting work without waiting for running tasks. Work submitted afterwards is
+     * cancelled before it starts.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the work submitted before shutdown to finish. Call it off the event dispatch thread.
+     *
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return true if all work finished, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Stops accepting work and waits briefly for running tasks to finish.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Task is one submitted piece of work.
+     *
+     * @param <T> the type of the result
+     */
+    static class Task<T> {
+        private final Callback<? super T> callback;
+        private final AtomicReference<String> pendingProgress = new AtomicReference<>();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+
+        private Task(Callback<? super T> callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * Asks the task to stop. Work that has not started is skipped and the callback's failed
+         * method receives a CancellationException; running work stops early the next time it
+         * checks isCancelled(), and whatever it returns is still passed to done.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * @return true if cancel() has been called
+         */
+        boolean isCancelled() { return cancelled; }
+
+        /**
+         * @return true once the callback has been notified
+         */
+        boolean isDone() { return done; }
+
+        /**
+         * Reports progress from the work. Safe to call at any rate.
+         *
+         * @param message the progress message
+         */
+        void progress(String message) {
+            if (pendingProgress.getAndSet(message) == null) {
+                SwingUtilities.invokeLater(() -> {
+                    String latest = pendingProgress.getAndSet(null);
+                    if (latest != null && !done) {
+                        callback.progress(latest);
+                    }
+                });
+            }
+        }
+
+        private void execute(Work<T> work) {
+            Exception failure = null;
+            T result = null;
+            try {
+                if (cancelled) {
+                    throw new CancellationException("Cancelled before it started");
+                }
+                result = work.run(this);
+            } catch (Exception e) {
+                failure = e;
+            }
+            Exception error = failure;
+            T value = result;
+            SwingUtilities.invokeLater(() -> {
+                done = true;
+                if (error != null) {
+                    callback.failed(error);
+                } else {
+                    callback.done(value);
+                }
+            });
+        }
+    }
+}
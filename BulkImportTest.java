@@ -0,0 +1,105 @@
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkImportTest {
+    private Path dir;
+    private String feed;
+    private CarInventoryDBHelper db;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("bulk-import-test");
+        db = (CarInventoryDBHelper) InventoryStores.open("sqlite:" + dir.resolve("cars.db"));
+        feed = writeFeed(100, 10).toString();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        db.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Writes a feed whose every {@code malformedEvery}th line has a price that is not a number.
+     * The good lines are numbered in their model names, e.g. "Model 11".
+     */
+    private Path writeFeed(int lines, int malformedEvery) throws IOException {
+        Path path = dir.resolve("feed.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (int line = 1; line <= lines; line++) {
+                writer.write(line % malformedEvery == 0
+                        ? "2020, Toyota, Corolla, call for price"
+                        : "2020, Toyota, Model " + line + ", " + (10000 + line) + ", Bluetooth");
+                writer.write('\n');
+            }
+        }
+        return path;
+    }
+
+    @Test
+    void testImportSkipsMalformedLines() {
+        CarInventoryDBHelper.ImportResult result = db.importCarsFromFile(feed, 10, 30);
+
+        assertTrue(result.isSuccessful(), result.toString());
+        assertFalse(result.isCancelled());
+        assertEquals(90, result.getImported());
+        assertEquals(90, db.countCars(null));
+        assertEquals(10, result.getRejected());
+        List<Integer> lineNumbers = new ArrayList<>();
+        for (CarFeedReader.LineError error : result.getRejectedLines()) {
+            lineNumbers.add(error.getLineNumber());
+        }
+        assertEquals(List.of(10, 20, 30, 40, 50, 60, 70, 80, 90, 100), lineNumbers);
+    }
+
+    @Test
+    void testCancelledImportKeepsOnlyCommittedRows() {
+        List<Long> progress = new ArrayList<>();
+        CarInventoryDBHelper.ImportResult result = db.importCarsFromFile(feed, 10, 30, (written, rejected) -> {
+            progress.add(written);
+            progress.add(rejected);
+            return written < 50;
+        });
+
+        assertTrue(result.isCancelled());
+        assertEquals(List.of(10L, 1L, 20L, 2L, 30L, 3L, 40L, 4L, 50L, 5L), progress,
+                "The listener should hear of the rows and rejected lines after each batch.");
+        assertEquals(30, result.getImported(), "The 20 rows written after the last commit are rolled back.");
+        assertEquals(30, db.countCars(null));
+        assertEquals(5, result.getRejected(), "Only the lines read before the cancel are counted.");
+        assertEquals(5, result.getRejectedLines().size());
+
+        List<String> models = new ArrayList<>();
+        db.forEachCar(null, car -> models.add(car.getModel()));
+        assertEquals("Model 1", models.get(0));
+        assertEquals("Model 33", models.get(29), "The first 30 good lines, in file order, are kept.");
+    }
+
+    @Test
+    void testCancelledSourceImportKeepsOnlyCommittedRows() {
+        int[] supplied = {0};
+        CarInventoryDBHelper.CarSource source = () -> supplied[0] < 1000
+                ? new Car(2021, "Honda", "Civic " + supplied[0]++, 20000, "Navigation")
+                : null;
+        CarInventoryDBHelper.ImportResult result = db.importCars(source, 25, 100, (written, rejected) -> written < 250);
+
+        assertTrue(result.isCancelled());
+        assertEquals(200, result.getImported());
+        assertEquals(200, db.countCars(null));
+        assertEquals(0, result.getRejected());
+        assertEquals(250, supplied[0], "The import should stop at the batch the listener cancels.");
+    }
+}
@@ -0,0 +1,463 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * CarCache sits between the GUI and its InventoryStore.
+ * <ul>
+ * <li>Reads are read-through: cars by id, row counts and pages are kept in LRU maps, so showing
+ *     an unchanged lot again does not touch the store. Cached query results expire after
+ *     a time-to-live, so changes made by other terminals show up eventually.</li>
+ * <li>Price and feature updates are write-behind: they change the cached car at once and are
+ *     queued, repeated updates of the same car coalesce into one row, and the queue is written
+ *     in one batch on a timer, when it reaches a size threshold, before any query that
+ *     has to go to the store, and when the store is disconnected or the cache closed.</li>
+ * <li>Adds, removals, purchases and imports go straight to the store.</li>
+ * <li>The cache follows the store's InventoryChangeFeed and applies what the store published
+ *     before answering: an update patches the cached car, a removal or sale evicts it, and any
+ *     change drops the cached query results. So changes made through the store by other code in
+ *     this process, such as a feed sync, show at once rather than when the results expire.</li>
+ * </ul>
+ * The cache is thread-safe; store calls are made outside its lock.
+ */
+class CarCache implements AutoCloseable {
+    /** Default number of cars kept by id. */
+    static final int DEFAULT_MAX_CARS = 10_000;
+    /** Default number of query results (counts and pages) kept. */
+    static final int DEFAULT_MAX_QUERIES = 128;
+    /** Default time between background flushes. */
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 2000;
+    /** Default number of pending updates that triggers a flush right away. */
+    static final int DEFAULT_FLUSH_THRESHOLD = 500;
+    /** Default lifetime of a cached query result. */
+    static final long DEFAULT_QUERY_TTL_MILLIS = 60_000;
+
+    private final InventoryStore store;
+    private final int flushThreshold;
+    private final long queryTtlNanos;
+    private final Map<Integer, Car> cars;
+    private final Map<String, CachedResult> queries;
+    private Map<Integer, Car> pending = new LinkedHashMap<>(); // Updates not yet written, newest value per id
+    private long generation; // Bumped by every write so results loaded before it are not cached
+    private final Object flushLock = new Object(); // Serializes flushes so updates reach the store in order
+    private final ScheduledExecutorService flusher;
+    private final InventoryChangeFeed.Subscription changes; // Polled under the cache's lock
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private volatile long maxFlushNanos;
+
+    /**
+     * Creates a cache with the default sizes and timings.
+     *
+     * @param store the store to cache
+     */
+    CarCache(InventoryStore store) {
+        this(store, DEFAULT_MAX_CARS, DEFAULT_MAX_QUERIES, DEFAULT_FLUSH_INTERVAL_MILLIS,
+                DEFAULT_FLUSH_THRESHOLD, DEFAULT_QUERY_TTL_MILLIS);
+    }
+
+    /**
+     * @param store the store to cache
+     * @param maxCars the number of cars kept by id
+     * @param maxQueries the number of query results kept
+     * @param flushIntervalMillis the time between background flushes
+     * @param flushThreshold the number of pending updates that triggers a flush right away
+     * @param queryTtlMillis the lifetime of a cached query result
+     */
+    CarCache(InventoryStore store, int maxCars, int maxQueries, long flushIntervalMillis,
+             int flushThreshold, long queryTtlMillis) {
+        this.store = store;
+        this.flushThreshold = flushThreshold;
+        this.queryTtlNanos = TimeUnit.MILLISECONDS.toNanos(queryTtlMillis);
+        this.cars = lru(maxCars);
+        this.queries = lru(maxQueries);
+        this.changes = store.getChangeFeed().subscribe();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "car-cache-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (store instanceof CarInventoryDBHelper) {
+            // The database can be disconnected and reopened underneath the cache
+            ((CarInventoryDBHelper) store).addDisconnectHook(this::flush);
+        }
+    }
+
+    private static <K, V> Map<K, V> lru(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Looks up a car, from the cache if possible.
+     *
+     * @param id the ID of the car
+     * @return the car, including any pending update, or empty if there is no such car
+     */
+    Optional<Car> getCar(int id) {
+        long loadedAt;
+        synchronized (this) {
+            catchUp();
+            Car car = cars.get(id);
+            if (car != null) {
+                hits.increment();
+                return Optional.of(car);
+            }
+            misses.increment();
+            loadedAt = generation;
+        }
+        Optional<Car> loaded = store.getCar(id);
+        synchronized (this) {
+            if (loaded.isPresent()) {
+                Car car = loaded.get();
+                Car update = pending.get(id);
+                if (update != null) {
+                    car.setPrice(update.getPrice());
+                    car.setFeatures(update.getFeatures());
+                }
+                if (loadedAt == generation) {
+                    cars.put(id, car);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Counts the cars matching a query, from the cache if possible.
+     *
+     * @param query the search criteria, or null for every car
+     * @return the number of matching cars, or -1 on error
+     * @see InventoryStore#countCars(CarQuery)
+     */
+    long countCars(CarQuery query) {
+        Long count = (Long) cachedQuery("count " + query, () -> {
+            long n = store.countCars(query);
+            return n < 0 ? null : n;
+        });
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * Returns a keyset page of cars, from the cache if possible.
+     *
+     * @see InventoryStore#getCarsPage(CarQuery, int, int, Set)
+     */
+    @SuppressWarnings("unchecked")
+    List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns) {
+        return (List<Car>) cachedQuery("page " + query + " after=" + afterId + " limit=" + limit + " " + columns,
+                () -> Collections.unmodifiableList(store.getCarsPage(query, afterId, limit, columns)));
+    }
+
+    /**
+     * Returns a sorted window of cars, from the cache if possible.
+     *
+     * @see InventoryStore#getCarsSorted(CarQuery, CarColumn, boolean, long, int, Set)
+     */
+    @SuppressWarnings("unchecked")
+    List<Car> getCarsSorted(CarQuery query, CarColumn sortBy, boolean ascending, long offset, int limit,
+                            Set<CarColumn> columns) {
+        return (List<Car>) cachedQuery("sorted " + query + " by=" + sortBy + " asc=" + ascending
+                        + " offset=" + offset + " limit=" + limit + " " + columns,
+                () -> Collections.unmodifiableList(store.getCarsSorted(query, sortBy, ascending, offset, limit, columns)));
+    }
+
+    /**
+     * Returns a cached query result, or flushes pending updates, runs the query and caches its result.
+     * A loader returns null for a failed query, which is not cached.
+     */
+    private Object cachedQuery(String key, Supplier<Object> loader) {
+        long loadedAt;
+        synchronized (this) {
+            catchUp();
+            CachedResult cached = queries.get(key);
+            if (cached != null && System.nanoTime() - cached.loadedAtNanos < queryTtlNanos) {
+                hits.increment();
+                return cached.value;
+            }
+            misses.increment();
+        }
+        flush(); // The store must see every update before it answers a query
+        synchronized (this) {
+            catchUp(); // Takes in the flush's own changes, which would otherwise drop the result below
+            loadedAt = generation;
+        }
+        Object value = loader.get();
+        synchronized (this) {
+            if (value != null && loadedAt == generation) {
+                queries.put(key, new CachedResult(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Updates the price and features of a car. The cached car changes at once; the store is written
+     * by the next flush, and further updates of the same car before then replace this one.
+     *
+     * @param id the ID of the car to update
+     * @param price the new price
+     * @param features the new features
+     */
+    void updateCar(int id, float price, String features) {
+        boolean flushNow;
+        synchronized (this) {
+            Car car = cars.get(id);
+            if (car != null) {
+                car.setPrice(price);
+                car.setFeatures(features);
+            }
+            Car update = new Car(0, null, null, price, features); // Only the id, price and features are written
+            update.setId(id);
+            pending.put(id, update);
+            invalidateQueries();
+            flushNow = pending.size() >= flushThreshold;
+        }
+        if (flushNow) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Adds a car; written through to the store.
+     *
+     * @see InventoryStore#addCar(Car)
+     */
+    boolean addCar(int year, String make, String model, float price, String features) {
+        return store.addCar(new Car(year, make, model, price, features));
+    }
+
+    /**
+     * Removes a car; written through to the store after any pending updates.
+     *
+     * @param id the ID of the car to remove
+     * @return true if the car was removed
+     */
+    boolean removeCar(int id) {
+        flush();
+        return store.removeCar(id);
+    }
+
+    /**
+     * Buys a car; pending updates are written first so the purchase sees the price the buyer was quoted.
+     *
+     * @see InventoryStore#purchaseCar(int, PricingEngine.Quote)
+     */
+    InventoryStore.PurchaseResult purchaseCar(int id, PricingEngine.Quote quote) {
+        flush();
+        InventoryStore.PurchaseResult result = store.purchaseCar(id, quote);
+        if (result != InventoryStore.PurchaseResult.SOLD) {
+            invalidate(); // Another terminal sold or repriced the car, and the feed only knows this process's changes
+        }
+        return result;
+    }
+
+    /**
+     * Forgets every cached car and query result, e.g. when another terminal may have changed the
+     * database. Pending updates are kept.
+     */
+    synchronized void invalidate() {
+        cars.clear();
+        invalidateQueries();
+    }
+
+    private void invalidateQueries() {
+        generation++;
+        queries.clear();
+    }
+
+    /**
+     * Applies the changes the store published since the last call. Called with the cache's lock held.
+     */
+    private void catchUp() {
+        changes.poll(Integer.MAX_VALUE, this::apply);
+    }
+
+    private void apply(InventoryChangeFeed.Change change) {
+        int id = change.getCarId();
+        switch (change.getKind()) {
+            case UPDATED:
+                Car car = cars.get(id);
+                if (car != null && !pending.containsKey(id)) { // A pending update is newer than the store's
+                    car.setPrice(change.getPrice());
+                    car.setFeatures(change.getFeatures());
+                }
+                break;
+            case REMOVED:
+            case SOLD:
+                cars.remove(id);
+                break;
+            case RELOADED:
+                cars.clear();
+                break;
+            default: // An added car is not cached yet
+                break;
+        }
+        invalidateQueries();
+    }
+
+    /**
+     * Writes every pending update to the store in one batch. If the write fails the
+     * updates stay queued, unless a newer update of the same car has been queued meanwhile.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            Map<Integer, Car> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            long start = System.nanoTime();
+            boolean written = store.updateCars(batch.values());
+            long elapsed = System.nanoTime() - start;
+            if (written) {
+                flushes.increment();
+                flushedRows.add(batch.size());
+                flushNanos.add(elapsed);
+                maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            } else {
+                synchronized (this) {
+                    for (Map.Entry<Integer, Car> entry : batch.entrySet()) {
+                        pending.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the cache's hit rate and flush metrics
+     */
+    Stats getStats() {
+        int queued;
+        synchronized (this) {
+            queued = pending.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), flushes.sum(), flushedRows.sum(),
+                flushNanos.sum(), maxFlushNanos, queued);
+    }
+
+    /**
+     * Stops the background flushes and writes any pending updates.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+        synchronized (this) {
+            changes.close();
+        }
+    }
+
+    /**
+     * A query result and when it was loaded.
+     */
+    private static class CachedResult {
+        private final Object value;
+        private final long loadedAtNanos;
+
+        private CachedResult(Object value, long loadedAtNanos) {
+            this.value = value;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+
+    /**
+     * Stats is a snapshot of the cache metrics.
+     */
+    static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long flushes;
+        private final long flushedRows;
+        private final long flushNanos;
+        private final long maxFlushNanos;
+        private final int pending;
+
+        private Stats(long hits, long misses, long flushes, long flushedRows, long flushNanos,
+                      long maxFlushNanos, int pending) {
+            this.hits = hits;
+            this.misses = misses;
+            this.flushes = flushes;
+            this.flushedRows = flushedRows;
+            this.flushNanos = flushNanos;
+            this.maxFlushNanos = maxFlushNanos;
+            this.pending = pending;
+        }
+
+        /**
+         * @return the number of lookups answered from the cache
+         */
+        long getHits() { return hits; }
+
+        /**
+         * @return the number of lookups that went to the store
+         */
+        long getMisses() { return misses; }
+
+        /**
+         * @return the share of lookups answered from the cache, between 0 and 1
+         */
+        double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        /**
+         * @return the number of successful flushes
+         */
+        long getFlushes() { return flushes; }
+
+        /**
+         * @return the number of rows written by flushes
+         */
+        long getFlushedRows() { return flushedRows; }
+
+        /**
+         * @return the average time of a successful flush in milliseconds
+         */
+        double getAverageFlushMillis() {
+            return flushes == 0 ? 0 : flushNanos / 1e6 / flushes;
+        }
+
+        /**
+         * @return the longest successful flush in milliseconds
+         */
+        double getMaxFlushMillis() { return maxFlushNanos / 1e6; }
+
+        /**
+         * @return the number of updates waiting to be written
+         */
+        int getPending() { return pending; }
+
+        /**
+         * @return the metrics on one line
+         */
+        @Override
+        public String toString() {
+            return String.format("cache hit rate %.0f%% (%d/%d), %d flushes of %d rows, flush avg %.1f ms max %.1f ms, %d pending",
+                    getHitRate() * 100, hits, hits + misses, flushes, flushedRows,
+                    getAverageFlushMillis(), getMaxFlushMillis(), pending);
+        }
+    }
+}
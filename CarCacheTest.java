@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarCacheTest {
+    private static final long NEVER = 3_600_000; // A flush interval no test waits for
+
+    private final List<List<Integer>> batches = new ArrayList<>();
+    private InventoryStore store;
+    private Car corolla;
+    private Car civic;
+
+    @BeforeEach
+    void setUp() {
+        store = new MemoryInventoryStore() {
+            @Override
+            public synchronized boolean updateCars(Collection<Car> cars) {
+                List<Integer> ids = new ArrayList<>();
+                for (Car car : cars) {
+                    ids.add(car.getId());
+                }
+                batches.add(ids);
+                return super.updateCars(cars);
+            }
+        };
+        corolla = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+        civic = new Car(2019, "Honda", "Civic", 20000, "Backup Camera");
+        store.addCar(corolla);
+        store.addCar(civic);
+    }
+
+    @Test
+    void testUpdatesAreWrittenBehindInOneBatch() {
+        try (CarCache cache = new CarCache(store, 100, 16, NEVER, 1000, NEVER)) {
+            cache.updateCar(corolla.getId(), 21000, "Bluetooth, Sunroof");
+            cache.updateCar(corolla.getId(), 20500, "Bluetooth, Sunroof, Heated Seats");
+            cache.updateCar(civic.getId(), 19000, "Backup Camera");
+
+            assertEquals(22000, store.getCar(corolla.getId()).get().getPrice(), 0.001, "The store is written by the flush.");
+            assertEquals(20500, cache.getCar(corolla.getId()).get().getPrice(), 0.001, "The cache shows the update at once.");
+            assertEquals(2, cache.getStats().getPending(), "Updates of the same car coalesce.");
+            assertTrue(batches.isEmpty());
+
+            store.removeCar(civic.getId()); // Another terminal removes the Civic before the flush
+            cache.flush();
+            assertEquals(List.of(List.of(corolla.getId(), civic.getId())), batches, "One batch, one row per car.");
+            Car written = store.getCar(corolla.getId()).get();
+            assertEquals(20500, written.getPrice(), 0.001, "The newest update wins.");
+            assertEquals("Bluetooth, Sunroof, Heated Seats", written.getFeatures());
+            assertTrue(store.getCar(civic.getId()).isEmpty());
+            assertEquals(0, cache.getStats().getPending(), "An update of a removed car is dropped, not retried.");
+
+            cache.flush();
+            assertEquals(1, batches.size(), "Nothing pending, nothing written.");
+        }
+    }
+
+    @Test
+    void testCloseFlushes() {
+        CarCache cache = new CarCache(store, 100, 16, NEVER, 1000, NEVER);
+        cache.updateCar(civic.getId(), 18500, "Backup Camera, Navigation");
+        cache.close();
+        assertEquals(List.of(List.of(civic.getId())), batches);
+        assertEquals(18500, store.getCar(civic.getId()).get().getPrice(), 0.001);
+    }
+
+    @Test
+    void testDisconnectFlushes() throws IOException {
+        Path dir = Files.createTempDirectory("car-cache-test");
+        try {
+            String dbPath = dir.resolve("cars.db").toString();
+            CarInventoryDBHelper db = (CarInventoryDBHelper) InventoryStores.open("sqlite:" + dbPath);
+            Car car = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+            db.addCar(car);
+            CarCache cache = new CarCache(db, 100, 16, NEVER, 1000, NEVER);
+            cache.updateCar(car.getId(), 19999, "Bluetooth, Sunroof");
+            db.disconnect(); // E.g. the GUI opening another database
+
+            assertTrue(db.connect(dbPath));
+            assertEquals(19999, db.getCar(car.getId()).get().getPrice(), 0.001, "The disconnect hook should flush.");
+            cache.close();
+            db.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * CarColumn names the columns of the cars table, so database queries can fetch
+ * only the columns a caller needs. The id is always fetched because paging is keyed on it.
+ */
+enum CarColumn {
+    ID("id"),
+    YEAR("year"),
+    MAKE("make"),
+    MODEL("model"),
+    PRICE("price"),
+    FEATURES("features"),
+    STATUS("status");
+
+    /** Every column of the table. */
+    static final Set<CarColumn> ALL = Collections.unmodifiableSet(EnumSet.allOf(CarColumn.class));
+    /** The columns shown in an inventory listing, i.e. everything except the features text. */
+    static final Set<CarColumn> SUMMARY =
+            Collections.unmodifiableSet(EnumSet.of(ID, YEAR, MAKE, MODEL, PRICE, STATUS));
+
+    private final String sqlName;
+
+    CarColumn(String sqlName) {
+        this.sqlName = sqlName;
+    }
+
+    /**
+     * @return the column name in the cars table
+     */
+    String getSqlName() { return sqlName; }
+}
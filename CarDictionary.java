@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CarDictionary is the load-time dictionary for the strings a feed repeats on every line.
+ * Makes and models are canonicalized, so every "Toyota" in the inventory is the same String.
+ * Feature lists are split into words ("Backup Camera, Heated Seats" gives backup, camera,
+ * heated and seats), each word gets an id in a shared vocabulary, and each distinct feature list
+ * becomes one shared FeatureSet holding its text and a bitset of its word ids. Asking whether a
+ * car has a feature is then a mask test instead of a string search.
+ * <p>
+ * Words are matched without case. A feature phrase with several words matches cars that have
+ * every one of them, in any order. The dictionary is safe to use from several threads, so the
+ * chunks of a parallel load share it. Each table stops growing at a fixed size so a feed full
+ * of unique strings cannot fill the heap; past that, strings are simply not shared.
+ */
+class CarDictionary {
+    /** Maximum number of canonical make and model strings. */
+    static final int MAX_STRINGS = 1 << 16;
+    /** Maximum number of feature words with an id, which bounds a FeatureSet at 64 longs. */
+    static final int MAX_WORDS = 4096;
+    /** Maximum number of distinct feature lists kept as shared FeatureSets. */
+    static final int MAX_FEATURE_SETS = 1 << 16;
+
+    private static final CarDictionary SHARED = new CarDictionary();
+    private static final long[] NO_BITS = new long[0];
+
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+    private final Map<String, Integer> wordIds = new ConcurrentHashMap<>(); // Keyed by the lower-case word
+    private final List<String> words = new ArrayList<>(); // Guarded by wordIds
+    private final Map<String, FeatureSet> featureSets = new ConcurrentHashMap<>();
+    private volatile int wordCount;
+
+    /**
+     * @return the dictionary used by feed loads and feature queries
+     */
+    static CarDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the canonical instance of a make or model string.
+     *
+     * @param value the string read from a feed, or null
+     * @return an equal string, shared with every other caller that asked for it
+     */
+    String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = strings.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (strings.size() >= MAX_STRINGS) {
+            return value;
+        }
+        existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * Returns the shared FeatureSet of a feature list, tokenizing it the first time it is seen.
+     *
+     * @param text the features of a car, or null
+     * @return the feature set; its text is the canonical instance of {@code text}
+     */
+    FeatureSet featureSet(String text) {
+        if (text == null) {
+            return FeatureSet.NONE;
+        }
+        FeatureSet set = featureSets.get(text);
+        if (set != null) {
+            return set;
+        }
+        set = tokenize(text);
+        if (featureSets.size() >= MAX_FEATURE_SETS) {
+            return set;
+        }
+        FeatureSet existing = featureSets.putIfAbsent(text, set);
+        return existing != null ? existing : set;
+    }
+
+    /**
+     * Compiles a feature phrase into a mask over the vocabulary.
+     *
+     * @param phrase one or more feature words, e.g. "Sunroof" or "Backup Camera"
+     * @return a filter matching feature sets that contain every word of the phrase
+     */
+    FeatureFilter filter(String phrase) {
+        List<String> phraseWords = words(phrase);
+        int count = wordCount;
+        long[] mask = NO_BITS;
+        for (String word : phraseWords) {
+            Integer id = wordIds.get(word);
+            if (id == null) {
+                return new FeatureFilter(this, null, phraseWords, count);
+            }
+            mask = setBit(mask, id);
+        }
+        return new FeatureFilter(this, mask, phraseWords, count);
+    }
+
+    /**
+     * @return the number of feature words with an id
+     */
+    int getVocabularySize() {
+        return wordCount;
+    }
+
+    /**
+     * @param id a word id
+     * @return the word as first seen in a feed, e.g. "Bluetooth"
+     */
+    String getWord(int id) {
+        synchronized (wordIds) {
+            return words.get(id);
+        }
+    }
+
+    /**
+     * Splits a feature list into lower-case words. Whitespace, commas, semicolons and slashes separate words.
+     *
+     * @param text a feature list or phrase, or null
+     * @return the words in order, duplicates included
+     */
+    static List<String> words(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || isSeparator(text.charAt(i))) {
+                if (start >= 0) {
+                    result.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || c == ',' || c == ';' || c == '/';
+    }
+
+    private FeatureSet tokenize(String text) {
+        long[] bits = NO_BITS;
+        boolean overflow = false;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || isSeparator(text.charAt(i))) {
+                if (start >= 0) {
+                    int id = wordId(text.substring(start, i));
+                    if (id < 0) {
+                        overflow = true;
+                    } else {
+                        bits = setBit(bits, id);
+                    }
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return new FeatureSet(text, bits, overflow);
+    }
+
+    /**
+     * @return the id of a word, assigning the next one if it is new, or -1 if the vocabulary is full
+     */
+    private int wordId(String word) {
+        String key = word.toLowerCase(Locale.ROOT);
+        Integer id = wordIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (wordIds) {
+            id = wordIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            if (words.size() >= MAX_WORDS) {
+                return -1;
+            }
+            words.add(word);
+            wordIds.put(key, words.size() - 1);
+            wordCount = words.size();
+            return words.size() - 1;
+        }
+    }
+
+    private static long[] setBit(long[] bits, int bit) {
+        int word = bit >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, word + 1);
+        }
+        bits[word] |= 1L << bit;
+        return bits;
+    }
+
+    /**
+     * FeatureSet is the tokenized form of one feature list, shared by every car with that exact text.
+     */
+    static final class FeatureSet {
+        /** The feature set of a car without features. */
+        static final FeatureSet NONE = new FeatureSet(null, NO_BITS, false);
+
+        private final String text;
+        private final long[] bits;
+        private final boolean overflow; // Some words arrived after the vocabulary was full
+
+        private FeatureSet(String text, long[] bits, boolean overflow) {
+            this.text = text;
+            this.bits = bits;
+            this.overflow = overflow;
+        }
+
+        /**
+         * @return the feature list this set was built from, or null
+         */
+        String getText() { return text; }
+
+        /**
+         * @param id a word id
+         * @return true if the feature list contains the word
+         */
+        boolean contains(int id) {
+            int word = id >>> 6;
+            return word < bits.length && (bits[word] & (1L << id)) != 0;
+        }
+
+        /**
+         * @param filter a compiled feature phrase
+         * @return true if this feature list contains every word of the phrase
+         */
+        boolean matches(FeatureFilter filter) {
+            long[] mask = filter.mask;
+            if (mask == null) {
+                // Some phrase word has no id, so only a list that overflowed the vocabulary can hold it
+                return overflow && words(text).containsAll(filter.words);
+            }
+            if (mask.length > bits.length) {
+                for (int i = bits.length; i < mask.length; i++) {
+                    if (mask[i] != 0) {
+                        return false;
+                    }
+                }
+            }
+            for (int i = 0; i < mask.length && i < bits.length; i++) {
+                if ((bits[i] & mask[i]) != mask[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * FeatureFilter is a feature phrase compiled against the vocabulary of one dictionary.
+     */
+    static final class FeatureFilter {
+        private final CarDictionary dictionary;
+        private final long[] mask; // Null if some word of the phrase had no id yet
+        private final List<String> words;
+        private final int vocabularySize;
+
+        private FeatureFilter(CarDictionary dictionary, long[] mask, List<String> words, int vocabularySize) {
+            this.dictionary = dictionary;
+            this.mask = mask;
+            this.words = words;
+            this.vocabularySize = vocabularySize;
+        }
+
+        /**
+         * A filter with an unknown word goes stale when the vocabulary grows, since the word may have an id now.
+         *
+         * @return true if the filter still reflects the dictionary
+         */
+        boolean isCurrent() {
+            return mask != null || dictionary.getVocabularySize() == vocabularySize;
+        }
+
+        /**
+         * @return the lower-case words of the phrase
+         */
+        List<String> getWords() { return words; }
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * CarIndex maintains secondary indexes over the cars in a CarInventory:
+ * hash indexes on make and on make plus model, sorted indexes on year and price,
+ * and the set of cars that are still available.
+ * It answers a CarQuery with the smallest candidate set it can find; the caller
+ * still checks each candidate against the full query.
+ */
+class CarIndex {
+    private final Map<String, Set<Integer>> byMake = new HashMap<>();
+    private final Map<String, Set<Integer>> byMakeModel = new HashMap<>();
+    private final NavigableMap<Integer, Set<Integer>> byYear = new TreeMap<>();
+    private final NavigableMap<Float, Set<Integer>> byPrice = new TreeMap<>();
+    private final Set<Integer> available = new HashSet<>();
+
+    /**
+     * Indexes a newly added car.
+     *
+     * @param car the car, which must already have its id
+     */
+    void add(Car car) {
+        int id = car.getId();
+        put(byMake, makeKey(car.getMake()), id);
+        put(byMakeModel, makeModelKey(car.getMake(), car.getModel()), id);
+        put(byYear, car.getYear(), id);
+        put(byPrice, car.getPrice(), id);
+        if (!car.isSold()) {
+            available.add(id);
+        }
+    }
+
+    /**
+     * Drops a removed car from every index.
+     *
+     * @param car the removed car
+     */
+    void remove(Car car) {
+        int id = car.getId();
+        delete(byMake, makeKey(car.getMake()), id);
+        delete(byMakeModel, makeModelKey(car.getMake(), car.getModel()), id);
+        delete(byYear, car.getYear(), id);
+        delete(byPrice, car.getPrice(), id);
+        available.remove(id);
+    }
+
+    /**
+     * Moves a car within the price index after its price changed.
+     *
+     * @param car the car, already carrying its new price
+     * @param oldPrice the price it was indexed under
+     */
+    void priceChanged(Car car, float oldPrice) {
+        delete(byPrice, oldPrice, car.getId());
+        put(byPrice, car.getPrice(), car.getId());
+    }
+
+    /**
+     * Removes a sold car from the availability index.
+     *
+     * @param car the car that was sold
+     */
+    void sold(Car car) {
+        available.remove(car.getId());
+    }
+
+    /**
+     * Picks the most selective index for a query.
+     *
+     * @param query the query to plan
+     * @return the candidate ids, or null if no index helps and every car must be scanned
+     */
+    Collection<Integer> candidates(CarQuery query) {
+        Collection<Integer> best = null;
+        int bestSize = Integer.MAX_VALUE;
+        if (query.getMake() != null) {
+            Set<Integer> ids = query.getModel() != null
+                    ? byMakeModel.get(makeModelKey(query.getMake(), query.getModel()))
+                    : byMake.get(makeKey(query.getMake()));
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            best = ids;
+            bestSize = ids.size();
+        }
+        if (query.hasYearRange()) {
+            if (query.getMinYear() > query.getMaxYear()) {
+                return Collections.emptySet();
+            }
+            NavigableMap<Integer, Set<Integer>> range = byYear.subMap(query.getMinYear(), true, query.getMaxYear(), true);
+            int size = rangeSize(range, bestSize);
+            if (size < bestSize) {
+                best = flatten(range, size);
+                bestSize = size;
+            }
+        }
+        if (query.hasPriceRange()) {
+            if (query.getMinPrice() > query.getMaxPrice()) {
+                return Collections.emptySet();
+            }
+            NavigableMap<Float, Set<Integer>> range = byPrice.subMap(query.getMinPrice(), true, query.getMaxPrice(), true);
+            int size = rangeSize(range, bestSize);
+            if (size < bestSize) {
+                best = flatten(range, size);
+                bestSize = size;
+            }
+        }
+        if (query.isAvailableOnly() && available.size() < bestSize) {
+            best = available;
+        }
+        return best;
+    }
+
+    /**
+     * Counts the ids in a range, giving up as soon as the count reaches {@code limit}.
+     */
+    private static int rangeSize(Map<?, Set<Integer>> range, int limit) {
+        int size = 0;
+        for (Set<Integer> ids : range.values()) {
+            size += ids.size();
+            if (size >= limit) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    private static Collection<Integer> flatten(Map<?, Set<Integer>> range, int size) {
+        Collection<Integer> ids = new ArrayList<>(size);
+        for (Set<Integer> bucket : range.values()) {
+            ids.addAll(bucket);
+        }
+        return ids;
+    }
+
+    private static <K> void put(Map<K, Set<Integer>> index, K key, int id) {
+        index.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+    }
+
+    private static <K> void delete(Map<K, Set<Integer>> index, K key, int id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static String makeKey(String make) {
+        return String.valueOf(make).toLowerCase(Locale.ROOT);
+    }
+
+    private static String makeModelKey(String make, String model) {
+        return makeKey(make) + '\u0000' + String.valueOf(model).toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,24 +1,77 @@
 import javax.swing.*;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 /**
  * CarInventoryDBHelper provides database operations for car inventory management.
  * It connects to an SQLite database and provides CRUD functionality
  * including car purchase operations with tax and discount calculations.
+ * Database work runs on a small built-in connection pool whose connections cache their
+ * prepared statements, so one helper can be shared by several threads.
+ * It is the SQLite InventoryStore; closing it disconnects.
+ * Its operations are timed in the "sqlite" InventoryMetrics, and SQL errors are counted there.
+ * Every committed change is published on its InventoryChangeFeed.
  */
-public class CarInventoryDBHelper {
-    private Connection connection;
+public class CarInventoryDBHelper implements InventoryStore {
+    /** Number of rows sent to SQLite in a single JDBC batch during bulk imports. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /** Number of rows written between commits during bulk imports. */
+    public static final int DEFAULT_COMMIT_INTERVAL = 10_000;
+    /** Number of pooled connections opened for a database file. */
+    public static final int DEFAULT_POOL_SIZE = 4;
+    /** Number of rows read from the database at a time when streaming cars. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final InventoryMetrics METRICS = InventoryMetrics.forStore("sqlite");
+
+    private volatile SQLiteConnectionPool pool;
+    private volatile PricingEngine pricing = new PricingEngine();
+    private final SalesLedger salesLedger = new SalesLedger(this);
+    private final List<Runnable> disconnectHooks = new CopyOnWriteArrayList<>();
+    private volatile List<CarFeedReader.LineError> loadErrors = Collections.emptyList();
+    private final InventoryChangeFeed changes = new InventoryChangeFeed();
 
     /**
-     * Connects to the SQLite database using the specified file path.
+     * Connects to the SQLite database using the specified file path and the performance profile
+     * (WAL journal, NORMAL sync, memory-mapped reads).
      *
      * @param dbPath the path to the SQLite database file
      * @return true if the connection is successful, false otherwise
+     * @see SQLiteProfile#performance()
      */
     public boolean connect(String dbPath) {
+        return connect(dbPath, SQLiteProfile.performance());
+    }
+
+    /**
+     * Connects to the SQLite database using the specified file path and tuning profile.
+     * Unless the profile is read-only, the schema is upgraded in place to the latest version.
+     * Use SQLiteProfile.readOnly() for reporting replicas.
+     *
+     * @param dbPath the path to the SQLite database file
+     * @param profile the pragmas applied to every connection
+     * @return true if the connection is successful, false otherwise
+     */
+    public boolean connect(String dbPath, SQLiteProfile profile) {
         try {
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+            // Every connection to an in-memory database sees its own empty database, so share just one
+            boolean inMemory = dbPath != null && (dbPath.isEmpty() || dbPath.startsWith(":memory:"));
+            SQLiteConnectionPool opened = new SQLiteConnectionPool("jdbc:sqlite:" + dbPath, inMemory ? 1 : DEFAULT_POOL_SIZE, profile);
+            if (!profile.isReadOnly()) {
+                try (SQLiteConnectionPool.PooledConnection conn = opened.borrow()) {
+                    SchemaMigrator.migrate(conn.getConnection());
+                } catch (SQLException e) {
+                    opened.close();
+                    throw e;
+                }
+            }
+            pool = opened;
+            changes.reloaded(); // Another database, or this one as other terminals left it
             return true;
         } catch (Exception e) {
             System.out.println("Database connection error: " + e.getMessage());
@@ -27,16 +80,66 @@ public class CarInventoryDBHelper {
     }
 
     /**
-     * Disconnect from the SQLite database
+     * Registers work that must reach the database before it is disconnected,
+     * such as a write-behind cache flushing its pending updates.
+     *
+     * @param hook run by disconnect while the connection is still open
+     */
+    void addDisconnectHook(Runnable hook) {
+        disconnectHooks.add(hook);
+    }
+
+    /**
+     * Disconnect from the SQLite database, first running the disconnect hooks and
+     * letting SQLite refresh any statistics that have gone stale.
      */
     public void disconnect() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
+        if (pool != null) {
+            for (Runnable hook : disconnectHooks) {
+                hook.run();
             }
+        }
+        SQLiteConnectionPool current = pool;
+        pool = null;
+        if (current != null) {
+            try (SQLiteConnectionPool.PooledConnection conn = current.borrow();
+                 Statement stmt = conn.getConnection().createStatement()) {
+                stmt.execute("PRAGMA optimize");
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            current.close();
+        }
+    }
+
+    /**
+     * Rebuilds the query planner statistics (ANALYZE) so SQLite picks the right index
+     * after the table has changed a lot, e.g. after a bulk import.
+     *
+     * @return true if the statistics were refreshed, false otherwise
+     */
+    public boolean refreshStatistics() {
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            SchemaMigrator.refreshStatistics(conn.getConnection());
+            return true;
         } catch (SQLException e) {
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Borrows a pooled connection for the calling thread.
+     *
+     * @return a connection to give back by closing it
+     * @throws SQLException if no database is connected or no connection frees up in time
+     */
+    SQLiteConnectionPool.PooledConnection borrow() throws SQLException {
+        SQLiteConnectionPool current = pool;
+        if (current == null) {
+            throw new SQLException("Not connected to a database");
         }
+        return current.borrow();
     }
 
     /**
@@ -50,17 +153,71 @@ public class CarInventoryDBHelper {
      * @return true if the car is successfully added, false otherwise
      */
     public boolean addCar(int year, String make, String model, float price, String features) {
+        long start = System.nanoTime();
         String sql = "INSERT INTO cars (year, make, model, price, features) VALUES (?, ?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
             pstmt.setInt(1, year);
             pstmt.setString(2, make);
             pstmt.setString(3, model);
             pstmt.setFloat(4, price);
             pstmt.setString(5, features);
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            if (changes.hasSubscribers()) {
+                // last_insert_rowid() is per connection, and this thread holds the connection until it is read
+                try (ResultSet rs = conn.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                    rs.next();
+                    changes.added(rs.getInt(1));
+                }
+            }
+            return true;
         } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.ADD_CAR, e);
             e.printStackTrace();
             return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.ADD_CAR, start);
+        }
+    }
+
+    /**
+     * Adds a car and gives it its database id. A car that already has an id is inserted under that id.
+     *
+     * @param car the car to add; its id is set on success
+     * @return true if the car is successfully added, false if its id is taken or the insert failed
+     */
+    public boolean addCar(Car car) {
+        long start = System.nanoTime();
+        String sql = car.getId() == Car.NO_ID
+                ? "INSERT INTO cars (year, make, model, price, features, status) VALUES (?, ?, ?, ?, ?, ?)"
+                : "INSERT INTO cars (year, make, model, price, features, status, id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setInt(1, car.getYear());
+            pstmt.setString(2, car.getMake());
+            pstmt.setString(3, car.getModel());
+            pstmt.setFloat(4, car.getPrice());
+            pstmt.setString(5, car.getFeatures());
+            pstmt.setString(6, car.isSold() ? "Sold" : "Available");
+            if (car.getId() != Car.NO_ID) {
+                pstmt.setInt(7, car.getId());
+            }
+            pstmt.executeUpdate();
+            // last_insert_rowid() is per connection, and this thread holds the connection until it is read
+            try (ResultSet rs = conn.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                rs.next();
+                car.setId(rs.getInt(1));
+            }
+            changes.added(car.getId());
+            return true;
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.ADD_CAR, e);
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.ADD_CAR, start);
         }
     }
 
@@ -71,13 +228,22 @@ public class CarInventoryDBHelper {
      * @return true if the car is successfully removed, false otherwise
      */
     public boolean removeCar(int id) {
+        long start = System.nanoTime();
         String sql = "DELETE FROM cars WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            boolean removed = pstmt.executeUpdate() > 0;
+            if (removed) {
+                changes.removed(id);
+            }
+            return removed;
         } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.REMOVE_CAR, e);
             e.printStackTrace();
             return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.REMOVE_CAR, start);
         }
     }
 
@@ -90,15 +256,199 @@ public class CarInventoryDBHelper {
      * @return true if the update was successful, false otherwise
      */
     public boolean updateCar(int id, float price, String features) {
+        long start = System.nanoTime();
         String sql = "UPDATE cars SET price = ?, features = ? WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
             pstmt.setFloat(1, price);
             pstmt.setString(2, features);
             pstmt.setInt(3, id);
-            return pstmt.executeUpdate() > 0;
+            boolean updated = pstmt.executeUpdate() > 0;
+            if (updated) {
+                changes.updated(id, price, features);
+            }
+            return updated;
         } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.UPDATE_CAR, e);
             e.printStackTrace();
             return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CAR, start);
+        }
+    }
+
+    /**
+     * Writes the price and features of many cars in one transaction, e.g. a write-behind flush.
+     *
+     * @param cars the cars to write, identified by their IDs
+     * @return true if every update was committed, false if none was
+     */
+    public boolean updateCars(Collection<Car> cars) {
+        long start = System.nanoTime();
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false); // Closing the pooled connection rolls back anything left uncommitted
+            int[] counts = executeInBatches(conn.prepare("UPDATE cars SET price = ?, features = ? WHERE id = ?"),
+                    cars, PRICE_AND_FEATURES);
+            connection.commit();
+            int i = 0;
+            for (Car car : cars) {
+                if (counts[i++] > 0) { // Cars removed meanwhile were skipped
+                    changes.updated(car.getId(), car.getPrice(), car.getFeatures());
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.UPDATE_CARS, e);
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CARS, start);
+        }
+    }
+
+    /**
+     * Applies removals, price and feature updates and additions in one transaction, all or nothing,
+     * sending each kind of change in JDBC batches. Only available cars are removed or updated, and if a
+     * removal or update finds no such car, e.g. because another terminal sold or removed it meanwhile,
+     * nothing is applied.
+     *
+     * @param added the cars to add; their ids are set once the transaction commits
+     * @param updated the cars whose price and features to write, identified by their ids
+     * @param removed the ids of the cars to remove
+     * @return true if every change was committed, false if none was
+     */
+    @Override
+    public boolean applyChanges(Collection<Car> added, Collection<Car> updated, Collection<Integer> removed) {
+        long start = System.nanoTime();
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false); // Closing the pooled connection rolls back anything left uncommitted
+            boolean found = allChanged(executeInBatches(conn.prepare("DELETE FROM cars WHERE id = ? AND status = 'Available'"),
+                    removed, (pstmt, id) -> pstmt.setInt(1, id)));
+            found = found && allChanged(executeInBatches(
+                    conn.prepare("UPDATE cars SET price = ?, features = ? WHERE id = ? AND status = 'Available'"),
+                    updated, PRICE_AND_FEATURES));
+            if (!found) {
+                connection.rollback();
+                return false;
+            }
+            executeInBatches(conn.prepare("INSERT INTO cars (year, make, model, price, features) VALUES (?, ?, ?, ?, ?)"),
+                    added, (pstmt, car) -> {
+                        pstmt.setInt(1, car.getYear());
+                        pstmt.setString(2, car.getMake());
+                        pstmt.setString(3, car.getModel());
+                        pstmt.setFloat(4, car.getPrice());
+                        pstmt.setString(5, car.getFeatures());
+                    });
+            long lastId = 0;
+            if (!added.isEmpty()) {
+                try (ResultSet rs = conn.prepare("SELECT last_insert_rowid()").executeQuery()) {
+                    rs.next();
+                    lastId = rs.getLong(1);
+                }
+            }
+            connection.commit();
+            long id = lastId - added.size(); // The transaction held the write lock, so its rows got consecutive ids
+            for (Car car : added) {
+                car.setId((int) ++id);
+            }
+            for (int removedId : removed) {
+                changes.removed(removedId);
+            }
+            for (Car car : updated) {
+                changes.updated(car.getId(), car.getPrice(), car.getFeatures());
+            }
+            for (Car car : added) {
+                changes.added(car.getId());
+            }
+            return true;
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.APPLY_CHANGES, e);
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.APPLY_CHANGES, start);
+        }
+    }
+
+    /**
+     * Binds one row of a batched statement.
+     */
+    @FunctionalInterface
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pstmt, T row) throws SQLException;
+    }
+
+    /** Binds the new price and features of a car, then its id, for the UPDATE statements. */
+    private static final RowBinder<Car> PRICE_AND_FEATURES = (pstmt, car) -> {
+        pstmt.setFloat(1, car.getPrice());
+        pstmt.setString(2, car.getFeatures());
+        pstmt.setInt(3, car.getId());
+    };
+
+    /**
+     * Runs a statement once per row, DEFAULT_BATCH_SIZE rows per JDBC batch.
+     *
+     * @return the number of rows each row changed, in the order of the rows
+     */
+    private static <T> int[] executeInBatches(PreparedStatement pstmt, Collection<T> rows, RowBinder<T> binder)
+            throws SQLException {
+        int[] counts = new int[rows.size()];
+        try {
+            int batched = 0;
+            int executed = 0;
+            for (T row : rows) {
+                binder.bind(pstmt, row);
+                pstmt.addBatch();
+                batched++;
+                if (executed + batched == counts.length || batched == DEFAULT_BATCH_SIZE) {
+                    int[] batch = pstmt.executeBatch();
+                    System.arraycopy(batch, 0, counts, executed, batch.length);
+                    executed += batch.length;
+                    batched = 0;
+                }
+            }
+        } catch (SQLException e) {
+            pstmt.clearBatch(); // The statement is cached, so drop any rows still queued on it
+            throw e;
+        }
+        return counts;
+    }
+
+    /**
+     * @return true if every row of a batched statement changed something
+     */
+    private static boolean allChanged(int[] counts) {
+        for (int count : counts) {
+            if (count == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Looks up one car by its ID.
+     *
+     * @param id the ID of the car
+     * @return the car with its database id, or empty if there is no such car or the lookup failed
+     */
+    public Optional<Car> getCar(int id) {
+        long start = System.nanoTime();
+        String sql = "SELECT id, year, make, model, price, features, status FROM cars WHERE id = ?";
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? Optional.of(readCar(rs, CarColumn.ALL)) : Optional.empty();
+            }
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.GET_CAR, e);
+            e.printStackTrace();
+            return Optional.empty();
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.GET_CAR, start);
         }
     }
 
@@ -106,79 +456,742 @@ public class CarInventoryDBHelper {
      * Retrieves a list of all cars in the inventory.
      *
      * @return a list of formatted car descriptions
+     * @deprecated builds every row in memory; use {@link #forEachCar} or {@link #getCarsPage} instead
      */
+    @Deprecated
     public List<String> getAllCars() {
+        long start = System.nanoTime();
         List<String> carList = new ArrayList<>();
         String sql = "SELECT * FROM cars";
-        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+        try (SQLiteConnectionPool.PooledConnection conn = borrow();
+             ResultSet rs = conn.prepare(sql).executeQuery()) {
             while (rs.next()) {
                 String car = rs.getInt("id") + ": " + rs.getInt("year") + " " + rs.getString("make") + " " + rs.getString("model") +
                         " - $" + rs.getFloat("price") + " - " + rs.getString("status") + " - Features: " + rs.getString("features");
                 carList.add(car);
             }
         } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.GET_ALL_CARS, e);
             e.printStackTrace();
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.GET_ALL_CARS, start);
         }
         return carList;
     }
 
     /**
-     * Marks a car as sold in the database using its ID.
+     * Returns the next page of cars in id order, starting after the given id (keyset pagination).
+     * Pass the id of the last car of one page to get the next one; start with -1.
+     *
+     * @param afterId only cars with a larger id are returned
+     * @param limit the maximum number of cars to return
+     * @return the cars of the page, with their database ids; empty at the end or on error
+     */
+    public List<Car> getCarsPage(int afterId, int limit) {
+        return getCarsPage(null, afterId, limit, CarColumn.ALL);
+    }
+
+    /**
+     * Returns the next page of cars matching a query in id order, starting after the given id.
+     * Columns left out of the projection are null or zero in the returned cars.
+     *
+     * @param query the search criteria, or null for every car
+     * @param afterId only cars with a larger id are returned
+     * @param limit the maximum number of cars to return
+     * @param columns the columns to fetch; the id is always fetched
+     * @return the cars of the page, with their database ids; empty at the end or on error
+     */
+    public List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns) {
+        long start = System.nanoTime();
+        List<Car> page = new ArrayList<>(Math.min(limit, DEFAULT_FETCH_SIZE));
+        try {
+            readPage(query, afterId, limit, columns, page);
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.QUERY, e);
+            e.printStackTrace();
+            page.clear();
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        }
+        return page;
+    }
+
+    /**
+     * Streams every car matching a query to a callback in id order, without building the result in memory.
+     * Rows are fetched fetchSize at a time, and the connection is given back before the callback sees them,
+     * so the callback may itself use this helper.
+     *
+     * @param query the search criteria, or null for every car
+     * @param columns the columns to fetch; the id is always fetched
+     * @param fetchSize the number of rows read from the database at a time
+     * @param action called for each car; return false to stop early
+     * @return the number of cars passed to the callback, or -1 if the query failed
+     */
+    public long forEachCar(CarQuery query, Set<CarColumn> columns, int fetchSize, Predicate<Car> action) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("fetchSize must be positive");
+        }
+        List<Car> batch = new ArrayList<>(fetchSize);
+        long visited = 0;
+        int afterId = -1;
+        try {
+            do {
+                batch.clear();
+                readPage(query, afterId, fetchSize, columns, batch);
+                for (Car car : batch) {
+                    visited++;
+                    if (!action.test(car)) {
+                        return visited;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).getId();
+                }
+            } while (batch.size() == fetchSize);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        return visited;
+    }
+
+    /**
+     * Streams every car matching a query in id order, DEFAULT_FETCH_SIZE rows at a time.
+     *
+     * @see #forEachCar(CarQuery, Set, int, Predicate)
+     */
+    @Override
+    public void forEachCar(CarQuery query, Predicate<Car> action) {
+        forEachCar(query, CarColumn.ALL, DEFAULT_FETCH_SIZE, action);
+    }
+
+    /**
+     * Counts the cars matching a query.
+     *
+     * @param query the search criteria, or null for every car
+     * @return the number of matching cars, or -1 on error
+     */
+    public long countCars(CarQuery query) {
+        long start = System.nanoTime();
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM cars WHERE 1 = 1");
+        appendCriteria(query, sql, params);
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql.toString());
+            bind(pstmt, params);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.QUERY, e);
+            e.printStackTrace();
+            return -1;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    /**
+     * Returns a window of the cars matching a query in the given sort order, for views that jump
+     * to arbitrary rows. Ties are broken by id so windows never overlap.
+     * Prefer {@link #getCarsPage} when reading in id order, since OFFSET steps over every skipped row.
+     *
+     * @param query the search criteria, or null for every car
+     * @param sortBy the column to sort on
+     * @param ascending true for ascending order
+     * @param offset the number of matching cars to skip
+     * @param limit the maximum number of cars to return
+     * @param columns the columns to fetch; the id is always fetched
+     * @return the cars of the window; empty at the end or on error
+     */
+    public List<Car> getCarsSorted(CarQuery query, CarColumn sortBy, boolean ascending, long offset, int limit,
+                                   Set<CarColumn> columns) {
+        long start = System.nanoTime();
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        appendSelect(columns, sql);
+        sql.append(" WHERE 1 = 1");
+        appendCriteria(query, sql, params);
+        String direction = ascending ? " ASC" : " DESC";
+        sql.append(" ORDER BY ").append(sortBy.getSqlName());
+        if (sortBy == CarColumn.MAKE || sortBy == CarColumn.MODEL) {
+            sql.append(" COLLATE NOCASE"); // Matches the make/model index
+        }
+        sql.append(direction);
+        if (sortBy != CarColumn.ID) {
+            sql.append(", id").append(direction);
+        }
+        sql.append(" LIMIT ? OFFSET ?");
+
+        List<Car> window = new ArrayList<>(Math.min(limit, DEFAULT_FETCH_SIZE));
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql.toString());
+            bind(pstmt, params);
+            pstmt.setInt(params.size() + 1, limit);
+            pstmt.setLong(params.size() + 2, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    window.add(readCar(rs, columns));
+                }
+            }
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.QUERY, e);
+            e.printStackTrace();
+            window.clear();
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        }
+        return window;
+    }
+
+    /**
+     * Appends "SELECT id, ... FROM cars" for the projected columns.
+     */
+    private static void appendSelect(Set<CarColumn> columns, StringBuilder sql) {
+        sql.append("SELECT id");
+        for (CarColumn column : columns) {
+            if (column != CarColumn.ID) {
+                sql.append(", ").append(column.getSqlName());
+            }
+        }
+        sql.append(" FROM cars");
+    }
+
+    /**
+     * Reads one keyset page into the given list.
+     */
+    private void readPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns, List<Car> out) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder();
+        appendSelect(columns, sql);
+        sql.append(" WHERE id > ?");
+        params.add(afterId);
+        appendCriteria(query, sql, params);
+        sql.append(" ORDER BY id LIMIT ?");
+        params.add(limit);
+
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql.toString());
+            bind(pstmt, params);
+            pstmt.setFetchSize(limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    out.add(readCar(rs, columns));
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the query's criteria as AND clauses. Make and model compare without case,
+     * like CarQuery.matches, so the NOCASE indexes can serve them. Each word of a feature
+     * criterion must appear as a whole word of the features column, with the same separators
+     * as CarDictionary (tabs and other unusual whitespace aside).
+     */
+    static void appendCriteria(CarQuery query, StringBuilder sql, List<Object> params) {
+        if (query == null) {
+            return;
+        }
+        if (query.getMake() != null) {
+            sql.append(" AND make = ? COLLATE NOCASE");
+            params.add(query.getMake());
+        }
+        if (query.getModel() != null) {
+            sql.append(" AND model = ? COLLATE NOCASE");
+            params.add(query.getModel());
+        }
+        if (query.getMinYear() != Integer.MIN_VALUE) {
+            sql.append(" AND year >= ?");
+            params.add(query.getMinYear());
+        }
+        if (query.getMaxYear() != Integer.MAX_VALUE) {
+            sql.append(" AND year <= ?");
+            params.add(query.getMaxYear());
+        }
+        if (query.getMinPrice() != Float.NEGATIVE_INFINITY) {
+            sql.append(" AND price >= ?");
+            params.add(query.getMinPrice());
+        }
+        if (query.getMaxPrice() != Float.POSITIVE_INFINITY) {
+            sql.append(" AND price <= ?");
+            params.add(query.getMaxPrice());
+        }
+        if (query.isAvailableOnly()) {
+            sql.append(" AND status != 'Sold'");
+        }
+        for (String word : CarDictionary.words(query.getFeature())) {
+            sql.append(" AND ' ' || replace(replace(replace(features, ',', ' '), ';', ' '), '/', ' ') || ' '"
+                    + " LIKE ? ESCAPE '\\'");
+            params.add("% " + word.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + " %");
+        }
+    }
+
+    /**
+     * Binds positional parameters collected while building a query.
+     */
+    static void bind(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            Object param = params.get(i);
+            if (param instanceof Integer) {
+                pstmt.setInt(i + 1, (Integer) param);
+            } else if (param instanceof Float) {
+                pstmt.setFloat(i + 1, (Float) param);
+            } else {
+                pstmt.setString(i + 1, (String) param);
+            }
+        }
+    }
+
+    /**
+     * Builds a Car from the current row of a result set selected as "id" followed by the projected columns.
+     */
+    static Car readCar(ResultSet rs, Set<CarColumn> columns) throws SQLException {
+        int year = 0;
+        String make = null;
+        String model = null;
+        float price = 0;
+        String features = null;
+        boolean sold = false;
+        int index = 2;
+        for (CarColumn column : columns) {
+            switch (column) {
+                case ID:
+                    continue;
+                case YEAR:
+                    year = rs.getInt(index);
+                    break;
+                case MAKE:
+                    make = rs.getString(index);
+                    break;
+                case MODEL:
+                    model = rs.getString(index);
+                    break;
+                case PRICE:
+                    price = rs.getFloat(index);
+                    break;
+                case FEATURES:
+                    features = rs.getString(index);
+                    break;
+                case STATUS:
+                    sold = "Sold".equalsIgnoreCase(rs.getString(index));
+                    break;
+            }
+            index++;
+        }
+        Car car = new Car(year, make, model, price, features);
+        car.setId(rs.getInt(1));
+        if (sold) {
+            car.markAsSold();
+        }
+        return car;
+    }
+
+    /**
+     * Marks a car as sold in the database using its ID, without checking its status or recording a sale.
+     * Use purchaseCar to sell a car.
      *
      * @param id the ID of the car to mark as sold
      * @return true if the update was successful, false otherwise
      */
     public boolean markCarAsSold(int id) {
+        long start = System.nanoTime();
         String sql = "UPDATE cars SET status = 'Sold' WHERE id = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            boolean marked = pstmt.executeUpdate() > 0;
+            if (marked) {
+                changes.sold(id);
+            }
+            return marked;
         } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.MARK_SOLD, e);
             e.printStackTrace();
             return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.MARK_SOLD, start);
         }
     }
 
     /**
-     * Processes the purchase of a car: calculates total price with tax and discount,
-     * prompts user for confirmation, and updates the status to 'Sold' if confirmed.
+     * Buys a car at a quoted price in one short transaction: the car is marked as sold only if it is
+     * still available and its price still matches the quote, and the sale is recorded with the
+     * quote's final price in the sales ledger. When two terminals race for the same car exactly one gets SOLD.
+     * Quote the car and ask the buyer first; nothing here waits on the user.
      *
-     * @param id the ID of the car to purchase
+     * @param id the ID of the car
+     * @param quote the price breakdown the buyer accepted
+     * @return whether this caller bought the car
      */
-    public void processCarPurchase(int id) {
-        String sql = "SELECT price FROM cars WHERE id = ? AND status != 'Sold'";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+    public PurchaseResult purchaseCar(int id, PricingEngine.Quote quote) {
+        long start = System.nanoTime();
+        String claim = "UPDATE cars SET status = 'Sold' WHERE id = ? AND status = 'Available'";
+        String price = "SELECT price FROM cars WHERE id = ?";
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false); // Closing the pooled connection rolls back anything left uncommitted
+            PreparedStatement pstmt = conn.prepare(claim);
+            pstmt.setInt(1, id);
+            if (pstmt.executeUpdate() == 0) {
+                connection.rollback();
+                return PurchaseResult.NOT_AVAILABLE;
+            }
+            pstmt = conn.prepare(price);
             pstmt.setInt(1, id);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                float basePrice = rs.getFloat("price");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || PricingEngine.toCents(rs.getFloat(1)) != quote.getBaseCents()) {
+                    connection.rollback();
+                    return PurchaseResult.PRICE_CHANGED;
+                }
+            }
+            pstmt = conn.prepare(SalesLedger.INSERT_SQL);
+            SalesLedger.bind(pstmt, new SalesLedger.Sale(id, null, System.currentTimeMillis(), quote));
+            pstmt.executeUpdate();
+            connection.commit();
+            changes.sold(id);
+            return PurchaseResult.SOLD;
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.PURCHASE, e);
+            e.printStackTrace();
+            return PurchaseResult.ERROR;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.PURCHASE, start);
+        }
+    }
 
+    /**
+     * @return the ledger of completed sales and its reports
+     */
+    public SalesLedger getSalesLedger() { return salesLedger; }
+
+    /**
+     * @return the pricing engine used to quote purchases
+     */
+    public PricingEngine getPricingEngine() { return pricing; }
+
+    /**
+     * Replaces the pricing engine, e.g. with one that has jurisdictions and promotions configured.
+     *
+     * @param pricing the pricing engine used to quote purchases
+     */
+    public void setPricingEngine(PricingEngine pricing) { this.pricing = pricing; }
+
+    /**
+     * Processes the purchase of a car: quotes the total price with tax and discount,
+     * prompts user for confirmation, and buys the car with purchaseCar if confirmed.
+     * No connection is held and no lock is taken while the dialogs are open,
+     * and only the purchase itself is timed, as purchaseCar.
+     *
+     * @param id the ID of the car to purchase
+     */
+    public void processCarPurchase(int id) {
+        try {
+            // getCar gives the connection back before the dialogs so other threads are not starved while the user decides
+            Optional<Car> car = getCar(id);
+            if (car.isPresent() && !car.get().isSold()) {
                 String taxInput = JOptionPane.showInputDialog(null, "Enter sales tax rate (as %):");
+                if (taxInput == null) return;
                 String discountInput = JOptionPane.showInputDialog(null, "Enter discount amount:");
+                if (discountInput == null) return;
 
                 float taxRate = Float.parseFloat(taxInput);
                 float discount = Float.parseFloat(discountInput);
-
-                float taxedPrice = basePrice + (basePrice * taxRate / 100);
-                float finalPrice = taxedPrice - discount;
+                PricingEngine.Quote quote = pricing.quote(car.get(), taxRate, discount);
+                String finalPrice = PricingEngine.formatCents(quote.getTotalCents());
 
                 int confirm = JOptionPane.showConfirmDialog(null,
-                        "Final Purchase Price: $" + finalPrice + "\nDo you want to proceed?",
+                        quote + "\nFinal Purchase Price: " + finalPrice + "\nDo you want to proceed?",
                         "Confirm Purchase",
                         JOptionPane.YES_NO_OPTION);
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    markCarAsSold(id);
-                    JOptionPane.showMessageDialog(null, "Car purchased successfully! Final price: $" + finalPrice);
+                    JOptionPane.showMessageDialog(null, InventoryStore.purchaseMessage(purchaseCar(id, quote), finalPrice));
                 } else {
                     JOptionPane.showMessageDialog(null, "Purchase cancelled.");
                 }
             } else {
                 JOptionPane.showMessageDialog(null, "Car not available or already sold.");
             }
-        } catch (SQLException | NumberFormatException e) {
+        } catch (IllegalArgumentException e) { // NumberFormatException, or a negative rate or discount
             JOptionPane.showMessageDialog(null, "Error during purchase: " + e.getMessage());
         }
     }
-}
 
+    /**
+     * Bulk imports cars from a comma-separated text file using the default batch size and commit interval.
+     *
+     * @param filename the feed file in the same format read by CarInventory.loadCarsFromFile
+     * @return the result of the import
+     * @see #importCarsFromFile(String, int, int)
+     */
+    public ImportResult importCarsFromFile(String filename) {
+        return importCarsFromFile(filename, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    /**
+     * Bulk imports cars from a comma-separated text file straight into the cars table.
+     * A single prepared statement is reused for every row, rows are sent in JDBC batches,
+     * and the transaction is committed every {@code commitInterval} rows instead of once per row.
+     * Lines that cannot be parsed are skipped and reported in the result.
+     *
+     * @param filename the feed file in the same format read by CarInventory.loadCarsFromFile
+     * @param batchSize the number of rows per JDBC batch
+     * @param commitInterval the number of rows written between commits
+     * @return the result of the import; rows already committed stay in the table if an error occurs
+     */
+    public ImportResult importCarsFromFile(String filename, int batchSize, int commitInterval) {
+        return importCarsFromFile(filename, batchSize, commitInterval, null);
+    }
+
+    /**
+     * Bulk imports cars from a comma-separated text file, reporting progress after every batch.
+     * If the listener asks to stop, the rows since the last commit are rolled back and the
+     * result is marked as cancelled; earlier commits are kept.
+     *
+     * @param filename the feed file in the same format read by CarInventory.loadCarsFromFile
+     * @param batchSize the number of rows per JDBC batch
+     * @param commitInterval the number of rows per transaction
+     * @param listener told the number of rows read so far, or null
+     * @return the result of the import
+     */
+    public ImportResult importCarsFromFile(String filename, int batchSize, int commitInterval, ImportListener listener) {
+        ImportResult result = null;
+        try (CarFeedReader reader = CarFeedReader.open(filename)) {
+            result = importCars(reader::next, reader::getErrorCount, batchSize, commitInterval, listener);
+            result.rejected = reader.getErrorCount();
+            result.rejectedLines = reader.getErrors();
+        } catch (IOException e) {
+            if (result == null) { // Opening the file failed; a failure to close it does not undo the import
+                result = new ImportResult();
+                result.error = e.getMessage();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bulk imports cars from any source, such as a generator, with the same batching and
+     * commits as importCarsFromFile. The cars' ids and sold status are ignored.
+     *
+     * @param source supplies the cars to insert until it returns null
+     * @param batchSize the number of rows per JDBC batch
+     * @param commitInterval the number of rows per transaction
+     * @param listener told the number of rows written so far, or null
+     * @return the result of the import
+     */
+    public ImportResult importCars(CarSource source, int batchSize, int commitInterval, ImportListener listener) {
+        return importCars(source, () -> 0, batchSize, commitInterval, listener);
+    }
+
+    /**
+     * Writes the cars from a source in JDBC batches, committing every {@code commitInterval} rows.
+     *
+     * @param rejected the number of source lines rejected so far, for the listener
+     */
+    private ImportResult importCars(CarSource source, LongSupplier rejected, int batchSize, int commitInterval,
+                                    ImportListener listener) {
+        if (batchSize <= 0 || commitInterval <= 0) {
+            throw new IllegalArgumentException("batchSize and commitInterval must be positive");
+        }
+        ImportResult result = new ImportResult();
+        long start = System.nanoTime();
+        String sql = "INSERT INTO cars (year, make, model, price, features) VALUES (?, ?, ?, ?, ?)";
+        try (SQLiteConnectionPool.PooledConnection conn = borrow()) {
+            Connection connection = conn.getConnection();
+            PreparedStatement pstmt = conn.prepare(sql);
+            connection.setAutoCommit(false);
+            try {
+                int batched = 0;
+                int uncommitted = 0;
+                Car car;
+                while ((car = source.next()) != null) {
+                    pstmt.setInt(1, car.getYear());
+                    pstmt.setString(2, car.getMake());
+                    pstmt.setString(3, car.getModel());
+                    pstmt.setFloat(4, car.getPrice());
+                    pstmt.setString(5, car.getFeatures());
+                    pstmt.addBatch();
+                    batched++;
+                    uncommitted++;
+
+                    if (batched >= batchSize) {
+                        pstmt.executeBatch();
+                        batched = 0;
+                        if (listener != null && !listener.progress(result.imported + uncommitted, rejected.getAsLong())) {
+                            throw new CancellationException("Import cancelled");
+                        }
+                    }
+                    if (uncommitted >= commitInterval) {
+                        if (batched > 0) {
+                            pstmt.executeBatch();
+                            batched = 0;
+                        }
+                        connection.commit();
+                        result.imported += uncommitted;
+                        uncommitted = 0;
+                    }
+                }
+                if (batched > 0) {
+                    pstmt.executeBatch();
+                }
+                connection.commit();
+                result.imported += uncommitted;
+            } catch (IOException | SQLException | CancellationException e) {
+                if (!(e instanceof CancellationException)) {
+                    METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+                }
+                pstmt.clearBatch(); // The statement is cached, so drop any rows still queued on it
+                connection.rollback();
+                result.error = e.getMessage();
+                result.cancelled = e instanceof CancellationException;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+            e.printStackTrace();
+            result.error = e.getMessage();
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        METRICS.record(InventoryMetrics.Operation.LOAD_FILE, start);
+        if (result.imported > 0) {
+            refreshStatistics(); // The row counts behind the index choices just changed
+            changes.reloaded();
+        }
+        return result;
+    }
+
+    /**
+     * Bulk imports a feed file with the default batch size and commit interval.
+     *
+     * @param filename the feed file
+     * @return true if every line was imported, false if the import failed or any line was rejected
+     * @see #importCarsFromFile(String)
+     */
+    public boolean loadCarsFromFile(String filename) {
+        ImportResult result = importCarsFromFile(filename);
+        List<CarFeedReader.LineError> errors = new ArrayList<>(result.getRejectedLines());
+        if (!result.isSuccessful()) {
+            errors.add(new CarFeedReader.LineError(0, "Import stopped: " + result.getError()));
+        }
+        loadErrors = errors;
+        return errors.isEmpty() && result.getRejected() == 0;
+    }
+
+    /**
+     * @return the lines rejected by the most recent loadCarsFromFile, or an empty list if it was clean
+     */
+    public List<CarFeedReader.LineError> getLoadErrors() {
+        return loadErrors;
+    }
+
+    /**
+     * @return the feed on which every committed add, update, removal, sale and import is published
+     */
+    @Override
+    public InventoryChangeFeed getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Disconnects from the database.
+     *
+     * @see #disconnect()
+     */
+    @Override
+    public void close() {
+        disconnect();
+    }
+
+    /**
+     * CarSource supplies the cars of a bulk import one at a time.
+     */
+    @FunctionalInterface
+    public interface CarSource {
+        /**
+         * @return the next car, or null when there are no more
+         * @throws IOException if the next car cannot be read
+         */
+        Car next() throws IOException;
+    }
+
+    /**
+     * ImportListener follows a running bulk import.
+     */
+    @FunctionalInterface
+    public interface ImportListener {
+        /**
+         * Called after each batch is written.
+         *
+         * @param rowsWritten the number of rows written so far, committed or not
+         * @param rowsRejected the number of lines rejected so far
+         * @return true to continue, false to cancel the import
+         */
+        boolean progress(long rowsWritten, long rowsRejected);
+    }
+
+    /**
+     * ImportResult reports the outcome of a bulk import: how many rows were written,
+     * which lines were rejected, and the achieved throughput.
+     */
+    public static class ImportResult {
+        private long imported;
+        private long rejected;
+        private List<CarFeedReader.LineError> rejectedLines = Collections.emptyList();
+        private long elapsedNanos;
+        private String error;
+        private boolean cancelled;
+
+        /**
+         * @return the number of rows committed to the cars table
+         */
+        public long getImported() { return imported; }
+
+        /**
+         * @return the number of lines that could not be parsed
+         */
+        public long getRejected() { return rejected; }
+
+        /**
+         * @return the first rejected lines, with the reason each was rejected
+         */
+        public List<CarFeedReader.LineError> getRejectedLines() { return rejectedLines; }
+
+        /**
+         * @return the wall-clock duration of the import in milliseconds
+         */
+        public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+        /**
+         * @return the number of imported rows per second
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : imported * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * @return true if the import completed without an I/O or database error
+         */
+        public boolean isSuccessful() { return error == null; }
+
+        /**
+         * @return the error message if the import stopped early, or null
+         */
+        public String getError() { return error; }
+
+        /**
+         * @return true if the import was cancelled before the end of the file
+         */
+        public boolean isCancelled() { return cancelled; }
+
+        /**
+         * @return a one-line summary of the import
+         */
+        @Override
+        public String toString() {
+            String summary = String.format("Imported %d cars in %d ms (%.0f rows/sec), %d lines rejected",
+                    imported, getElapsedMillis(), getRowsPerSecond(), rejected);
+            return error == null ? summary : summary + " - stopped early: " + error;
+        }
+    }
+}
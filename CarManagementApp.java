@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
@@ -5,18 +6,30 @@ import java.util.Scanner;
 /**
  * CarManagementApp provides a console-based interface for a car dealership management system.
  * It allows users to perform CRUD operations on the car inventory and simulate purchasing a car.
+ * The inventory lives in the InventoryStore picked at startup; by default an in-memory one.
  */
 public class CarManagementApp {
     private static final Scanner scanner = new Scanner(System.in);
-    static final CarInventory inventory = new CarInventory();
+    private static final PricingEngine pricing = new PricingEngine();
+    static InventoryStore store;
 
     /**
      * Main method to run the application loop.
      * Displays the menu and handles user choices.
      *
-     * @param args command-line arguments (not used)
+     * @param args optionally the inventory store to use, e.g. "sqlite:cars.db" or "mmap:cars.dat";
+     *             otherwise the inventory.store system property, or memory
      */
     public static void main(String[] args) {
+        String spec = InventoryStores.specFrom(args, InventoryStores.DEFAULT_SPEC);
+        try {
+            store = InventoryStores.open(spec);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not open inventory store: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Using inventory store " + spec);
+        InventoryMetrics.startReportingFromProperty();
         while (true) {
             displayMenu();
             int choice = getUserChoice();
@@ -35,7 +48,9 @@ public class CarManagementApp {
         System.out.println("4. View Cars");
         System.out.println("5. Buy Car");
         System.out.println("6. Load Cars from File");
-        System.out.println("7. Exit");
+        System.out.println("7. Search Cars");
+        System.out.println("8. Sync Cars with Feed");
+        System.out.println("9. Exit");
         System.out.print("Choose an option: ");
     }
 
@@ -78,21 +93,97 @@ public class CarManagementApp {
         }
     }
 
+    /**
+     * Prompts for optional numeric input; a blank line means "no value".
+     *
+     * @return the number entered, or null if the line was blank
+     */
+    private static Float getOptionalFloatInput() {
+        while (true) {
+            String line = scanner.nextLine().trim();
+            if (line.isEmpty()) {
+                return null;
+            }
+            try {
+                return Float.parseFloat(line);
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid input. Please enter a valid number or leave blank: ");
+            }
+        }
+    }
+
+    /**
+     * Prompts for search criteria and lists the matching cars.
+     * Blank answers leave that criterion open.
+     */
+    private static void searchInventory() {
+        CarQuery query = new CarQuery();
+        System.out.print("Make (blank for any): ");
+        String make = scanner.nextLine().trim();
+        if (!make.isEmpty()) {
+            query.make(make);
+        }
+        System.out.print("Model (blank for any): ");
+        String model = scanner.nextLine().trim();
+        if (!model.isEmpty()) {
+            query.model(model);
+        }
+        System.out.print("Earliest year (blank for any): ");
+        Float minYear = getOptionalFloatInput();
+        System.out.print("Latest year (blank for any): ");
+        Float maxYear = getOptionalFloatInput();
+        if (minYear != null || maxYear != null) {
+            query.years(minYear == null ? Integer.MIN_VALUE : minYear.intValue(),
+                    maxYear == null ? Integer.MAX_VALUE : maxYear.intValue());
+        }
+        System.out.print("Maximum price (blank for any): ");
+        Float maxPrice = getOptionalFloatInput();
+        if (maxPrice != null) {
+            query.maxPrice(maxPrice);
+        }
+        System.out.print("Feature, e.g. Sunroof (blank for any): ");
+        String feature = scanner.nextLine().trim();
+        if (!feature.isEmpty()) {
+            query.feature(feature);
+        }
+        System.out.print("Available cars only? (yes/no): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("yes")) {
+            query.availableOnly();
+        }
+
+        List<Car> matches = store.findCars(query);
+        if (matches.isEmpty()) {
+            System.out.println("No matching cars.");
+        } else {
+            System.out.println("\nMatching Cars:");
+            for (Car car : matches) {
+                System.out.println(car.getId() + ": " + car);
+            }
+        }
+    }
+
     /**
      * Displays all cars currently in the inventory.
      */
     private static void displayInventory() {
-        List<Car> cars = inventory.getCars();
-        if (cars.isEmpty()) {
+        if (isEmpty()) {
             System.out.println("No cars in inventory.");
         } else {
             System.out.println("\nCurrent Cars in Inventory:");
-            for (int i = 0; i < cars.size(); i++) {
-                System.out.println(i + ": " + cars.get(i));
-            }
+            store.forEachCar(null, car -> {
+                System.out.println(car.getId() + ": " + car);
+                return true;
+            });
         }
     }
 
+    /**
+     * @return true if the store holds no cars
+     */
+    private static boolean isEmpty() {
+        return store.countCars(null) <= 0;
+    }
+
     /**
      * Handles the user's menu choice by performing the appropriate action.
      *
@@ -104,7 +195,7 @@ public class CarManagementApp {
             case 2:
             case 3:
             case 5:
-                if (inventory.getCars().isEmpty()) {
+                if (isEmpty()) {
                     System.out.println("No cars in inventory. Returning to main menu.");
                     return;
                 }
@@ -122,53 +213,86 @@ public class CarManagementApp {
                 float price = getValidFloatInput();
                 System.out.print("Enter Features: ");
                 String features = scanner.nextLine();
-                inventory.addCar(new Car(year, make, model, price, features));
+                if (!store.addCar(new Car(year, make, model, price, features))) {
+                    System.out.println("Failed to add car.");
+                }
                 break;
             case 2:
                 displayInventory();
-                System.out.print("Enter car index to remove: ");
-                if (!inventory.removeCar(getValidIntInput())) {
-                    System.out.println("Invalid index.");
+                System.out.print("Enter car ID to remove: ");
+                if (!store.removeCar(getValidIntInput())) {
+                    System.out.println("Invalid ID.");
                 }
                 break;
             case 3:
                 displayInventory();
-                System.out.print("Enter car index to update: ");
-                int index = getValidIntInput();
+                System.out.print("Enter car ID to update: ");
+                int id = getValidIntInput();
                 System.out.print("Enter new price: ");
                 float newPrice = getValidFloatInput();
                 System.out.print("Enter new features: ");
                 String newFeatures = scanner.nextLine();
-                inventory.updateCar(index, newPrice, newFeatures);
+                if (!store.updateCar(id, newPrice, newFeatures)) {
+                    System.out.println("Invalid ID.");
+                }
                 break;
             case 4:
                 displayInventory();
                 break;
             case 5:
                 displayInventory();
-                System.out.print("Enter car index to buy: ");
-                int indexToBuy = getUserChoice();
+                System.out.print("Enter car ID to buy: ");
+                int idToBuy = getUserChoice();
                 System.out.print("Enter tax rate (%): ");
                 float taxRate = scanner.nextFloat();
                 System.out.print("Enter discount amount: ");
                 float discount = scanner.nextFloat();
                 scanner.nextLine(); // Consume newline
+                Optional<Car> carToBuy = store.getCar(idToBuy);
+                if (carToBuy.isEmpty() || carToBuy.get().isSold()) {
+                    System.out.println("Car not available or already sold.");
+                    break;
+                }
+                PricingEngine.Quote quote;
+                try {
+                    quote = pricing.quote(carToBuy.get(), taxRate, discount);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid tax rate or discount: " + e.getMessage());
+                    break;
+                }
+                System.out.println(quote);
                 System.out.print("Do you want to proceed with the purchase? (yes/no): ");
                 String confirmation = scanner.nextLine().trim().toLowerCase();
-                Optional<Car> purchasedCar = inventory.buyCar(indexToBuy, taxRate, discount, confirmation);
-                if (purchasedCar.isPresent()) {
-                    System.out.println("Car purchased successfully!");
+                if (confirmation.equals("yes")) {
+                    System.out.println(InventoryStore.purchaseMessage(store.purchaseCar(idToBuy, quote),
+                            PricingEngine.formatCents(quote.getTotalCents())));
                 } else {
                     System.out.println("Purchase cancelled or invalid selection.");
                 }
                 break;
             case 6:
                 System.out.print("Enter file name: ");
-                if (!inventory.loadCarsFromFile(scanner.nextLine())) {
+                String filename = scanner.nextLine();
+                if (!store.loadCarsFromFile(filename)) {
                     System.out.println("Error loading file.");
+                    for (CarFeedReader.LineError error : store.getLoadErrors()) {
+                        System.out.println("  " + error);
+                    }
                 }
                 break;
             case 7:
+                searchInventory();
+                break;
+            case 8:
+                System.out.print("Enter feed file name: ");
+                FeedSync.Delta delta = new FeedSync(store).sync(scanner.nextLine());
+                System.out.println(delta);
+                for (CarFeedReader.LineError error : delta.getRejectedLines()) {
+                    System.out.println("  " + error);
+                }
+                break;
+            case 9:
+                store.close();
                 System.exit(0);
             default:
                 System.out.println("Invalid choice, try again.");
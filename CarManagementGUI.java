@@ -3,24 +3,59 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.*;
 import java.io.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * CarManagementGUI is the main graphical user interface for managing car dealership operations.
- * It allows users to add, remove, update, view, and purchase cars as well as load inventory from a SQLite database.
+ * It allows users to add, remove, update, view, and purchase cars in the InventoryStore picked at startup:
+ * a SQLite database by default, which also provides feed imports and sales reports, or an in-memory
+ * or memory-mapped file store.
+ * Store calls run in the background through AsyncDBService, so the window stays responsive;
+ * a status bar shows running work and lets the user cancel it.
+ * The inventory table follows the store's InventoryChangeFeed, so it shows each change as it is
+ * made instead of reloading after every action.
  */
 public class CarManagementGUI {
-    private CarInventoryDBHelper dbHelper = new CarInventoryDBHelper(); // Database interaction layer
+    private static final int CHANGE_POLL_MILLIS = 250; // How often the table takes in the store's changes
+    private static final int MAX_CHANGES_PER_POLL = 1000; // Changes applied per poll; the rest wait for the next one
+
+    private InventoryStore store; // Where the inventory lives
+    private CarInventoryDBHelper dbHelper; // The store when it is a SQLite database, otherwise null
+    private final PricingEngine pricing = new PricingEngine(); // Quotes purchases
     private JFrame frame; // Main application window
-    private JTextArea outputArea; // Display area for showing car inventory and system messages
+    private JTextArea outputArea; // Display area for system messages
+    private AsyncDBService dbService = new AsyncDBService(); // Runs database calls off the event dispatch thread
+    private CarCache carCache; // Read-through, write-behind cache in front of the store
+    private CarTableModel tableModel; // Lazily loaded view of the inventory
+    private InventoryChangeFeed.Subscription changes; // The store's changes, polled on the event dispatch thread
+    private JTable table; // Inventory display
+    private JProgressBar progressBar; // Busy indicator while background work runs
+    private JLabel statusLabel; // Row count or progress of the running work
+    private JButton cancelButton; // Cancels the running background work
+    private final Set<AsyncDBService.Task<?>> runningTasks = new LinkedHashSet<>(); // Background work shown in the status bar
+    private boolean closing; // Set once the user confirmed exiting
 
     /**
-     * Constructor: Initializes the GUI components and connects to the database.
+     * Constructor: Initializes the GUI components and opens the inventory store.
+     *
+     * @param storeSpec the store to open, e.g. "cars.db", "mmap:cars.dat", "columnar" or "memory";
+     *                  null to ask for a SQLite database file
      */
-    public CarManagementGUI() {
+    public CarManagementGUI(String storeSpec) {
         frame = new JFrame("Car Dealership Management System");
         frame.setSize(800, 600);
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Closing the window goes through exitApplication, so the cache's pending updates reach the store
+        frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exitApplication();
+            }
+        });
         frame.setLayout(new BorderLayout());
 
         // Load background image (optional)
@@ -33,29 +68,63 @@ public class CarManagementGUI {
             System.out.println("Background image not found or failed to load.");
         }
 
-        outputArea = new JTextArea();
-        outputArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(outputArea);
-        frame.add(scrollPane, BorderLayout.CENTER);
-
-        // Prompt for database connection at startup
-        String dbPath = JOptionPane.showInputDialog("Enter path to SQLite database file:");
-        if (!dbHelper.connect(dbPath)) {
-            JOptionPane.showMessageDialog(frame, "Failed to connect to database.");
+        // Open the inventory store; a plain path is a SQLite database, and cancelling keeps the inventory in memory
+        if (storeSpec == null) {
+            storeSpec = JOptionPane.showInputDialog("Enter path to SQLite database file (.db), or memory, columnar, or mmap:<file>:");
+            if (storeSpec == null || storeSpec.isBlank()) {
+                storeSpec = "memory";
+            }
+        }
+        try {
+            store = InventoryStores.open(storeSpec);
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(frame, "Failed to open inventory store: " + e.getMessage());
             System.exit(1);
         }
+        if (store instanceof CarInventoryDBHelper) {
+            dbHelper = (CarInventoryDBHelper) store;
+        }
+        frame.setTitle("Car Dealership Management System - " + storeSpec);
+        carCache = new CarCache(store);
+        tableModel = new CarTableModel(carCache, dbService);
+        changes = store.getChangeFeed().subscribe();
+        new javax.swing.Timer(CHANGE_POLL_MILLIS, e -> showChanges()).start();
+
+        // Inventory table on top, system messages below
+        table = new JTable(tableModel);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    tableModel.toggleSort(table.convertColumnIndexToModel(column)); // Sorted by the store
+                }
+            }
+        });
+        outputArea = new JTextArea(4, 40);
+        outputArea.setEditable(false);
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), new JScrollPane(outputArea));
+        splitPane.setResizeWeight(0.8);
+        frame.add(splitPane, BorderLayout.CENTER);
+
+        tableModel.refresh();
 
         // Create panel for buttons
         JPanel panel = new JPanel();
-        panel.setLayout(new GridLayout(3, 3));
+        panel.setLayout(new GridLayout(4, 3));
 
         // Define and add buttons for different functionalities
         JButton addButton = new JButton("Add Car");
         JButton removeButton = new JButton("Remove Car");
         JButton updateButton = new JButton("Update Car");
         JButton viewButton = new JButton("View Cars");
+        JButton filterButton = new JButton("Filter Cars");
         JButton buyButton = new JButton("Buy Car");
         JButton loadButton = new JButton("Load Cars from File");
+        JButton importButton = new JButton("Import Car Feed");
+        JButton syncButton = new JButton("Sync Car Feed");
+        JButton reportButton = new JButton("Sales Report");
         JButton exitButton = new JButton("Exit");
 
         // Assign actions to buttons
@@ -63,8 +132,12 @@ public class CarManagementGUI {
         removeButton.addActionListener(e -> removeCar());
         updateButton.addActionListener(e -> updateCar());
         viewButton.addActionListener(e -> viewCars());
+        filterButton.addActionListener(e -> filterCars());
         buyButton.addActionListener(e -> buyCar());
         loadButton.addActionListener(e -> loadCarsFromFile());
+        importButton.addActionListener(e -> importCarFeed());
+        syncButton.addActionListener(e -> syncCarFeed());
+        reportButton.addActionListener(e -> salesReport());
         exitButton.addActionListener(e -> exitApplication());
 
         // Add buttons to the panel
@@ -72,34 +145,170 @@ public class CarManagementGUI {
         panel.add(removeButton);
         panel.add(updateButton);
         panel.add(viewButton);
+        panel.add(filterButton);
         panel.add(buyButton);
         panel.add(loadButton);
+        panel.add(importButton);
+        panel.add(syncButton);
+        panel.add(reportButton);
         panel.add(exitButton);
 
-        frame.add(panel, BorderLayout.SOUTH);
+        // Status bar below the buttons
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        statusLabel = new JLabel(" ");
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> {
+            for (AsyncDBService.Task<?> task : runningTasks) {
+                task.cancel();
+            }
+            statusLabel.setText("Cancelling...");
+        });
+        tableModel.addTableModelListener(e -> updateStatus());
+        JPanel statusBar = new JPanel(new BorderLayout(5, 0));
+        statusBar.add(statusLabel, BorderLayout.CENTER);
+        statusBar.add(progressBar, BorderLayout.WEST);
+        statusBar.add(cancelButton, BorderLayout.EAST);
+
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(panel, BorderLayout.CENTER);
+        south.add(statusBar, BorderLayout.SOUTH);
+        frame.add(south, BorderLayout.SOUTH);
         frame.setVisible(true);
     }
+    /**
+     * Runs store work in the background and shows it in the status bar until it finishes.
+     *
+     * @param description what the work does, shown while it runs
+     * @param work the store work
+     * @param onDone receives the result on the event dispatch thread
+     */
+    private <T> void runInBackground(String description, AsyncDBService.Work<T> work, Consumer<T> onDone) {
+        AsyncDBService.Task<?>[] submitted = new AsyncDBService.Task<?>[1];
+        submitted[0] = dbService.submit(work, new AsyncDBService.Callback<T>() {
+            @Override
+            public void done(T result) {
+                finished(submitted[0]);
+                onDone.accept(result);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                finished(submitted[0]);
+                outputArea.append(description + " failed: " + e.getMessage() + "\n");
+            }
+
+            @Override
+            public void progress(String message) {
+                statusLabel.setText(message);
+            }
+        });
+        runningTasks.add(submitted[0]);
+        statusLabel.setText(description + "...");
+        updateStatus();
+    }
+    /**
+     * Removes finished work from the status bar.
+     */
+    private void finished(AsyncDBService.Task<?> task) {
+        runningTasks.remove(task);
+        updateStatus();
+    }
+    /**
+     * Shows the busy indicator while work is running, and the row count of the table otherwise.
+     */
+    private void updateStatus() {
+        boolean busy = !runningTasks.isEmpty();
+        progressBar.setVisible(busy);
+        cancelButton.setEnabled(busy);
+        if (!busy) {
+            statusLabel.setText(tableModel.getRowCount() + " cars" + (tableModel.getFilter() != null ? " (filtered)" : "")
+                    + " | " + carCache.getStats());
+        }
+    }
     /**
      * Allows user to load a different SQLite database using a file chooser.
      */
     private void loadCarsFromFile() {
+        if (dbHelper == null) {
+            outputArea.append("Opening another database needs a SQLite store; restart with the database file.\n");
+            return;
+        }
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Select SQLite Database File");
         int result = fileChooser.showOpenDialog(frame);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            dbHelper.disconnect();
-            if (dbHelper.connect(selectedFile.getAbsolutePath())) {
-                outputArea.append("Successfully loaded new database from file: " + selectedFile.getName() + "\n");
-            } else {
-                outputArea.append("Failed to connect to new database.\n");
-            }
+            runInBackground("Opening " + selectedFile.getName(), task -> {
+                dbHelper.disconnect(); // Flushes the cache's pending updates to the old database
+                carCache.invalidate();
+                return dbHelper.connect(selectedFile.getAbsolutePath());
+            }, connected -> {
+                if (connected) {
+                    outputArea.append("Successfully loaded new database from file: " + selectedFile.getName() + "\n");
+                } else {
+                    outputArea.append("Failed to connect to new database.\n");
+                }
+                viewCars();
+            });
         } else {
             outputArea.append("File selection cancelled.\n");
         }
     }
     /**
-     * Prompts user to enter car details and adds the car to the database.
+     * Bulk imports a comma-separated car feed file into the store.
+     * Into a SQLite database the status bar counts the rows as they are written, and Cancel stops the import.
+     */
+    private void importCarFeed() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select Car Feed File");
+        if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            outputArea.append("File selection cancelled.\n");
+            return;
+        }
+        String path = fileChooser.getSelectedFile().getAbsolutePath();
+        if (dbHelper == null) {
+            runInBackground("Loading " + fileChooser.getSelectedFile().getName(), task -> store.loadCarsFromFile(path),
+                    loaded -> outputArea.append(loaded ? "Car feed loaded.\n" : "Car feed loaded with errors: " + store.getLoadErrors() + "\n"));
+            return;
+        }
+        runInBackground("Importing " + fileChooser.getSelectedFile().getName(), task ->
+                dbHelper.importCarsFromFile(path, CarInventoryDBHelper.DEFAULT_BATCH_SIZE,
+                        CarInventoryDBHelper.DEFAULT_COMMIT_INTERVAL, (written, rejected) -> {
+                            task.progress(String.format("Imported %,d cars, %,d lines rejected", written, rejected));
+                            return !task.isCancelled();
+                        }), result -> {
+            outputArea.append(result + "\n");
+            if (!result.getRejectedLines().isEmpty()) {
+                outputArea.append("Rejected lines: " + result.getRejectedLines() + "\n");
+            }
+        });
+    }
+    /**
+     * Brings the store in line with a complete car feed, applying only the cars added, changed and gone.
+     */
+    private void syncCarFeed() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select Complete Car Feed File");
+        if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            outputArea.append("File selection cancelled.\n");
+            return;
+        }
+        String path = fileChooser.getSelectedFile().getAbsolutePath();
+        runInBackground("Syncing " + fileChooser.getSelectedFile().getName(), task -> {
+            carCache.flush(); // Compare against the prices and features the user has already entered
+            return new FeedSync(store).sync(path);
+        }, delta -> {
+            outputArea.append(delta + "\n");
+            if (!delta.getRejectedLines().isEmpty()) {
+                outputArea.append("Rejected lines: " + delta.getRejectedLines() + "\n");
+            }
+        });
+    }
+    /**
+     * Prompts user to enter car details and adds the car to the store.
      */
     private void addCar() {
         try {
@@ -108,11 +317,13 @@ public class CarManagementGUI {
             String model = JOptionPane.showInputDialog("Enter Model:");
             float price = Float.parseFloat(JOptionPane.showInputDialog("Enter Price:"));
             String features = JOptionPane.showInputDialog("Enter Features:");
-            if (dbHelper.addCar(year, make, model, price, features)) {
-                outputArea.append("Car added successfully.\n");
-            } else {
-                outputArea.append("Failed to add car.\n");
-            }
+            runInBackground("Adding car", task -> carCache.addCar(year, make, model, price, features), added -> {
+                if (added) {
+                    outputArea.append("Car added successfully.\n");
+                } else {
+                    outputArea.append("Failed to add car.\n");
+                }
+            });
         } catch (NumberFormatException e) {
             outputArea.append("Invalid number input.\n");
         }
@@ -123,11 +334,13 @@ public class CarManagementGUI {
     private void removeCar() {
         try {
             int id = Integer.parseInt(JOptionPane.showInputDialog("Enter Car ID to remove:"));
-            if (dbHelper.removeCar(id)) {
-                outputArea.append("Car removed successfully.\n");
-            } else {
-                outputArea.append("Failed to remove car.\n");
-            }
+            runInBackground("Removing car", task -> carCache.removeCar(id), removed -> {
+                if (removed) {
+                    outputArea.append("Car removed successfully.\n");
+                } else {
+                    outputArea.append("Failed to remove car.\n");
+                }
+            });
         } catch (NumberFormatException e) {
             outputArea.append("Invalid ID.\n");
         }
@@ -140,69 +353,199 @@ public class CarManagementGUI {
             int id = Integer.parseInt(JOptionPane.showInputDialog("Enter Car ID to update:"));
             float price = Float.parseFloat(JOptionPane.showInputDialog("Enter new Price:"));
             String features = JOptionPane.showInputDialog("Enter new Features:");
-            if (dbHelper.updateCar(id, price, features)) {
-                outputArea.append("Car updated successfully.\n");
-            } else {
-                outputArea.append("Update failed.\n");
-            }
+            runInBackground("Updating car", task -> carCache.getCar(id), car -> {
+                if (car.isPresent()) {
+                    carCache.updateCar(id, price, features); // Written to the store by the cache's next flush
+                    tableModel.showUpdate(id, price, features); // The store publishes it only once written
+                    outputArea.append("Car updated successfully.\n");
+                } else {
+                    outputArea.append("Update failed.\n");
+                }
+            });
         } catch (NumberFormatException e) {
             outputArea.append("Invalid input.\n");
         }
     }
     /**
-     * Displays the list of cars currently in the inventory.
+     * Applies the changes the store published since the last poll to the inventory table. Taking at
+     * most MAX_CHANGES_PER_POLL at a time keeps a burst, such as a feed sync, from freezing the window;
+     * if the table falls a whole feed behind, it gets one RELOADED and is refreshed once.
+     */
+    private void showChanges() {
+        List<InventoryChangeFeed.Change> batch = new ArrayList<>();
+        changes.poll(MAX_CHANGES_PER_POLL, batch::add);
+        if (!batch.isEmpty()) {
+            tableModel.applyChanges(batch);
+        }
+    }
+    /**
+     * Reloads the inventory table from the store. Only the visible rows are fetched.
      */
     private void viewCars() {
-        List<String> cars = dbHelper.getAllCars();
-        outputArea.setText("");
-        if (cars.isEmpty()) {
-            outputArea.append("No cars in inventory.\n");
-        } else {
-            for (String car : cars) {
-                outputArea.append(car + "\n");
+        tableModel.refresh();
+    }
+    /**
+     * Filters the inventory table by make, model, maximum price and feature. Blank answers match anything,
+     * and leaving every answer blank shows the whole inventory again.
+     */
+    private void filterCars() {
+        String make = JOptionPane.showInputDialog("Make (blank for any):");
+        if (make == null) return;
+        String model = JOptionPane.showInputDialog("Model (blank for any):");
+        if (model == null) return;
+        String maxPrice = JOptionPane.showInputDialog("Maximum price (blank for any):");
+        if (maxPrice == null) return;
+        String feature = JOptionPane.showInputDialog("Feature, e.g. Sunroof (blank for any):");
+        if (feature == null) return;
+        try {
+            CarQuery query = new CarQuery();
+            boolean filtered = false;
+            if (!make.isBlank()) {
+                query.make(make.trim());
+                filtered = true;
+            }
+            if (!model.isBlank()) {
+                query.model(model.trim());
+                filtered = true;
+            }
+            if (!maxPrice.isBlank()) {
+                query.maxPrice(Float.parseFloat(maxPrice.trim()));
+                filtered = true;
+            }
+            if (!feature.isBlank()) {
+                query.feature(feature.trim());
+                filtered = true;
             }
+            tableModel.setFilter(filtered ? query : null); // The status bar shows the new count once it arrives
+            outputArea.append(filtered ? "Filter applied.\n" : "Filter cleared.\n");
+        } catch (NumberFormatException e) {
+            outputArea.append("Invalid price.\n");
         }
     }
     /**
      * Allows the user to purchase a car by entering its ID.
      * Calculates tax and discount and confirms purchase.
+     * The car is looked up and marked as sold in the background; the dialogs stay on the event dispatch thread.
      */
     private void buyCar() {
-        if (dbHelper == null) {
-            JOptionPane.showMessageDialog(frame, "No database connected.");
-            return;
-        }
-
         String idInput = JOptionPane.showInputDialog("Enter the ID of the car to purchase:");
         if (idInput == null || idInput.isEmpty()) return;
 
         try {
             int id = Integer.parseInt(idInput);
-            dbHelper.processCarPurchase(id); // Executes purchase workflow
-            viewCars(); // Refresh car list after purchase
+            runInBackground("Looking up car " + id, task -> carCache.getCar(id), car -> {
+                if (car.isEmpty() || car.get().isSold()) {
+                    JOptionPane.showMessageDialog(frame, "Car not available or already sold.");
+                } else {
+                    confirmPurchase(car.get());
+                }
+            });
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(frame, "Invalid ID input.");
         }
     }
+    /**
+     * Asks for the tax rate and discount, shows the final price and buys the car at that price if the user confirms.
+     * If another terminal sold the car or changed its price meanwhile, the purchase is refused.
+     *
+     * @param car the available car to purchase
+     */
+    private void confirmPurchase(Car car) {
+        try {
+            String taxInput = JOptionPane.showInputDialog(frame, "Enter sales tax rate (as %):");
+            if (taxInput == null) return;
+            String discountInput = JOptionPane.showInputDialog(frame, "Enter discount amount:");
+            if (discountInput == null) return;
+            float taxRate = Float.parseFloat(taxInput);
+            float discount = Float.parseFloat(discountInput);
+            PricingEngine.Quote quote = pricing.quote(car, taxRate, discount);
+            String finalPrice = PricingEngine.formatCents(quote.getTotalCents());
+
+            int confirm = JOptionPane.showConfirmDialog(frame,
+                    quote + "\nFinal Purchase Price: " + finalPrice + "\nDo you want to proceed?",
+                    "Confirm Purchase",
+                    JOptionPane.YES_NO_OPTION);
+            if (confirm != JOptionPane.YES_OPTION) {
+                JOptionPane.showMessageDialog(frame, "Purchase cancelled.");
+                return;
+            }
+            runInBackground("Purchasing car " + car.getId(), task -> carCache.purchaseCar(car.getId(), quote), result -> {
+                JOptionPane.showMessageDialog(frame, InventoryStore.purchaseMessage(result, finalPrice));
+                if (result != InventoryStore.PurchaseResult.SOLD) {
+                    viewCars(); // Another terminal may have changed the car, which the change feed does not see
+                }
+            });
+        } catch (IllegalArgumentException e) { // NumberFormatException, or a negative rate or discount
+            JOptionPane.showMessageDialog(frame, "Error during purchase: " + e.getMessage());
+        }
+    }
 
     /**
-     * Exits the application and disconnects from the database.
+     * Shows this month's sales totals and the revenue per make, read from the sales ledger's rollups.
+     */
+    private void salesReport() {
+        if (dbHelper == null) {
+            outputArea.append("Sales reports need a SQLite store.\n");
+            return;
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate monthStart = today.withDayOfMonth(1);
+        runInBackground("Building sales report", task -> {
+            SalesLedger ledger = dbHelper.getSalesLedger();
+            StringBuilder report = new StringBuilder("Sales this month: ");
+            SalesLedger.ReportRow month = ledger.totals(monthStart, today);
+            report.append(month == null ? "unavailable" : month.toString()).append('\n');
+            for (SalesLedger.ReportRow row : ledger.revenueByMake()) {
+                report.append("  ").append(row).append('\n');
+            }
+            return report.toString();
+        }, report -> outputArea.append(report));
+    }
+
+    /**
+     * Exits the application: cancels the running work, waits for it to stop on a background
+     * thread while the window shows what it is waiting for, then flushes the cache and closes the store.
      */
     private void exitApplication() {
+        if (closing) return;
         int confirm = JOptionPane.showConfirmDialog(frame, "Are you sure you want to exit?", "Exit Confirmation", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            dbHelper.disconnect();
-            System.exit(0);
+            closing = true;
+            for (AsyncDBService.Task<?> task : runningTasks) {
+                task.cancel();
+            }
+            dbService.shutdown();
+            changes.close();
+            frame.setEnabled(false);
+            statusLabel.setText("Closing...");
+            Thread closer = new Thread(() -> {
+                try {
+                    // The store must not close under an import that is still writing
+                    while (!dbService.awaitTermination(1, TimeUnit.SECONDS)) {
+                        SwingUtilities.invokeLater(() -> statusLabel.setText(
+                                "Closing: waiting for " + runningTasks.size() + " task(s) to stop..."));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                carCache.close();
+                store.close();
+                System.exit(0);
+            }, "close-store");
+            closer.start();
         }
     }
 
     /**
      * Main method to launch the GUI application.
      *
-     * @param args command-line arguments (not used)
+     * @param args optionally the inventory store to use, e.g. "sqlite:cars.db"; otherwise the
+     *             inventory.store system property, or a SQLite database file asked for at startup
      */
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(CarManagementGUI::new);
+        String storeSpec = InventoryStores.specFrom(args, null);
+        InventoryMetrics.startReportingFromProperty();
+        SwingUtilities.invokeLater(() -> new CarManagementGUI(storeSpec));
     }
 }
 
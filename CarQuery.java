@@ -0,0 +1,201 @@
+/**
+ * CarQuery describes a search over the inventory, such as
+ * "all available Toyotas from 2018 to 2021 under $25,000":
+ * <pre>
+ * new CarQuery().make("Toyota").years(2018, 2021).maxPrice(25000).availableOnly()
+ * </pre>
+ * A feature criterion such as {@code feature("Sunroof")} is tested against each car's
+ * feature bitset from the shared CarDictionary rather than by searching the features text.
+ * Every criterion is optional; an empty query matches every car.
+ * Make and model comparisons ignore case, and ranges are inclusive.
+ */
+class CarQuery {
+    private String make;
+    private String model;
+    private int minYear = Integer.MIN_VALUE;
+    private int maxYear = Integer.MAX_VALUE;
+    private float minPrice = Float.NEGATIVE_INFINITY;
+    private float maxPrice = Float.POSITIVE_INFINITY;
+    private boolean availableOnly;
+    private String feature;
+    private CarDictionary.FeatureFilter featureFilter; // Compiled from feature on first use
+
+    /**
+     * Restricts the query to one make.
+     *
+     * @param make the make to match, or null for any make
+     * @return this query
+     */
+    CarQuery make(String make) {
+        this.make = make;
+        return this;
+    }
+
+    /**
+     * Restricts the query to one model.
+     *
+     * @param model the model to match, or null for any model
+     * @return this query
+     */
+    CarQuery model(String model) {
+        this.model = model;
+        return this;
+    }
+
+    /**
+     * Restricts the query to an inclusive range of years.
+     *
+     * @param minYear the earliest year
+     * @param maxYear the latest year
+     * @return this query
+     */
+    CarQuery years(int minYear, int maxYear) {
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        return this;
+    }
+
+    /**
+     * Restricts the query to an inclusive price range.
+     *
+     * @param minPrice the lowest price
+     * @param maxPrice the highest price
+     * @return this query
+     */
+    CarQuery prices(float minPrice, float maxPrice) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        return this;
+    }
+
+    /**
+     * Restricts the query to cars priced at or below a limit.
+     *
+     * @param maxPrice the highest price
+     * @return this query
+     */
+    CarQuery maxPrice(float maxPrice) {
+        this.maxPrice = maxPrice;
+        return this;
+    }
+
+    /**
+     * Restricts the query to cars that have not been sold.
+     *
+     * @return this query
+     */
+    CarQuery availableOnly() {
+        this.availableOnly = true;
+        return this;
+    }
+
+    /**
+     * Restricts the query to cars with a feature. A phrase of several words matches cars
+     * whose features contain every word, ignoring case and order.
+     *
+     * @param feature the feature to require, e.g. "Sunroof", or null for any features
+     * @return this query
+     */
+    CarQuery feature(String feature) {
+        this.feature = feature;
+        this.featureFilter = null;
+        return this;
+    }
+
+    /**
+     * @return the make to match, or null
+     */
+    String getMake() { return make; }
+
+    /**
+     * @return the model to match, or null
+     */
+    String getModel() { return model; }
+
+    /**
+     * @return the earliest matching year
+     */
+    int getMinYear() { return minYear; }
+
+    /**
+     * @return the latest matching year
+     */
+    int getMaxYear() { return maxYear; }
+
+    /**
+     * @return the lowest matching price
+     */
+    float getMinPrice() { return minPrice; }
+
+    /**
+     * @return the highest matching price
+     */
+    float getMaxPrice() { return maxPrice; }
+
+    /**
+     * @return true if sold cars are excluded
+     */
+    boolean isAvailableOnly() { return availableOnly; }
+
+    /**
+     * @return the feature to require, or null
+     */
+    String getFeature() { return feature; }
+
+    /**
+     * Returns the feature criterion compiled against the shared vocabulary, compiling it again
+     * if it named a word the vocabulary has learned since.
+     *
+     * @return the compiled feature filter, or null if the query has no feature criterion
+     */
+    CarDictionary.FeatureFilter getFeatureFilter() {
+        if (feature == null) {
+            return null;
+        }
+        CarDictionary.FeatureFilter filter = featureFilter;
+        if (filter == null || !filter.isCurrent()) {
+            filter = CarDictionary.shared().filter(feature);
+            featureFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * @return true if the query restricts the year
+     */
+    boolean hasYearRange() {
+        return minYear != Integer.MIN_VALUE || maxYear != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the query restricts the price
+     */
+    boolean hasPriceRange() {
+        return minPrice != Float.NEGATIVE_INFINITY || maxPrice != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return every criterion, e.g. "make=Toyota model=null years=2018..2021 prices=-Infinity..25000.0 availableOnly=true feature=null";
+     *         equal queries give equal strings
+     */
+    @Override
+    public String toString() {
+        return "make=" + make + " model=" + model + " years=" + minYear + ".." + maxYear
+                + " prices=" + minPrice + ".." + maxPrice + " availableOnly=" + availableOnly + " feature=" + feature;
+    }
+
+    /**
+     * Checks a single car against every criterion.
+     *
+     * @param car the car to check
+     * @return true if the car matches
+     */
+    boolean matches(Car car) {
+        return (make == null || make.equalsIgnoreCase(car.getMake()))
+                && (model == null || model.equalsIgnoreCase(car.getModel()))
+                && car.getYear() >= minYear && car.getYear() <= maxYear
+                && car.getPrice() >= minPrice && car.getPrice() <= maxPrice
+                && !(availableOnly && car.isSold())
+                && (feature == null || car.getFeatureSet().matches(getFeatureFilter()));
+    }
+}
@@ -0,0 +1,370 @@
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * CarTableModel is a lazy JTable model over the cars table. It asks the database only for
+ * the pages of rows the table actually paints, and keeps the most recently used pages
+ * (usually the ones around the visible window) in a small cache, so scrolling through a
+ * full-size inventory never loads the whole table. Sorting and filtering run in SQL.
+ * Counts and pages come through the CarCache, so redisplaying an unchanged lot does not
+ * touch the database. Pages are read on the AsyncDBService threads: a row whose page has not arrived yet shows
+ * as blank and is repainted when it does. All other state is only touched on the event dispatch thread.
+ * Changes published by the store are applied to the cached pages in place where they cannot move
+ * other rows (see applyChanges), so adding, removing, updating or selling a car does not reload the table.
+ */
+class CarTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    /** Number of rows fetched from the database at a time. */
+    static final int PAGE_SIZE = 200;
+    /** Number of pages kept in memory. */
+    static final int MAX_CACHED_PAGES = 16;
+
+    private static final String[] COLUMN_NAMES = {"ID", "Year", "Make", "Model", "Price", "Status", "Features"};
+    private static final CarColumn[] SORT_COLUMNS = {
+            CarColumn.ID, CarColumn.YEAR, CarColumn.MAKE, CarColumn.MODEL, CarColumn.PRICE, CarColumn.STATUS, CarColumn.FEATURES
+    };
+    private static final Class<?>[] COLUMN_CLASSES = {
+            Integer.class, Integer.class, String.class, String.class, Float.class, String.class, String.class
+    };
+
+    private final CarCache cache;
+    private final AsyncDBService service;
+    private final Map<Integer, List<Car>> pages = new LinkedHashMap<Integer, List<Car>>(MAX_CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Car>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private int generation; // Bumped on every refresh so late pages of an old query are dropped
+    private boolean counting; // A refresh is waiting for its row count
+    private CarQuery filter;
+    private int sortColumn;
+    private boolean ascending = true;
+    private int rowCount;
+
+    /**
+     * Creates an empty model; call refresh() to load the row count.
+     *
+     * @param cache the cached database to show
+     * @param service runs the queries in the background
+     */
+    CarTableModel(CarCache cache, AsyncDBService service) {
+        this.cache = cache;
+        this.service = service;
+    }
+
+    /**
+     * Recounts the rows in the background, then drops every cached page, e.g. after the table has been changed.
+     * The current rows stay on screen until the new count arrives.
+     */
+    void refresh() {
+        int current = ++generation;
+        loading.clear();
+        counting = true;
+        CarQuery query = filter;
+        service.submit(task -> cache.countCars(query), count -> {
+            if (current != generation) {
+                return;
+            }
+            counting = false;
+            pages.clear();
+            rowCount = (int) Math.max(0, Math.min(count, Integer.MAX_VALUE));
+            fireTableDataChanged();
+        });
+    }
+
+    /**
+     * Applies changes published by the store. Changes that cannot move other rows are applied to
+     * the cached pages in place: updates and sales patch their row, an added car is appended when
+     * the rows are in ascending id order, since new cars get the highest id, and a removed car on a
+     * cached page is deleted. Anything else, such as any change while a filter is set or an update
+     * of the sort column, refreshes the table once for the whole batch.
+     *
+     * @param changes the changes, oldest first
+     */
+    void applyChanges(List<InventoryChangeFeed.Change> changes) {
+        if (counting) {
+            refresh(); // The count on its way may predate the changes
+            return;
+        }
+        dropPagesInFlight();
+        for (InventoryChangeFeed.Change change : changes) {
+            if (!applyInPlace(change)) {
+                refresh();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Shows a price and feature update at once, e.g. one the CarCache has not written to the store yet.
+     *
+     * @param id the ID of the car
+     * @param price the new price
+     * @param features the new features
+     */
+    void showUpdate(int id, float price, String features) {
+        if (counting || filter != null) {
+            refresh();
+            return;
+        }
+        dropPagesInFlight();
+        if (!updateInPlace(id, price, features)) {
+            refresh();
+        }
+    }
+
+    private boolean applyInPlace(InventoryChangeFeed.Change change) {
+        if (filter != null) {
+            return false; // Any change may move a car into or out of the filter
+        }
+        int id = change.getCarId();
+        switch (change.getKind()) {
+            case UPDATED:
+                return updateInPlace(id, change.getPrice(), change.getFeatures());
+            case SOLD:
+                return SORT_COLUMNS[sortColumn] != CarColumn.STATUS && patch(id, Car::markAsSold);
+            case ADDED:
+                return appendInPlace(id);
+            case REMOVED:
+                return removeInPlace(id);
+            default:
+                return false;
+        }
+    }
+
+    private boolean updateInPlace(int id, float price, String features) {
+        CarColumn sortBy = SORT_COLUMNS[sortColumn];
+        return sortBy != CarColumn.PRICE && sortBy != CarColumn.FEATURES && patch(id, car -> {
+            car.setPrice(price);
+            car.setFeatures(features);
+        });
+    }
+
+    /**
+     * Changes the row of a car if it is on a cached page; the Car objects are shared with the
+     * CarCache, so the row gets an edited copy.
+     *
+     * @return true, since a car on no cached page is read afresh when its page is
+     */
+    private boolean patch(int id, Consumer<Car> edit) {
+        int row = rowOf(id);
+        if (row >= 0) {
+            int pageIndex = row / PAGE_SIZE;
+            List<Car> page = new ArrayList<>(pages.get(pageIndex));
+            Car car = InventoryStores.copyOf(page.get(row - pageIndex * PAGE_SIZE));
+            edit.accept(car);
+            page.set(row - pageIndex * PAGE_SIZE, car);
+            pages.put(pageIndex, page);
+            fireTableRowsUpdated(row, row);
+        }
+        return true;
+    }
+
+    private boolean appendInPlace(int id) {
+        if (SORT_COLUMNS[sortColumn] != CarColumn.ID || !ascending) {
+            return false;
+        }
+        List<Car> last = pages.get(Math.max(0, rowCount - 1) / PAGE_SIZE);
+        if (last != null && !last.isEmpty() && last.get(last.size() - 1).getId() > id) {
+            return false; // Not the highest id, so it belongs somewhere in the middle
+        }
+        pages.remove(rowCount / PAGE_SIZE); // The page the new row lands on is read again when painted
+        rowCount++;
+        fireTableRowsInserted(rowCount - 1, rowCount - 1);
+        return true;
+    }
+
+    private boolean removeInPlace(int id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false; // Its row is not known, so neither are the rows that move up
+        }
+        int firstMoved = row / PAGE_SIZE;
+        pages.keySet().removeIf(pageIndex -> pageIndex >= firstMoved); // Their rows moved up by one
+        rowCount--;
+        fireTableRowsDeleted(row, row);
+        return true;
+    }
+
+    /**
+     * @return the model row of a car on a cached page, or -1
+     */
+    private int rowOf(int id) {
+        for (Map.Entry<Integer, List<Car>> entry : pages.entrySet()) {
+            List<Car> page = entry.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                if (page.get(i).getId() == id) {
+                    return entry.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forgets the pages being read, which may predate the changes about to be applied; they are
+     * requested again when painted.
+     */
+    private void dropPagesInFlight() {
+        if (!loading.isEmpty()) {
+            generation++;
+            loading.clear();
+        }
+    }
+
+    /**
+     * Shows only the cars matching a query.
+     *
+     * @param filter the search criteria, or null to show every car
+     */
+    void setFilter(CarQuery filter) {
+        this.filter = filter;
+        refresh();
+    }
+
+    /**
+     * @return the current filter, or null
+     */
+    CarQuery getFilter() { return filter; }
+
+    /**
+     * Sorts the rows by a column. Sorting the current sort column again flips the direction.
+     *
+     * @param column the model index of the column
+     */
+    void toggleSort(int column) {
+        if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = true;
+        }
+        refresh();
+    }
+
+    /**
+     * @return the model index of the sort column
+     */
+    int getSortColumn() { return sortColumn; }
+
+    /**
+     * @return true if the rows are sorted in ascending order
+     */
+    boolean isAscending() { return ascending; }
+
+    /**
+     * Returns the car shown in a row, starting to fetch its page if needed.
+     *
+     * @param row the model row index
+     * @return the car, or null if its page is still loading or could not be read
+     */
+    Car getCarAt(int row) {
+        int pageIndex = row / PAGE_SIZE;
+        List<Car> page = pages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        int offset = row - pageIndex * PAGE_SIZE;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Reads one page in the background. In the default id order the page after a cached one is read
+     * by keyset from its last id, which stays fast however deep the user scrolls; other orders use OFFSET.
+     */
+    private void loadPage(int pageIndex) {
+        if (!loading.add(pageIndex)) {
+            return;
+        }
+        int current = generation;
+        CarQuery query = filter;
+        CarColumn sortBy = SORT_COLUMNS[sortColumn];
+        boolean up = ascending;
+        boolean keyset = false;
+        int afterId = -1; // Ids start at 0 in some stores, so the first page starts after -1
+        if (sortBy == CarColumn.ID && up) {
+            List<Car> previous = pages.get(pageIndex - 1);
+            if (pageIndex == 0) {
+                keyset = true;
+            } else if (previous != null && previous.size() == PAGE_SIZE) {
+                keyset = true;
+                afterId = previous.get(PAGE_SIZE - 1).getId();
+            }
+        }
+        boolean byKeyset = keyset;
+        int keysetStart = afterId;
+        service.submit(task -> byKeyset
+                ? cache.getCarsPage(query, keysetStart, PAGE_SIZE, CarColumn.ALL)
+                : cache.getCarsSorted(query, sortBy, up, (long) pageIndex * PAGE_SIZE, PAGE_SIZE, CarColumn.ALL),
+                new AsyncDBService.Callback<List<Car>>() {
+                    @Override
+                    public void done(List<Car> page) {
+                        if (current != generation) {
+                            return;
+                        }
+                        loading.remove(pageIndex);
+                        pages.put(pageIndex, page);
+                        int first = pageIndex * PAGE_SIZE;
+                        int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+                        if (first <= last) {
+                            fireTableRowsUpdated(first, last);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        e.printStackTrace();
+                        if (current == generation) {
+                            loading.remove(pageIndex); // E.g. SQLITE_BUSY: the next paint of these rows reads the page again
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return COLUMN_CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = getCarAt(row);
+        if (car == null) {
+            return null;
+        }
+        switch (column) {
+            case 0: return car.getId();
+            case 1: return car.getYear();
+            case 2: return car.getMake();
+            case 3: return car.getModel();
+            case 4: return car.getPrice();
+            case 5: return car.isSold() ? "Sold" : "Available";
+            default: return car.getFeatures();
+        }
+    }
+}
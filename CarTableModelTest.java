@@ -0,0 +1,77 @@
+import org.junit.jupiter.api.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarTableModelTest {
+
+    @Test
+    void testFirstRowIsTheCarWithIdZero() throws Exception {
+        InventoryStore store = new MemoryInventoryStore();
+        for (int i = 0; i < CarTableModel.PAGE_SIZE + 5; i++) {
+            store.addCar(new Car(2000 + i % 20, "Make" + i % 7, "Model", 1000 + i, "F"));
+        }
+        try (CarCache cache = new CarCache(store); AsyncDBService service = new AsyncDBService()) {
+            CarTableModel model = new CarTableModel(cache, service);
+            onEventThread(() -> {
+                model.refresh();
+                return null;
+            });
+            awaitOnEventThread(() -> model.getRowCount() == CarTableModel.PAGE_SIZE + 5);
+
+            awaitOnEventThread(() -> model.getCarAt(0) != null);
+            assertEquals(0, (int) onEventThread(() -> model.getCarAt(0).getId()), "Row 0 should be car 0.");
+            awaitOnEventThread(() -> model.getCarAt(CarTableModel.PAGE_SIZE + 4) != null);
+            assertEquals(CarTableModel.PAGE_SIZE + 4, (int) onEventThread(() -> model.getCarAt(CarTableModel.PAGE_SIZE + 4).getId()),
+                    "The last row should be the last car, not blank.");
+        }
+    }
+
+    @Test
+    void testFailedPageIsReadAgain() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1);
+        InventoryStore store = new MemoryInventoryStore() {
+            @Override
+            public synchronized List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException("database is locked");
+                }
+                return super.getCarsPage(query, afterId, limit, columns);
+            }
+        };
+        store.addCar(new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth"));
+        try (CarCache cache = new CarCache(store); AsyncDBService service = new AsyncDBService()) {
+            CarTableModel model = new CarTableModel(cache, service);
+            onEventThread(() -> {
+                model.refresh();
+                return null;
+            });
+            awaitOnEventThread(() -> model.getRowCount() == 1);
+            awaitOnEventThread(() -> model.getCarAt(0) != null);
+            assertEquals("Corolla", onEventThread(() -> model.getCarAt(0).getModel()), "The row should not stay blank.");
+        }
+    }
+
+    /**
+     * Reads the model on the event dispatch thread, where it lives.
+     */
+    private static <T> T onEventThread(Supplier<T> read) throws InterruptedException, InvocationTargetException {
+        AtomicReference<T> result = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> result.set(read.get()));
+        return result.get();
+    }
+
+    private static void awaitOnEventThread(Supplier<Boolean> condition) throws Exception {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!onEventThread(condition)) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the model");
+            Thread.sleep(10);
+        }
+    }
+}
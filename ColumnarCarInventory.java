@@ -0,0 +1,663 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * ColumnarCarInventory is an InventoryStore that keeps the lot as a struct of arrays instead of
+ * one Car object per car: ids, years and prices in cents are int arrays, make, model and features
+ * are int codes into a shared string dictionary, and sold and removed cars are bits in BitSets.
+ * A car costs a few dozen bytes however many share a make or model, and scans walk primitive
+ * arrays in order instead of chasing pointers.
+ * <p>
+ * Rows are kept in id order, so lookups by id are a binary search and keyset pages are a slice.
+ * Removed rows are compacted away once they outnumber live ones. Sorting orders row numbers by
+ * packed primitive keys and only builds Car objects for the rows returned.
+ * Prices are stored in whole cents (up to $21,474,836.47), as PricingEngine computes with them.
+ * Cars handed out are copies; asCars() gives read-only live Car views for code that wants a collection.
+ * Every method holds the inventory's lock. Its operations are timed in the "columnar" InventoryMetrics.
+ */
+class ColumnarCarInventory implements InventoryStore {
+    private static final InventoryMetrics METRICS = InventoryMetrics.forStore("columnar");
+    private static final int NO_CODE = -1; // Code of a null string
+    private static final int MIN_COMPACTION_TOMBSTONES = 64;
+
+    private int[] ids = new int[16];
+    private int[] years = new int[16];
+    private int[] priceCents = new int[16];
+    private int[] makes = new int[16];
+    private int[] models = new int[16];
+    private int[] features = new int[16];
+    private final BitSet sold = new BitSet();
+    private final BitSet removed = new BitSet();
+    private int rows; // Rows in use, live or removed
+    private int live;
+    private int nextId;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private long version; // Bumped by every change, so the cached sort order is dropped
+    private String sortKey;
+    private long sortVersion = -1;
+    private int[] sortedRows;
+    private List<CarFeedReader.LineError> loadErrors = Collections.emptyList();
+    private final InventoryChangeFeed changes = new InventoryChangeFeed();
+
+    @Override
+    public synchronized boolean addCar(Car car) {
+        long start = System.nanoTime();
+        try {
+            if (!append(car)) {
+                return false;
+            }
+            changes.added(car.getId());
+            return true;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.ADD_CAR, start);
+        }
+    }
+
+    /**
+     * Adds a car without publishing it, for the loaders.
+     */
+    private boolean append(Car car) {
+        int id = car.getId() == Car.NO_ID ? nextId : car.getId();
+        long cents = PricingEngine.toCents(car.getPrice());
+        if (id < nextId || cents < 0 || cents > Integer.MAX_VALUE) {
+            return false; // Rows must stay in id order, and the price must fit the cents column
+        }
+        if (rows == ids.length) {
+            int capacity = rows * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            years = Arrays.copyOf(years, capacity);
+            priceCents = Arrays.copyOf(priceCents, capacity);
+            makes = Arrays.copyOf(makes, capacity);
+            models = Arrays.copyOf(models, capacity);
+            features = Arrays.copyOf(features, capacity);
+        }
+        ids[rows] = id;
+        years[rows] = car.getYear();
+        priceCents[rows] = (int) cents;
+        makes[rows] = encode(car.getMake());
+        models[rows] = encode(car.getModel());
+        features[rows] = encode(car.getFeatures());
+        sold.set(rows, car.isSold());
+        rows++;
+        live++;
+        nextId = id + 1;
+        version++;
+        car.setId(id);
+        return true;
+    }
+
+    @Override
+    public synchronized Optional<Car> getCar(int id) {
+        long start = System.nanoTime();
+        try {
+            int row = rowOf(id);
+            return row < 0 ? Optional.empty() : Optional.of(carAt(row));
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.GET_CAR, start);
+        }
+    }
+
+    @Override
+    public synchronized boolean removeCar(int id) {
+        long start = System.nanoTime();
+        try {
+            int row = rowOf(id);
+            if (row < 0) {
+                return false;
+            }
+            removed.set(row);
+            live--;
+            version++;
+            int tombstones = rows - live;
+            if (tombstones >= MIN_COMPACTION_TOMBSTONES && tombstones > live) {
+                compact();
+            }
+            changes.removed(id);
+            return true;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.REMOVE_CAR, start);
+        }
+    }
+
+    @Override
+    public synchronized boolean updateCar(int id, float price, String features) {
+        long start = System.nanoTime();
+        try {
+            return update(id, price, features);
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CAR, start);
+        }
+    }
+
+    /**
+     * Updates a car without timing it, so a batch is timed once by updateCars.
+     */
+    private boolean update(int id, float price, String features) {
+        int row = rowOf(id);
+        long cents = PricingEngine.toCents(price);
+        if (row < 0 || cents < 0 || cents > Integer.MAX_VALUE) {
+            return false;
+        }
+        priceCents[row] = (int) cents;
+        this.features[row] = encode(features);
+        version++;
+        changes.updated(id, price, features);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateCars(Collection<Car> cars) {
+        long start = System.nanoTime();
+        try {
+            for (Car car : cars) {
+                long cents = PricingEngine.toCents(car.getPrice());
+                if (cents < 0 || cents > Integer.MAX_VALUE) {
+                    return false; // Checked before anything is written
+                }
+            }
+            for (Car car : cars) {
+                update(car.getId(), car.getPrice(), car.getFeatures());
+            }
+            return true;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CARS, start);
+        }
+    }
+
+    @Override
+    public synchronized long countCars(CarQuery query) {
+        long start = System.nanoTime();
+        try {
+            if (query == null) {
+                return live;
+            }
+            Filter filter = new Filter(query);
+            long count = 0;
+            for (int row = 0; row < rows; row++) {
+                if (filter.matches(row)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    @Override
+    public synchronized List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns) {
+        long start = System.nanoTime();
+        int row = Arrays.binarySearch(ids, 0, rows, afterId);
+        row = row < 0 ? -row - 1 : row + 1; // First row with an id above afterId
+        Filter filter = new Filter(query);
+        List<Car> page = new ArrayList<>(Math.min(limit, DEFAULT_PAGE_SIZE));
+        for (; row < rows && page.size() < limit; row++) {
+            if (filter.matches(row)) {
+                page.add(carAt(row));
+            }
+        }
+        METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        return page;
+    }
+
+    @Override
+    public synchronized List<Car> getCarsSorted(CarQuery query, CarColumn sortBy, boolean ascending, long offset,
+                                                int limit, Set<CarColumn> columns) {
+        long start = System.nanoTime();
+        String key = query + " by=" + sortBy + " asc=" + ascending;
+        if (sortedRows == null || sortVersion != version || !key.equals(sortKey)) {
+            sortedRows = sortRows(new Filter(query), sortBy, ascending);
+            sortKey = key;
+            sortVersion = version;
+        }
+        List<Car> window = new ArrayList<>();
+        for (long i = offset; i < sortedRows.length && window.size() < limit; i++) {
+            window.add(carAt(sortedRows[(int) i]));
+        }
+        METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        return window;
+    }
+
+    /**
+     * Sorts the matching rows by packing each row's sort key and row number into one long:
+     * rows are in id order, so sorting the longs orders by key and breaks ties by id.
+     */
+    private int[] sortRows(Filter filter, CarColumn sortBy, boolean ascending) {
+        int[] rank = null;
+        if (sortBy == CarColumn.MAKE || sortBy == CarColumn.MODEL) {
+            rank = rankStrings(String.CASE_INSENSITIVE_ORDER);
+        } else if (sortBy == CarColumn.FEATURES) {
+            rank = rankStrings(Comparator.naturalOrder());
+        }
+        long[] packed = new long[live];
+        int n = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!filter.matches(row)) {
+                continue;
+            }
+            int key;
+            switch (sortBy) {
+                case YEAR:
+                    key = years[row];
+                    break;
+                case PRICE:
+                    key = priceCents[row];
+                    break;
+                case MAKE:
+                    key = rank[makes[row] + 1];
+                    break;
+                case MODEL:
+                    key = rank[models[row] + 1];
+                    break;
+                case FEATURES:
+                    key = rank[features[row] + 1];
+                    break;
+                case STATUS:
+                    key = sold.get(row) ? 1 : 0;
+                    break;
+                default:
+                    key = 0;
+                    break;
+            }
+            packed[n++] = ((key ^ 0x80000000L) << 32) | row; // Flipping the sign bit keeps negative keys first
+        }
+        Arrays.sort(packed, 0, n);
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[ascending ? i : n - 1 - i] = (int) packed[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * Ranks every dictionary string, giving strings the order considers equal the same rank.
+     * Index 0 is null, which sorts first; code c is at index c + 1.
+     */
+    private int[] rankStrings(Comparator<String> order) {
+        Integer[] byOrder = new Integer[strings.size()];
+        for (int i = 0; i < byOrder.length; i++) {
+            byOrder[i] = i;
+        }
+        Arrays.sort(byOrder, (a, b) -> order.compare(strings.get(a), strings.get(b)));
+        int[] rank = new int[strings.size() + 1];
+        int current = 0;
+        for (int i = 0; i < byOrder.length; i++) {
+            if (i > 0 && order.compare(strings.get(byOrder[i - 1]), strings.get(byOrder[i])) != 0) {
+                current++;
+            }
+            rank[byOrder[i] + 1] = current + 1;
+        }
+        return rank;
+    }
+
+    @Override
+    public synchronized PurchaseResult purchaseCar(int id, PricingEngine.Quote quote) {
+        long start = System.nanoTime();
+        try {
+            int row = rowOf(id);
+            if (row < 0 || sold.get(row)) {
+                return PurchaseResult.NOT_AVAILABLE;
+            }
+            if (priceCents[row] != quote.getBaseCents()) {
+                return PurchaseResult.PRICE_CHANGED;
+            }
+            sold.set(row);
+            version++;
+            changes.sold(id);
+            return PurchaseResult.SOLD;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.PURCHASE, start);
+        }
+    }
+
+    /**
+     * Loads a feed file, parsing it in parallel once it is large enough to pay off.
+     * Cars priced beyond the cents column are skipped and reported.
+     */
+    @Override
+    public synchronized boolean loadCarsFromFile(String filename) {
+        long start = System.nanoTime();
+        List<CarFeedReader.LineError> errors = new ArrayList<>();
+        long[] tooExpensive = new long[1];
+        try {
+            if (new File(filename).length() >= ParallelCarLoader.PARALLEL_THRESHOLD_BYTES) {
+                ParallelCarLoader.LoadResult result = new ParallelCarLoader().load(Paths.get(filename), car -> {
+                    if (!append(car)) {
+                        tooExpensive[0]++;
+                    }
+                });
+                errors.addAll(result.getErrors());
+            } else {
+                try (CarFeedReader reader = CarFeedReader.open(filename)) {
+                    Car car;
+                    while ((car = reader.next()) != null) {
+                        if (!append(car)) {
+                            tooExpensive[0]++;
+                        }
+                    }
+                    errors.addAll(reader.getErrors());
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+            errors.add(new CarFeedReader.LineError(0, "Could not read file: " + e.getMessage()));
+        }
+        if (tooExpensive[0] > 0) {
+            errors.add(new CarFeedReader.LineError(0, tooExpensive[0] + " cars priced too high to store were skipped"));
+        }
+        loadErrors = errors;
+        changes.reloaded();
+        METRICS.record(InventoryMetrics.Operation.LOAD_FILE, start);
+        return errors.isEmpty();
+    }
+
+    @Override
+    public synchronized List<CarFeedReader.LineError> getLoadErrors() {
+        return loadErrors;
+    }
+
+    @Override
+    public InventoryChangeFeed getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Nothing to release; the arrays are gone once the inventory is no longer referenced.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns the cars in id order as read-only Car views, for code written against Car objects.
+     * The list holds the cars present now; each view reads the columns on every call, so it shows
+     * the current price and status, and throws IllegalStateException once its car is removed.
+     *
+     * @return the cars as Car views
+     */
+    synchronized List<Car> asCars() {
+        int[] liveIds = new int[live];
+        int n = 0;
+        for (int row = removed.nextClearBit(0); row < rows; row = removed.nextClearBit(row + 1)) {
+            liveIds[n++] = ids[row];
+        }
+        return new AbstractList<Car>() {
+            @Override
+            public Car get(int index) {
+                return new View(liveIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return liveIds.length;
+            }
+        };
+    }
+
+    /**
+     * @return the number of distinct make, model and feature strings held in the dictionary
+     */
+    synchronized int getDictionarySize() {
+        return strings.size();
+    }
+
+    /**
+     * Estimates the heap held by the columns and the dictionary, e.g. to compare with one Car object per car.
+     *
+     * @return the estimated size in bytes
+     */
+    synchronized long estimateHeapBytes() {
+        long columns = 6L * 4 * ids.length + (sold.size() + removed.size()) / 8;
+        long dictionary = 0;
+        for (String s : strings) {
+            dictionary += 40 + 2L * s.length() + 48; // String with its array, plus its dictionary entry
+        }
+        return columns + dictionary;
+    }
+
+    /**
+     * @return e.g. "columnar (1,204 cars, 87 distinct strings)"
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("columnar (%,d cars, %,d distinct strings)", live, strings.size());
+    }
+
+    /**
+     * Returns the dictionary code of a string, adding the string if it is new.
+     */
+    private int encode(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = strings.size();
+            strings.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    private String decode(int code) {
+        return code == NO_CODE ? null : strings.get(code);
+    }
+
+    /**
+     * @return the row of a live car, or -1
+     */
+    private int rowOf(int id) {
+        int row = Arrays.binarySearch(ids, 0, rows, id);
+        return row < 0 || removed.get(row) ? -1 : row;
+    }
+
+    /**
+     * Builds a Car from a row.
+     */
+    private Car carAt(int row) {
+        Car car = new Car(years[row], decode(makes[row]), decode(models[row]),
+                priceCents[row] / 100f, decode(features[row]));
+        car.setId(ids[row]);
+        if (sold.get(row)) {
+            car.markAsSold();
+        }
+        return car;
+    }
+
+    /**
+     * Squeezes out removed rows, keeping the rest in id order.
+     */
+    private void compact() {
+        int kept = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)) {
+                if (kept != row) {
+                    ids[kept] = ids[row];
+                    years[kept] = years[row];
+                    priceCents[kept] = priceCents[row];
+                    makes[kept] = makes[row];
+                    models[kept] = models[row];
+                    features[kept] = features[row];
+                    sold.set(kept, sold.get(row));
+                }
+                kept++;
+            }
+        }
+        sold.clear(kept, rows);
+        removed.clear();
+        rows = kept;
+    }
+
+    /**
+     * Filter is a CarQuery compiled against the columns: make and model criteria become sets of
+     * dictionary codes, so rows are matched without touching a string. A feature criterion is
+     * decided once per distinct feature list, from its FeatureSet, the first time a row uses it.
+     */
+    private class Filter {
+        private final CarQuery query;
+        private final BitSet makeCodes;
+        private final BitSet modelCodes;
+        private final CarDictionary.FeatureFilter featureFilter;
+        private final BitSet featureChecked = new BitSet(); // Indexed by code + 1, so NO_CODE is 0
+        private final BitSet featureMatching = new BitSet();
+
+        Filter(CarQuery query) {
+            this.query = query;
+            this.makeCodes = query == null ? null : codesMatching(query.getMake());
+            this.modelCodes = query == null ? null : codesMatching(query.getModel());
+            this.featureFilter = query == null ? null : query.getFeatureFilter();
+        }
+
+        private BitSet codesMatching(String value) {
+            if (value == null) {
+                return null;
+            }
+            BitSet matching = new BitSet();
+            for (int code = 0; code < strings.size(); code++) {
+                if (value.equalsIgnoreCase(strings.get(code))) {
+                    matching.set(code);
+                }
+            }
+            return matching;
+        }
+
+        private boolean hasFeature(int code) {
+            if (featureFilter == null) {
+                return true;
+            }
+            if (!featureChecked.get(code + 1)) {
+                featureChecked.set(code + 1);
+                String text = code == NO_CODE ? null : strings.get(code);
+                if (CarDictionary.shared().featureSet(text).matches(featureFilter)) {
+                    featureMatching.set(code + 1);
+                }
+            }
+            return featureMatching.get(code + 1);
+        }
+
+        boolean matches(int row) {
+            if (removed.get(row)) {
+                return false;
+            }
+            if (query == null) {
+                return true;
+            }
+            float price = priceCents[row] / 100f;
+            return years[row] >= query.getMinYear() && years[row] <= query.getMaxYear()
+                    && price >= query.getMinPrice() && price <= query.getMaxPrice()
+                    && !(query.isAvailableOnly() && sold.get(row))
+                    && (makeCodes == null || (makes[row] != NO_CODE && makeCodes.get(makes[row])))
+                    && (modelCodes == null || (models[row] != NO_CODE && modelCodes.get(models[row])))
+                    && hasFeature(features[row]);
+        }
+    }
+
+    /**
+     * View is a read-only Car backed by the columns of one car, looked up by id on every call.
+     */
+    private class View extends Car {
+        private final int id;
+
+        View(int id) {
+            super(0, null, null, 0, null);
+            this.id = id;
+        }
+
+        private int row() {
+            int row = rowOf(id);
+            if (row < 0) {
+                throw new IllegalStateException("Car " + id + " has been removed");
+            }
+            return row;
+        }
+
+        @Override
+        public int getId() { return id; }
+
+        @Override
+        public int getYear() {
+            synchronized (ColumnarCarInventory.this) {
+                return years[row()];
+            }
+        }
+
+        @Override
+        public String getMake() {
+            synchronized (ColumnarCarInventory.this) {
+                return decode(makes[row()]);
+            }
+        }
+
+        @Override
+        public String getModel() {
+            synchronized (ColumnarCarInventory.this) {
+                return decode(models[row()]);
+            }
+        }
+
+        @Override
+        public boolean isSold() {
+            synchronized (ColumnarCarInventory.this) {
+                return sold.get(row());
+            }
+        }
+
+        @Override
+        public float getPrice() {
+            synchronized (ColumnarCarInventory.this) {
+                return priceCents[row()] / 100f;
+            }
+        }
+
+        @Override
+        public String getFeatures() {
+            synchronized (ColumnarCarInventory.this) {
+                return decode(features[row()]);
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (ColumnarCarInventory.this) {
+                return carAt(row()).toString();
+            }
+        }
+
+        @Override
+        public void setPrice(float price) {
+            throw new UnsupportedOperationException("Update cars through the inventory");
+        }
+
+        @Override
+        public void setFeatures(String features) {
+            throw new UnsupportedOperationException("Update cars through the inventory");
+        }
+
+        @Override
+        public void markAsSold() {
+            throw new UnsupportedOperationException("Sell cars through the inventory");
+        }
+
+        @Override
+        public boolean markAsSoldIfAvailable() {
+            throw new UnsupportedOperationException("Sell cars through the inventory");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ConcurrentCarInventory is a thread-safe inventory for several salespeople working at once.
+ * Reads go straight to a ConcurrentHashMap keyed by car id and never block.
+ * Writes to an existing car (update, remove, purchase) lock only the stripe its id hashes to,
+ * so operations on different cars proceed in parallel.
+ * A purchase is an atomic compare-and-set from available to sold, so two buyers
+ * can never both get the same car.
+ */
+class ConcurrentCarInventory {
+    private static final int STRIPES = 64; // Must be a power of two
+
+    private final ConcurrentHashMap<Integer, Car> cars = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[STRIPES];
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Creates an empty inventory.
+     */
+    ConcurrentCarInventory() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Adds a car to the inventory, assigning it the next free id if it does not have one yet.
+     *
+     * @param car the Car object to add
+     * @return true if the car is successfully added, false if a car with the same id is already present
+     */
+    public boolean addCar(Car car) {
+        int id = car.getId();
+        if (id == Car.NO_ID) {
+            id = nextId.getAndIncrement();
+            car.setId(id);
+        } else {
+            nextId.accumulateAndGet(id + 1, Math::max);
+        }
+        return cars.putIfAbsent(id, car) == null;
+    }
+
+    /**
+     * Looks up a car by its id without locking.
+     *
+     * @param id the id of the car
+     * @return an Optional containing the car, or empty if no car has that id
+     */
+    public Optional<Car> getCar(int id) {
+        return Optional.ofNullable(cars.get(id));
+    }
+
+    /**
+     * Removes a car from the inventory by its id.
+     *
+     * @param id the id of the car
+     * @return true if the car was successfully removed
+     */
+    public boolean removeCar(int id) {
+        synchronized (lockFor(id)) {
+            return cars.remove(id) != null;
+        }
+    }
+
+    /**
+     * Updates the price and features of the car with the specified id.
+     *
+     * @param id the id of the car
+     * @param price the new price
+     * @param features the new features
+     * @return true if the update was successful
+     */
+    public boolean updateCar(int id, float price, String features) {
+        synchronized (lockFor(id)) {
+            Car car = cars.get(id);
+            if (car == null) {
+                return false;
+            }
+            car.setPrice(price);
+            car.setFeatures(features);
+            return true;
+        }
+    }
+
+    /**
+     * Atomically sells the car with the specified id if it is still available.
+     *
+     * @param id the id of the car
+     * @return true if this call sold the car; false if it does not exist or someone else already bought it
+     */
+    public boolean markAsSold(int id) {
+        synchronized (lockFor(id)) {
+            Car car = cars.get(id);
+            return car != null && car.markAsSoldIfAvailable();
+        }
+    }
+
+    /**
+     * Processes a car purchase. Only one of several concurrent buyers of the same car succeeds.
+     *
+     * @param id the id of the car to purchase
+     * @param confirmation the user's confirmation input ("yes")
+     * @return an Optional containing the purchased Car if this caller bought it
+     */
+    public Optional<Car> buyCar(int id, String confirmation) {
+        if (!confirmation.equalsIgnoreCase("yes")) {
+            return Optional.empty();
+        }
+        synchronized (lockFor(id)) {
+            Car car = cars.get(id);
+            if (car != null && car.markAsSoldIfAvailable()) {
+                return Optional.of(car);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return the number of cars in the inventory
+     */
+    public int size() {
+        return cars.size();
+    }
+
+    /**
+     * @return true if the inventory holds no cars
+     */
+    public boolean isEmpty() {
+        return cars.isEmpty();
+    }
+
+    /**
+     * Returns a read-only live view of the cars in no particular order.
+     * Iteration never throws ConcurrentModificationException and reflects
+     * some, all or none of the changes made while it runs.
+     *
+     * @return an unmodifiable view of the cars
+     */
+    public Collection<Car> cars() {
+        return Collections.unmodifiableCollection(cars.values());
+    }
+
+    /**
+     * Retrieves a snapshot copy of the inventory in id order.
+     *
+     * @return a list of Car objects
+     */
+    public List<Car> getCars() {
+        List<Car> snapshot = new ArrayList<>(cars.values());
+        snapshot.sort(Comparator.comparingInt(Car::getId));
+        return snapshot;
+    }
+
+    private Object lockFor(int id) {
+        int h = id * 0x9E3779B9;
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
@@ -0,0 +1,173 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentCarInventoryTest {
+    private static final int THREADS = 16;
+    private ConcurrentCarInventory inventory;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new ConcurrentCarInventory();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "Worker threads should stop.");
+    }
+
+    @Test
+    void testEachCarIsSoldExactlyOnce() throws Exception {
+        int carCount = 1000;
+        for (int i = 0; i < carCount; i++) {
+            inventory.addCar(new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth"));
+        }
+
+        AtomicInteger sales = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int id = 0; id < carCount; id++) {
+                Optional<Car> bought = inventory.buyCar(id, "yes");
+                if (bought.isPresent()) {
+                    sales.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(carCount, sales.get(), "Every car should be sold exactly once.");
+        for (Car car : inventory.cars()) {
+            assertTrue(car.isSold(), "Car " + car.getId() + " should be marked as sold.");
+        }
+    }
+
+    @Test
+    void testConcurrentAddsAssignUniqueIds() throws Exception {
+        int perThread = 5000;
+        runConcurrently(() -> {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(inventory.addCar(new Car(2019, "Honda", "Civic", 20000, "Backup Camera")));
+            }
+        });
+
+        assertEquals(THREADS * perThread, inventory.size(), "No add should be lost.");
+        List<Car> cars = inventory.getCars();
+        for (int i = 0; i < cars.size(); i++) {
+            assertEquals(i, cars.get(i).getId(), "Ids should be unique and dense.");
+        }
+    }
+
+    @Test
+    void testMixedWorkloadKeepsInventoryConsistent() throws Exception {
+        int carCount = 2000;
+        for (int i = 0; i < carCount; i++) {
+            inventory.addCar(new Car(2021, "Ford", "Mustang", 30000, "Leather Seats"));
+        }
+
+        AtomicInteger removed = new AtomicInteger();
+        AtomicInteger sold = new AtomicInteger();
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20000; i++) {
+                int id = random.nextInt(carCount);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        if (inventory.removeCar(id)) {
+                            removed.incrementAndGet();
+                        }
+                        break;
+                    case 1:
+                        inventory.updateCar(id, random.nextInt(10000, 50000), "Updated");
+                        break;
+                    case 2:
+                        if (inventory.markAsSold(id)) {
+                            sold.incrementAndGet();
+                        }
+                        break;
+                    default:
+                        inventory.getCar(id);
+                }
+            }
+        });
+
+        assertEquals(carCount - removed.get(), inventory.size(), "Size should match the successful removals.");
+        long soldRemaining = inventory.cars().stream().filter(Car::isSold).count();
+        assertTrue(soldRemaining <= sold.get(), "No car should be sold without a winning markAsSold.");
+    }
+
+    @Test
+    void testRacingTerminalsBuyEachCarOnce() throws Exception {
+        Path dir = Files.createTempDirectory("purchase-race-test");
+        int carCount = 20;
+        try (InventoryStore store = InventoryStores.open("sqlite:" + dir.resolve("cars.db"))) {
+            PricingEngine pricing = new PricingEngine();
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < carCount; i++) {
+                Car car = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+                store.addCar(car);
+                cars.add(car);
+            }
+            InventoryChangeFeed.Subscription changes = store.getChangeFeed().subscribe();
+
+            AtomicInteger sales = new AtomicInteger();
+            runConcurrently(() -> {
+                for (Car car : cars) {
+                    InventoryStore.PurchaseResult result = store.purchaseCar(car.getId(), pricing.quote(car, 6, 500));
+                    assertNotEquals(InventoryStore.PurchaseResult.ERROR, result);
+                    if (result == InventoryStore.PurchaseResult.SOLD) {
+                        sales.incrementAndGet();
+                    }
+                }
+            });
+
+            assertEquals(carCount, sales.get(), "Exactly one terminal should buy each car.");
+            List<Integer> sold = new ArrayList<>();
+            changes.poll(Integer.MAX_VALUE, change -> sold.add(change.getCarId()));
+            assertEquals(carCount, sold.size(), "Each car should be published as SOLD once: " + sold);
+            assertEquals(carCount, sold.stream().distinct().count());
+            List<SalesLedger.Sale> ledger = ((CarInventoryDBHelper) store).getSalesLedger().getSales(0, Long.MAX_VALUE);
+            assertEquals(carCount, ledger.size(), "Each sale should be recorded once.");
+            assertEquals(carCount, ledger.stream().map(SalesLedger.Sale::getCarId).distinct().count());
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the same task on every worker thread, releasing them all at once.
+     */
+    private void runConcurrently(Runnable task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.math.BigDecimal;
+
+/**
+ * DiscountRule takes money off a purchase. Rules stack: the PricingEngine applies them in order,
+ * each one to the amount left after the rules before it, e.g. 5% off and then a $500 trade-in credit:
+ * <pre>
+ * DiscountRule.percent("Spring sale", new BigDecimal("5")), DiscountRule.amount("Trade-in", 50_000)
+ * </pre>
+ */
+interface DiscountRule {
+    /**
+     * @return the name shown on the quote
+     */
+    String getName();
+
+    /**
+     * Computes the discount on an amount.
+     *
+     * @param amountCents the amount left after the previous rules, in cents
+     * @return the discount in cents; the engine never lets the total go below zero
+     */
+    long discountCents(long amountCents);
+
+    /**
+     * A fixed amount off, like the discount typed in at the counter.
+     *
+     * @param name the name shown on the quote
+     * @param cents the discount in cents
+     * @return the rule
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    static DiscountRule amount(String name, long cents) {
+        if (cents < 0) {
+            throw new IllegalArgumentException("A discount cannot be negative");
+        }
+        return new DiscountRule() {
+            public String getName() { return name; }
+
+            public long discountCents(long amountCents) { return cents; }
+
+            @Override
+            public String toString() { return name + " " + PricingEngine.formatCents(cents); }
+        };
+    }
+
+    /**
+     * A percentage off, rounded half up to the cent.
+     *
+     * @param name the name shown on the quote
+     * @param percent the percentage, e.g. 5 for 5%
+     * @return the rule
+     * @throws IllegalArgumentException if the percentage is negative or above 100
+     */
+    static DiscountRule percent(String name, BigDecimal percent) {
+        if (percent.signum() < 0 || percent.compareTo(BigDecimal.valueOf(100)) > 0) {
+            throw new IllegalArgumentException("A percentage discount must be between 0 and 100");
+        }
+        long ppm = PricingEngine.toPpm(percent);
+        return new DiscountRule() {
+            public String getName() { return name; }
+
+            public long discountCents(long amountCents) { return PricingEngine.applyPpm(amountCents, ppm); }
+
+            @Override
+            public String toString() { return name + " " + percent.stripTrailingZeros().toPlainString() + "%"; }
+        };
+    }
+}
@@ -0,0 +1,495 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * FeedGenerator writes synthetic inventory feeds and pre-populated SQLite databases of any size
+ * for load and scale testing. The data is meant to look like a real lot:
+ * <ul>
+ *     <li>makes and models follow a skewed market share (lots of Toyotas, few Porsches);</li>
+ *     <li>ages are mostly recent, and prices depreciate with age from each model's base price, with noise;</li>
+ *     <li>features come from a shared vocabulary, with newer and pricier cars carrying more of them
+ *     and modern features never appearing on cars built before they existed;</li>
+ *     <li>a configurable share of feed lines is malformed in the ways CarFeedReader rejects.</li>
+ * </ul>
+ * Output is deterministic: the lines are generated in fixed-size blocks, each from its own random
+ * stream derived from the seed and the block number, so the same seed gives the same file whatever
+ * the number of threads. Blocks are generated in parallel and written in order as they complete,
+ * with only a few blocks per thread in memory, so files of 100M lines and more stream straight to disk.
+ *
+ * Usage: java FeedGenerator feed|db &lt;file&gt; &lt;count&gt; [--seed N] [--malformed RATE] [--threads N]
+ */
+class FeedGenerator {
+    /** Lines per block; the unit of parallel work and of the derived random streams. */
+    static final int BLOCK_LINES = 1 << 16;
+    /** Year of the newest generated cars. Fixed, so output does not depend on the date. */
+    static final int NEWEST_YEAR = 2025;
+    private static final int OLDEST_AGE = 30;
+    private static final double MEAN_AGE = 5.5;
+    private static final double YEARLY_DEPRECIATION = 0.87;
+
+    /** Model describes one model: its make, base price when new and share of the market. */
+    private static final class Model {
+        final String make;
+        final String name;
+        final int basePrice;
+        final double share;
+
+        Model(String make, String name, int basePrice, double share) {
+            this.make = make;
+            this.name = name;
+            this.basePrice = basePrice;
+            this.share = share;
+        }
+    }
+
+    /** Feature is one vocabulary entry: how common it is and since when it exists. */
+    private static final class Feature {
+        final String name;
+        final double probability;
+        final int sinceYear;
+        final boolean premium; // More likely on expensive cars
+
+        Feature(String name, double probability, int sinceYear, boolean premium) {
+            this.name = name;
+            this.probability = probability;
+            this.sinceYear = sinceYear;
+            this.premium = premium;
+        }
+    }
+
+    private static final Model[] MODELS = {
+            new Model("Toyota", "Camry", 28000, 4.0), new Model("Toyota", "Corolla", 22000, 3.6),
+            new Model("Toyota", "RAV4", 30000, 4.4), new Model("Toyota", "Tacoma", 33000, 2.2),
+            new Model("Ford", "F-150", 38000, 6.0), new Model("Ford", "Escape", 29000, 2.0),
+            new Model("Ford", "Explorer", 38000, 1.8), new Model("Ford", "Mustang", 32000, 0.9),
+            new Model("Chevrolet", "Silverado", 39000, 4.8), new Model("Chevrolet", "Equinox", 28000, 2.4),
+            new Model("Chevrolet", "Malibu", 25000, 1.3), new Model("Honda", "CR-V", 31000, 3.5),
+            new Model("Honda", "Civic", 24000, 2.8), new Model("Honda", "Accord", 28000, 1.9),
+            new Model("Nissan", "Rogue", 29000, 2.6), new Model("Nissan", "Altima", 26000, 1.5),
+            new Model("Nissan", "Sentra", 21000, 1.4), new Model("Hyundai", "Tucson", 28000, 1.6),
+            new Model("Hyundai", "Elantra", 22000, 1.4), new Model("Kia", "Sportage", 28000, 1.3),
+            new Model("Kia", "Soul", 21000, 0.8), new Model("Subaru", "Outback", 30000, 1.5),
+            new Model("Subaru", "Forester", 29000, 1.4), new Model("Jeep", "Grand Cherokee", 41000, 2.0),
+            new Model("Jeep", "Wrangler", 35000, 1.6), new Model("Ram", "1500", 40000, 3.4),
+            new Model("GMC", "Sierra", 41000, 2.2), new Model("Mazda", "CX-5", 29000, 1.5),
+            new Model("Volkswagen", "Jetta", 23000, 0.8), new Model("Volkswagen", "Tiguan", 29000, 0.8),
+            new Model("Tesla", "Model Y", 47000, 2.0), new Model("Tesla", "Model 3", 42000, 1.2),
+            new Model("BMW", "3 Series", 45000, 0.7), new Model("BMW", "X5", 65000, 0.6),
+            new Model("Mercedes-Benz", "C-Class", 47000, 0.6), new Model("Mercedes-Benz", "GLE", 62000, 0.5),
+            new Model("Lexus", "RX", 50000, 0.9), new Model("Audi", "Q5", 46000, 0.6),
+            new Model("Porsche", "911", 115000, 0.1), new Model("Porsche", "Macan", 62000, 0.15),
+    };
+
+    private static final Feature[] FEATURES = {
+            new Feature("Air Conditioning", 0.90, 0, false), new Feature("Cruise Control", 0.70, 0, false),
+            new Feature("Bluetooth", 0.55, 2006, false), new Feature("Backup Camera", 0.50, 2008, false),
+            new Feature("Heated Seats", 0.30, 0, true), new Feature("Sunroof", 0.25, 0, true),
+            new Feature("Leather Seats", 0.25, 0, true), new Feature("Navigation", 0.20, 2003, true),
+            new Feature("Apple CarPlay", 0.35, 2016, false), new Feature("Android Auto", 0.30, 2016, false),
+            new Feature("Blind Spot Monitoring", 0.30, 2010, true), new Feature("Adaptive Cruise Control", 0.20, 2014, true),
+            new Feature("Lane Keep Assist", 0.25, 2015, true), new Feature("Remote Start", 0.15, 2008, false),
+            new Feature("Third Row Seating", 0.08, 0, false), new Feature("Tow Package", 0.10, 0, false),
+            new Feature("AWD", 0.30, 0, false), new Feature("Premium Audio", 0.12, 0, true),
+            new Feature("Heated Steering Wheel", 0.08, 2012, true), new Feature("Wireless Charging", 0.12, 2018, true),
+    };
+
+    private static final double[] CUMULATIVE_SHARE = new double[MODELS.length];
+
+    static {
+        double total = 0;
+        for (Model model : MODELS) {
+            total += model.share;
+        }
+        double sum = 0;
+        for (int i = 0; i < MODELS.length; i++) {
+            sum += MODELS[i].share / total;
+            CUMULATIVE_SHARE[i] = sum;
+        }
+    }
+
+    private final long seed;
+    private double malformedRate;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @param seed the seed; equal seeds give equal output
+     */
+    FeedGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the share of feed lines that are malformed (bad year, bad price, missing fields or an
+     * unterminated quote). A database gets the valid cars only, as if the feed had been imported.
+     *
+     * @param malformedRate a rate from 0 to 1; the default is 0
+     * @return this generator
+     */
+    FeedGenerator malformedRate(double malformedRate) {
+        if (!(malformedRate >= 0 && malformedRate <= 1)) {
+            throw new IllegalArgumentException("malformedRate must be between 0 and 1");
+        }
+        this.malformedRate = malformedRate;
+        return this;
+    }
+
+    /**
+     * Sets the number of generating threads. The output does not depend on it.
+     *
+     * @param threads the thread count; the default is one per core
+     * @return this generator
+     */
+    FeedGenerator threads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Writes a feed file in the format read by CarFeedReader, replacing the file if it exists.
+     *
+     * @param file the file to write
+     * @param lines the number of lines, valid and malformed
+     * @return the number of malformed lines written
+     * @throws IOException if the file cannot be written
+     */
+    long writeFeed(Path file, long lines) throws IOException {
+        long[] malformed = new long[1];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            generate(lines, block -> {
+                out.write(block.text);
+                malformed[0] += block.malformed;
+            }, true);
+        }
+        return malformed[0];
+    }
+
+    /**
+     * Fills a SQLite database with generated cars, creating it and its schema if needed. It ends up
+     * with the cars of importing writeFeed's file with the same settings, but the cars go straight
+     * from the generating threads into batched inserts, with no feed file in between.
+     *
+     * @param dbPath the database file
+     * @param cars the number of lines to generate; malformed ones are left out
+     * @return the result of the import
+     * @throws IOException if the database cannot be opened
+     */
+    CarInventoryDBHelper.ImportResult writeDatabase(String dbPath, long cars) throws IOException {
+        CarInventoryDBHelper db = new CarInventoryDBHelper();
+        if (!db.connect(dbPath)) {
+            throw new IOException("Could not open database " + dbPath);
+        }
+        try {
+            BlockSource source = new BlockSource(cars);
+            try {
+                return db.importCars(source, CarInventoryDBHelper.DEFAULT_BATCH_SIZE,
+                        CarInventoryDBHelper.DEFAULT_COMMIT_INTERVAL * 10, null);
+            } finally {
+                source.close();
+            }
+        } finally {
+            db.disconnect();
+        }
+    }
+
+    /**
+     * Generates the cars of one block, the same ones writeFeed writes as its valid lines.
+     * Useful for checking a load against what was generated.
+     *
+     * @param block the block number
+     * @param lines the number of lines in the block, at most BLOCK_LINES
+     * @return the valid cars of the block, in order
+     */
+    Car[] generateCars(long block, int lines) {
+        return generateBlock(block, lines, false).cars;
+    }
+
+    /**
+     * Generates blocks in parallel and hands them to the sink in order, keeping at most two
+     * blocks per thread in flight.
+     */
+    private void generate(long lines, BlockSink sink, boolean text) throws IOException {
+        ExecutorService pool = newPool();
+        try {
+            ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+            long blocks = (lines + BLOCK_LINES - 1) / BLOCK_LINES;
+            long next = 0;
+            while (next < blocks || !pending.isEmpty()) {
+                while (next < blocks && pending.size() < threads * 2) {
+                    long block = next++;
+                    int blockLines = (int) Math.min(BLOCK_LINES, lines - block * BLOCK_LINES);
+                    pending.add(pool.submit(() -> generateBlock(block, blockLines, text)));
+                }
+                sink.accept(await(pending.poll()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private ExecutorService newPool() {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Block await(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Generating failed", e.getCause());
+        }
+    }
+
+    /**
+     * Generates one block from its own random stream, as feed text or as Car objects.
+     */
+    private Block generateBlock(long block, int lines, boolean text) {
+        SplittableRandom random = new SplittableRandom(mix(seed + mix(block)));
+        Block result = new Block();
+        StringBuilder line = new StringBuilder(96);
+        StringBuilder out = text ? new StringBuilder(lines * 64) : null;
+        Car[] cars = text ? null : new Car[lines];
+        int carCount = 0;
+        for (int i = 0; i < lines; i++) {
+            Model model = pickModel(random);
+            int age = Math.min(OLDEST_AGE, (int) (-Math.log(1 - random.nextDouble()) * MEAN_AGE));
+            int year = NEWEST_YEAR - age;
+            double price = model.basePrice * Math.pow(YEARLY_DEPRECIATION, age) * Math.exp(0.12 * random.nextGaussian());
+            long cents = Math.max(10, Math.round(price / 50)) * 5000; // Whole fifty dollars, at least $500
+            if (random.nextInt(10) == 0) {
+                cents--; // e.g. 18449.99
+            }
+
+            line.setLength(0);
+            appendFeatures(line, random, model, year);
+            String features = line.toString();
+            // Both modes draw the same numbers, so the cars match the valid lines of the feed
+            boolean malformed = random.nextDouble() < malformedRate;
+            int variant = malformed ? random.nextInt(4) : random.nextInt(50);
+            if (malformed) {
+                result.malformed++;
+            }
+            if (!text) {
+                if (!malformed) { // Rounded like CarFeedReader parses the price
+                    cars[carCount++] = new Car(year, model.make, model.name, (float) (cents / 100.0), features);
+                }
+                continue;
+            }
+            line.setLength(0);
+            if (malformed) {
+                appendMalformed(line, variant, model, year, cents, features);
+            } else {
+                String separator = variant == 0 ? " , " : ","; // Some hand-edited lines
+                line.append(year).append(separator).append(model.make).append(separator).append(model.name)
+                        .append(separator);
+                appendPrice(line, cents);
+                line.append(separator).append(features);
+            }
+            out.append(line).append('\n');
+        }
+        if (text) {
+            result.text = out.toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            result.cars = carCount == lines ? cars : Arrays.copyOf(cars, carCount);
+        }
+        return result;
+    }
+
+    private static Model pickModel(SplittableRandom random) {
+        double u = random.nextDouble();
+        int lo = 0;
+        int hi = MODELS.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (CUMULATIVE_SHARE[mid] < u) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return MODELS[lo];
+    }
+
+    /**
+     * Appends a comma-separated feature list. Premium features are likelier on pricier models and
+     * every feature is likelier on newer cars; features newer than the car are never added.
+     */
+    private static void appendFeatures(StringBuilder out, SplittableRandom random, Model model, int year) {
+        double modernity = 0.4 + 0.7 * (year - (NEWEST_YEAR - OLDEST_AGE)) / OLDEST_AGE;
+        double luxury = Math.min(2.0, model.basePrice / 35000.0);
+        for (Feature feature : FEATURES) {
+            if (year < feature.sinceYear) {
+                continue;
+            }
+            double probability = feature.probability * modernity * (feature.premium ? luxury : 1);
+            if (random.nextDouble() < probability) {
+                if (out.length() > 0) {
+                    out.append(", ");
+                }
+                out.append(feature.name);
+            }
+        }
+    }
+
+    /**
+     * Appends a line that CarFeedReader rejects, picking one of the typical mistakes.
+     */
+    private static void appendMalformed(StringBuilder out, int variant, Model model, int year,
+                                        long cents, String features) {
+        switch (variant) {
+            case 0: // Letter for a digit in the year
+                out.append(year / 10).append('O').append(',').append(model.make).append(',').append(model.name).append(',');
+                appendPrice(out, cents);
+                out.append(',').append(features);
+                break;
+            case 1: // Price that is not a number
+                out.append(year).append(',').append(model.make).append(',').append(model.name).append(",call for price,")
+                        .append(features);
+                break;
+            case 2: // Truncated line
+                out.append(year).append(',').append(model.make).append(',').append(model.name);
+                break;
+            default: // Opening quote without a closing one
+                out.append(year).append(",\"").append(model.make).append(',').append(model.name).append(',');
+                appendPrice(out, cents);
+                out.append(',').append(features);
+                break;
+        }
+    }
+
+    /**
+     * Appends a price in cents as dollars, e.g. 18450 or 18449.99, without going through floating point.
+     */
+    private static void appendPrice(StringBuilder out, long cents) {
+        out.append(cents / 100);
+        long fraction = cents % 100;
+        if (fraction != 0) {
+            out.append('.');
+            if (fraction < 10) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+    }
+
+    /**
+     * The SplitMix64 finalizer, to turn block numbers into well-spread seeds.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Block is the output of one block: feed text or cars, plus its malformed line count.
+     */
+    private static final class Block {
+        byte[] text;
+        Car[] cars;
+        long malformed;
+    }
+
+    /**
+     * BlockSink consumes blocks in order on the calling thread.
+     */
+    private interface BlockSink {
+        void accept(Block block) throws IOException;
+    }
+
+    /**
+     * BlockSource hands out generated cars one at a time for a database import, generating
+     * blocks ahead on the pool while the import inserts the current one.
+     */
+    private final class BlockSource implements CarInventoryDBHelper.CarSource {
+        private final ExecutorService pool = newPool();
+        private final ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        private final long lines;
+        private long nextBlock;
+        private Car[] current = new Car[0];
+        private int position;
+
+        BlockSource(long lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public Car next() throws IOException {
+            while (position == current.length) {
+                long blocks = (lines + BLOCK_LINES - 1) / BLOCK_LINES;
+                while (nextBlock < blocks && pending.size() < threads * 2) {
+                    long block = nextBlock++;
+                    int blockLines = (int) Math.min(BLOCK_LINES, lines - block * BLOCK_LINES);
+                    pending.add(pool.submit(() -> generateBlock(block, blockLines, false)));
+                }
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                current = await(pending.poll()).cars;
+                position = 0;
+            }
+            return current[position++];
+        }
+
+        void close() {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates a feed file or a database from the command line.
+     *
+     * @param args feed|db, the output file, the line count, then optional --seed N,
+     *             --malformed RATE and --threads N
+     * @throws IOException if the output cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || !(args[0].equals("feed") || args[0].equals("db"))) {
+            System.out.println("Usage: java FeedGenerator feed|db <file> <count> [--seed N] [--malformed RATE] [--threads N]");
+            return;
+        }
+        long count = Long.parseLong(args[2].replace("_", ""));
+        long seed = 42;
+        double malformed = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--malformed": malformed = Double.parseDouble(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        FeedGenerator generator = new FeedGenerator(seed).malformedRate(malformed).threads(threads);
+        long start = System.nanoTime();
+        if (args[0].equals("feed")) {
+            Path file = Paths.get(args[1]);
+            long bad = generator.writeFeed(file, count);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Wrote %,d lines (%,d malformed), %,d bytes in %.1f s (%,.0f lines/sec)%n",
+                    count, bad, Files.size(file), seconds, count / seconds);
+        } else {
+            CarInventoryDBHelper.ImportResult result = generator.writeDatabase(args[1], count);
+            System.out.println(result);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeedGeneratorTest {
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("feed-generator-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testSameSeedGivesSameFeedWhateverTheThreads() throws IOException {
+        long lines = FeedGenerator.BLOCK_LINES * 2L + 123; // A partial last block
+        Path one = dir.resolve("one.txt");
+        Path four = dir.resolve("four.txt");
+        Path other = dir.resolve("other.txt");
+        new FeedGenerator(7).malformedRate(0.05).threads(1).writeFeed(one, lines);
+        new FeedGenerator(7).malformedRate(0.05).threads(4).writeFeed(four, lines);
+        new FeedGenerator(8).malformedRate(0.05).threads(4).writeFeed(other, lines);
+
+        assertEquals(-1, Files.mismatch(one, four), "The thread count should not change the feed.");
+        assertNotEquals(-1, Files.mismatch(one, other), "Another seed should give another feed.");
+        try (Stream<String> feed = Files.lines(one)) {
+            assertEquals(lines, feed.count());
+        }
+    }
+
+    @Test
+    void testReaderGetsTheGeneratedCarsAndRejectsTheMalformedLines() throws IOException {
+        Path feed = dir.resolve("feed.txt");
+        FeedGenerator generator = new FeedGenerator(42).malformedRate(0.02);
+        long malformed = generator.writeFeed(feed, FeedGenerator.BLOCK_LINES);
+        assertTrue(malformed > 0.01 * FeedGenerator.BLOCK_LINES && malformed < 0.03 * FeedGenerator.BLOCK_LINES);
+
+        List<Car> read = new ArrayList<>();
+        try (CarFeedReader reader = CarFeedReader.open(feed)) {
+            Car car;
+            while ((car = reader.next()) != null) {
+                read.add(car);
+            }
+            assertEquals(malformed, reader.getErrorCount(), "Every malformed line, and only those, should be rejected.");
+        }
+        Car[] generated = generator.generateCars(0, FeedGenerator.BLOCK_LINES);
+        assertEquals(generated.length, read.size());
+        for (int i = 0; i < generated.length; i++) {
+            assertEquals(generated[i].toString(), read.get(i).toString());
+        }
+    }
+
+    @Test
+    void testDistributionsAreSkewedAndCorrelated() {
+        Car[] cars = new FeedGenerator(42).generateCars(3, FeedGenerator.BLOCK_LINES);
+        long toyotas = Stream.of(cars).filter(car -> car.getMake().equals("Toyota")).count();
+        long porsches = Stream.of(cars).filter(car -> car.getMake().equals("Porsche")).count();
+        assertTrue(toyotas > 10 * porsches, "Makes should follow their market share.");
+
+        double newPrices = Stream.of(cars).filter(car -> car.getYear() >= 2023 && car.getModel().equals("Camry"))
+                .mapToDouble(Car::getPrice).average().orElseThrow();
+        double oldPrices = Stream.of(cars).filter(car -> car.getYear() <= 2012 && car.getModel().equals("Camry"))
+                .mapToDouble(Car::getPrice).average().orElseThrow();
+        assertTrue(newPrices > 2 * oldPrices, "Older cars should be cheaper.");
+        assertFalse(Stream.of(cars).anyMatch(car -> car.getYear() < 2016 && car.hasFeature("Apple CarPlay")),
+                "No feature should predate its introduction.");
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * FeedSync brings a store in line with a complete dealer feed by applying only what changed,
+ * instead of appending the whole feed again the way loadCarsFromFile does.
+ * <p>
+ * Feeds carry no VIN, so cars are matched on their natural key: year, make and model, ignoring
+ * case. Cars with the same key are interchangeable, so they are matched as multisets: first
+ * unchanged cars (same price and features), then cars whose features are unchanged (a price update),
+ * then the rest in id and feed order (a price and feature update). Feed cars left over are added
+ * and store cars left over are removed. Sold cars are history, not stock: they are never matched,
+ * updated or removed.
+ * <p>
+ * The changes go to the store in one InventoryStore.applyChanges call, one transaction in SQLite,
+ * so the writes of a nightly sync grow with what changed rather than with the lot; reading the
+ * feed and the store's available cars is one pass over each. If the feed has malformed lines,
+ * the cars on them cannot be told apart from cars that left the lot, so nothing is removed.
+ */
+class FeedSync {
+    private final InventoryStore store;
+
+    /**
+     * @param store the store to keep in sync
+     */
+    FeedSync(InventoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Works out the changes that would bring the store in line with a feed, without applying them.
+     *
+     * @param filename the feed file, listing every car for sale
+     * @return the changes; if the feed could not be read they are empty and the error is set
+     */
+    Delta diff(String filename) {
+        long start = System.nanoTime();
+        Delta delta = new Delta();
+        Map<String, ArrayDeque<Car>> feedCars = new LinkedHashMap<>(); // By exact key, in feed order
+        try (CarFeedReader reader = CarFeedReader.open(filename)) {
+            Car car;
+            while ((car = reader.next()) != null) {
+                feedCars.computeIfAbsent(exactKey(car), key -> new ArrayDeque<>()).add(car);
+            }
+            delta.rejected = reader.getErrorCount();
+            delta.rejectedLines = reader.getErrors();
+        } catch (IOException e) {
+            delta.error = e.getMessage();
+            delta.elapsedNanos = System.nanoTime() - start;
+            return delta;
+        }
+
+        // Store cars with no unchanged counterpart, by natural key, in id order
+        Map<String, List<Car>> storeLeft = new LinkedHashMap<>();
+        store.forEachCar(new CarQuery().availableOnly(), car -> {
+            ArrayDeque<Car> same = feedCars.get(exactKey(car));
+            if (same != null && !same.isEmpty()) {
+                same.poll();
+                delta.unchanged++;
+            } else {
+                storeLeft.computeIfAbsent(naturalKey(car), key -> new ArrayList<>()).add(car);
+            }
+            return true;
+        });
+
+        Map<String, List<Car>> feedLeft = new LinkedHashMap<>();
+        for (ArrayDeque<Car> cars : feedCars.values()) {
+            for (Car car : cars) {
+                feedLeft.computeIfAbsent(naturalKey(car), key -> new ArrayList<>()).add(car);
+            }
+        }
+        for (Map.Entry<String, List<Car>> entry : storeLeft.entrySet()) {
+            List<Car> listed = feedLeft.remove(entry.getKey());
+            if (listed != null) {
+                match(entry.getValue(), listed, delta);
+            } else {
+                for (Car car : entry.getValue()) {
+                    delta.removed.add(car.getId());
+                }
+            }
+        }
+        for (List<Car> listed : feedLeft.values()) {
+            delta.added.addAll(listed);
+        }
+        delta.removalsHeldBack = delta.rejected > 0 && !delta.removed.isEmpty();
+        delta.elapsedNanos = System.nanoTime() - start;
+        return delta;
+    }
+
+    /**
+     * Brings the store in line with a feed: works out the changes and applies them in one batch.
+     *
+     * @param filename the feed file, listing every car for sale
+     * @return the changes and whether they were applied
+     */
+    Delta sync(String filename) {
+        Delta delta = diff(filename);
+        if (delta.error != null || delta.isEmpty()) {
+            return delta;
+        }
+        long start = System.nanoTime();
+        List<Integer> removed = delta.removalsHeldBack ? Collections.emptyList() : delta.removed;
+        delta.applied = store.applyChanges(delta.added, delta.updated, removed);
+        if (!delta.applied) {
+            delta.error = "The store did not accept every change";
+        }
+        delta.elapsedNanos += System.nanoTime() - start;
+        return delta;
+    }
+
+    /**
+     * Pairs the store cars and feed cars left over under one natural key as updates: cars with
+     * the same features first, then the rest in order. Unpaired cars are added or removed.
+     */
+    private static void match(List<Car> stored, List<Car> listed, Delta delta) {
+        Map<String, ArrayDeque<Car>> byFeatures = new LinkedHashMap<>();
+        for (Car car : listed) {
+            byFeatures.computeIfAbsent(car.getFeatures(), features -> new ArrayDeque<>()).add(car);
+        }
+        List<Car> unpaired = new ArrayList<>();
+        for (Car car : stored) {
+            ArrayDeque<Car> same = byFeatures.get(car.getFeatures());
+            Car update = same == null ? null : same.poll();
+            if (update != null) {
+                delta.updated.add(updated(car, update));
+            } else {
+                unpaired.add(car);
+            }
+        }
+        Iterator<Car> rest = byFeatures.values().stream().flatMap(ArrayDeque::stream).iterator();
+        for (Car car : unpaired) {
+            if (rest.hasNext()) {
+                delta.updated.add(updated(car, rest.next()));
+            } else {
+                delta.removed.add(car.getId());
+            }
+        }
+        rest.forEachRemaining(delta.added::add);
+    }
+
+    /**
+     * @return a copy of a store car with the price and features of its feed counterpart
+     */
+    private static Car updated(Car stored, Car listed) {
+        Car changed = InventoryStores.copyOf(stored);
+        changed.setPrice(listed.getPrice());
+        changed.setFeatures(listed.getFeatures());
+        return changed;
+    }
+
+    /**
+     * @return the natural key of a car: year, make and model without case
+     */
+    static String naturalKey(Car car) {
+        return car.getYear() + "\t" + lowerCase(car.getMake()) + "\t" + lowerCase(car.getModel());
+    }
+
+    /**
+     * @return the natural key plus the price and features, equal only for cars that need no update
+     */
+    private static String exactKey(Car car) {
+        return naturalKey(car) + "\t" + Float.floatToIntBits(car.getPrice()) + "\t" + car.getFeatures();
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Delta is the set of changes that brings a store in line with a feed.
+     */
+    static class Delta {
+        private final List<Car> added = new ArrayList<>();
+        private final List<Car> updated = new ArrayList<>();
+        private final List<Integer> removed = new ArrayList<>();
+        private long unchanged;
+        private long rejected;
+        private List<CarFeedReader.LineError> rejectedLines = Collections.emptyList();
+        private boolean removalsHeldBack;
+        private boolean applied;
+        private long elapsedNanos;
+        private String error;
+
+        /**
+         * @return the feed cars not in the store, without ids until applied
+         */
+        List<Car> getAdded() { return Collections.unmodifiableList(added); }
+
+        /**
+         * @return copies of the store cars whose price or features change, with their new values
+         */
+        List<Car> getUpdated() { return Collections.unmodifiableList(updated); }
+
+        /**
+         * @return the ids of the available store cars no longer in the feed
+         */
+        List<Integer> getRemoved() { return Collections.unmodifiableList(removed); }
+
+        /**
+         * @return the number of store cars the feed lists unchanged
+         */
+        long getUnchanged() { return unchanged; }
+
+        /**
+         * @return the number of feed lines that could not be parsed
+         */
+        long getRejected() { return rejected; }
+
+        /**
+         * @return the first rejected lines, with the reason each was rejected
+         */
+        List<CarFeedReader.LineError> getRejectedLines() { return rejectedLines; }
+
+        /**
+         * @return true if removals were found but not applied because the feed had malformed lines
+         */
+        boolean areRemovalsHeldBack() { return removalsHeldBack; }
+
+        /**
+         * @return true if the changes were written to the store
+         */
+        boolean isApplied() { return applied; }
+
+        /**
+         * @return true if the store already matches the feed
+         */
+        boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && (removed.isEmpty() || removalsHeldBack);
+        }
+
+        /**
+         * @return the wall-clock duration of the sync in milliseconds
+         */
+        long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+        /**
+         * @return the error message if the feed could not be read or the changes not applied, or null
+         */
+        String getError() { return error; }
+
+        /**
+         * @return a one-line summary of the sync
+         */
+        @Override
+        public String toString() {
+            String summary = String.format("%s feed in %d ms: %d added, %d updated, %d removed%s, %d unchanged, %d lines rejected",
+                    applied || isEmpty() ? "Synced" : "Compared", getElapsedMillis(), added.size(), updated.size(), removed.size(),
+                    removalsHeldBack ? " (held back: the feed has malformed lines)" : "", unchanged, rejected);
+            return error == null ? summary : summary + " - " + error;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.Arrays;
+
+/**
+ * IntIntHashMap is an open-addressing hash map from int keys to int values.
+ * It stores keys and values in primitive arrays, so lookups never box and
+ * entries cost 8 bytes plus load-factor slack instead of a full HashMap node.
+ * Deletion uses backward shifting, so the table never accumulates tombstones.
+ * Integer.MIN_VALUE is reserved as the empty marker and cannot be used as a key.
+ */
+class IntIntHashMap {
+    /** Returned by get, put and remove when the key is not present. */
+    static final int NO_VALUE = -1;
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Creates an empty map with room for a handful of entries.
+     */
+    IntIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map sized for the expected number of entries.
+     *
+     * @param expectedSize the number of entries to hold without resizing
+     */
+    IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value mapped to the key, or NO_VALUE if there is none
+     */
+    int get(int key) {
+        checkKey(key);
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return true if the key is mapped
+     */
+    boolean containsKey(int key) {
+        checkKey(key);
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous mapping.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or NO_VALUE if the key was not mapped
+     */
+    int put(int key, int value) {
+        checkKey(key);
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Removes the mapping for a key.
+     *
+     * @param key the key
+     * @return the removed value, or NO_VALUE if the key was not mapped
+     */
+    int remove(int key) {
+        checkKey(key);
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * @return the number of mappings
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every mapping.
+     */
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left at {@code gap} by moving later entries of the same probe run back,
+     * so lookups never have to skip over deleted slots.
+     */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            int key = keys[i];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = hash(key) & mask;
+            // Move the entry if its home slot is not cyclically between the gap and its current slot
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key != EMPTY) {
+                int i = hash(key) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads sequential keys across the table (Fibonacci hashing).
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void checkKey(int key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Integer.MIN_VALUE cannot be used as a key");
+        }
+    }
+}
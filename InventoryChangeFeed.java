@@ -0,0 +1,258 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * InventoryChangeFeed is the change-data-capture stream of one inventory store: every add,
+ * update, removal and sale is published as a small Change, so the GUI, CarCache and anything
+ * else that mirrors the inventory can apply just that change instead of querying the store again.
+ * <ul>
+ * <li>Changes go into a bounded ring buffer. Publishing claims the next sequence number with one
+ *     atomic increment and stores the change in its slot; it never blocks and never waits for a
+ *     subscriber, and while nobody is subscribed it does nothing but read a counter.</li>
+ * <li>Each Subscription pulls changes at its own pace with poll, so a slow subscriber holds up
+ *     neither the store nor the other subscribers. One that falls more than a ring behind has lost
+ *     changes: it gets a single RELOADED and continues from the newest change, and should then
+ *     read whatever it mirrors again, just as after a bulk load.</li>
+ * </ul>
+ * Changes of a store whose methods hold its lock arrive in the order they were made. SQLite
+ * publishes after each commit, so two threads writing the same car at the same moment may
+ * publish in either order. Changes made by other processes, such as another terminal on the
+ * same database, are not seen.
+ */
+final class InventoryChangeFeed {
+    /** Default number of changes kept for subscribers; a power of two. */
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * What happened to a car.
+     */
+    enum Kind {
+        /** A car was added. */
+        ADDED,
+        /** The price and features of a car were changed. */
+        UPDATED,
+        /** A car was removed. */
+        REMOVED,
+        /** A car was sold. */
+        SOLD,
+        /** Too much changed to list, e.g. a bulk load or another database: read everything again. */
+        RELOADED
+    }
+
+    private final int capacity;
+    private volatile AtomicReferenceArray<Change> ring; // Created by the first subscriber
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * Creates a feed that keeps the default number of changes.
+     */
+    InventoryChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of changes kept for subscribers; a power of two
+     */
+    InventoryChangeFeed(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Starts following the changes published from now on.
+     *
+     * @return the subscription; close it when done so publishing stops once nobody listens
+     */
+    Subscription subscribe() {
+        synchronized (this) {
+            if (ring == null) {
+                ring = new AtomicReferenceArray<>(capacity);
+            }
+        }
+        subscribers.incrementAndGet();
+        return new Subscription(nextSequence.get());
+    }
+
+    /**
+     * @return true if anyone is subscribed, so building a change is worth it
+     */
+    boolean hasSubscribers() {
+        return subscribers.get() > 0;
+    }
+
+    /**
+     * Publishes that a car was added.
+     *
+     * @param id the id of the car
+     */
+    void added(int id) {
+        publish(Kind.ADDED, id, 0, null);
+    }
+
+    /**
+     * Publishes that the price and features of a car were changed.
+     *
+     * @param id the id of the car
+     * @param price the new price
+     * @param features the new features
+     */
+    void updated(int id, float price, String features) {
+        publish(Kind.UPDATED, id, price, features);
+    }
+
+    /**
+     * Publishes that a car was removed.
+     *
+     * @param id the id of the car
+     */
+    void removed(int id) {
+        publish(Kind.REMOVED, id, 0, null);
+    }
+
+    /**
+     * Publishes that a car was sold.
+     *
+     * @param id the id of the car
+     */
+    void sold(int id) {
+        publish(Kind.SOLD, id, 0, null);
+    }
+
+    /**
+     * Publishes that the whole inventory may have changed.
+     */
+    void reloaded() {
+        publish(Kind.RELOADED, Car.NO_ID, 0, null);
+    }
+
+    private void publish(Kind kind, int id, float price, String features) {
+        if (subscribers.get() == 0) {
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        ring.set((int) sequence & (capacity - 1), new Change(sequence, kind, id, price, features));
+    }
+
+    /**
+     * Change is one published change. Only UPDATED carries the new price and features.
+     */
+    static final class Change {
+        private final long sequence;
+        private final Kind kind;
+        private final int carId;
+        private final float price;
+        private final String features;
+
+        private Change(long sequence, Kind kind, int carId, float price, String features) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.carId = carId;
+            this.price = price;
+            this.features = features;
+        }
+
+        /**
+         * @return the position of the change in its feed
+         */
+        long getSequence() { return sequence; }
+
+        /**
+         * @return what happened
+         */
+        Kind getKind() { return kind; }
+
+        /**
+         * @return the id of the car, or Car.NO_ID for RELOADED
+         */
+        int getCarId() { return carId; }
+
+        /**
+         * @return the new price of an UPDATED car
+         */
+        float getPrice() { return price; }
+
+        /**
+         * @return the new features of an UPDATED car
+         */
+        String getFeatures() { return features; }
+
+        /**
+         * @return e.g. "#12 UPDATED car 7"
+         */
+        @Override
+        public String toString() {
+            return "#" + sequence + " " + kind + (carId == Car.NO_ID ? "" : " car " + carId);
+        }
+    }
+
+    /**
+     * Subscription is one subscriber's position in the feed. Poll it from one thread at a time.
+     */
+    final class Subscription implements AutoCloseable {
+        private long cursor; // Sequence of the next change to deliver
+        private long overruns;
+        private boolean closed;
+
+        private Subscription(long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * @return true if changes were published since the last poll
+         */
+        boolean hasChanges() {
+            return !closed && cursor < nextSequence.get();
+        }
+
+        /**
+         * Delivers the changes published since the last poll, oldest first, up to a maximum;
+         * the rest wait for the next poll. If the subscriber fell a ring behind, a single
+         * RELOADED is delivered in place of the changes it missed.
+         *
+         * @param max the maximum number of changes to deliver
+         * @param consumer receives each change
+         * @return the number of changes delivered
+         */
+        int poll(int max, Consumer<Change> consumer) {
+            int delivered = 0;
+            while (delivered < max && hasChanges()) {
+                Change change = ring.get((int) cursor & (capacity - 1));
+                if (change == null || change.sequence < cursor) {
+                    break; // Claimed but not stored yet; it is delivered by a later poll
+                }
+                if (change.sequence > cursor) {
+                    overruns++;
+                    Change reloaded = new Change(cursor, Kind.RELOADED, Car.NO_ID, 0, null);
+                    cursor = nextSequence.get(); // The reload covers everything published so far
+                    consumer.accept(reloaded);
+                } else {
+                    cursor++;
+                    consumer.accept(change);
+                }
+                delivered++;
+            }
+            return delivered;
+        }
+
+        /**
+         * @return the number of times this subscriber fell a ring behind and was told to reload
+         */
+        long getOverruns() { return overruns; }
+
+        /**
+         * Stops following the feed.
+         */
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                subscribers.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryChangeFeedTest {
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("change-feed-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testEveryStorePublishesItsChanges() throws IOException {
+        Path feed = dir.resolve("feed.txt");
+        Files.write(feed, List.of("2019, Ford, Focus, 15000, Sunroof", "2018, Kia, Rio, 12000, Bluetooth"));
+        for (String spec : List.of("memory", "columnar", "mmap:" + dir.resolve("cars.dat"), "sqlite:" + dir.resolve("cars.db"))) {
+            try (InventoryStore store = InventoryStores.open(spec);
+                 InventoryChangeFeed.Subscription changes = store.getChangeFeed().subscribe()) {
+                Car corolla = new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth");
+                Car civic = new Car(2021, "Honda", "Civic", 21000, "Navigation");
+                store.addCar(corolla);
+                store.addCar(civic);
+                store.updateCar(corolla.getId(), 19000, "Bluetooth, Sunroof");
+                assertFalse(store.updateCar(9999, 1, "Nothing"), "Failed changes publish nothing.");
+                store.purchaseCar(civic.getId(), new PricingEngine().quote(civic, 0, 0));
+                store.removeCar(corolla.getId());
+                store.loadCarsFromFile(feed.toString());
+
+                List<InventoryChangeFeed.Change> published = new ArrayList<>();
+                assertEquals(6, changes.poll(100, published::add), spec + ": " + published);
+                assertEquals(List.of("ADDED " + corolla.getId(), "ADDED " + civic.getId(), "UPDATED " + corolla.getId(),
+                        "SOLD " + civic.getId(), "REMOVED " + corolla.getId(), "RELOADED " + Car.NO_ID), describe(published), spec);
+                assertEquals(19000, published.get(2).getPrice(), 0.001);
+                assertEquals("Bluetooth, Sunroof", published.get(2).getFeatures());
+                for (int i = 1; i < published.size(); i++) {
+                    assertEquals(published.get(i - 1).getSequence() + 1, published.get(i).getSequence());
+                }
+                assertFalse(changes.hasChanges());
+            }
+        }
+    }
+
+    @Test
+    void testBatchesArePublishedOncePerChange() throws IOException {
+        try (InventoryStore store = InventoryStores.open("sqlite:" + dir.resolve("cars.db"))) {
+            Car kept = new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth");
+            Car gone = new Car(2018, "Kia", "Rio", 12000, "Bluetooth");
+            store.addCar(kept);
+            store.addCar(gone);
+            InventoryChangeFeed.Subscription changes = store.getChangeFeed().subscribe();
+            Car repriced = InventoryStores.copyOf(kept);
+            repriced.setPrice(18000);
+            Car added = new Car(2022, "Mazda", "3", 23000, "Sunroof");
+            assertTrue(store.applyChanges(List.of(added), List.of(repriced), List.of(gone.getId())));
+            assertTrue(store.updateCars(List.of(repriced)));
+
+            List<InventoryChangeFeed.Change> published = new ArrayList<>();
+            changes.poll(100, published::add);
+            assertEquals(List.of("REMOVED " + gone.getId(), "UPDATED " + kept.getId(), "ADDED " + added.getId(),
+                    "UPDATED " + kept.getId()), describe(published));
+
+            InventoryMetrics.OperationMetrics flushes = InventoryMetrics.forStore("sqlite").get(InventoryMetrics.Operation.UPDATE_CARS);
+            long flushed = flushes.getCount();
+            Car missing = InventoryStores.copyOf(repriced);
+            missing.setId(9999);
+            assertTrue(store.updateCars(List.of(missing, repriced)));
+            published.clear();
+            changes.poll(100, published::add);
+            assertEquals(List.of("UPDATED " + kept.getId()), describe(published), "Cars that no longer exist are not published.");
+            assertEquals(flushed + 1, flushes.getCount(), "Batched updates should be timed.");
+
+            assertFalse(store.applyChanges(List.of(), List.of(), List.of(9999)), "Nothing is applied if a car is missing.");
+            assertFalse(changes.hasChanges(), "A rolled back batch publishes nothing.");
+        }
+    }
+
+    @Test
+    void testBuyingASoldCarPublishesNothing() {
+        CarInventory inventory = new CarInventory();
+        Car car = new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth");
+        inventory.addCar(car);
+        try (InventoryChangeFeed.Subscription changes = inventory.getChangeFeed().subscribe()) {
+            assertTrue(inventory.buyCar(car.getId(), "yes").isPresent());
+            assertTrue(inventory.buyCar(car.getId(), "yes").isEmpty(), "A car can be bought only once.");
+            assertFalse(inventory.markAsSold(car.getId()));
+
+            List<InventoryChangeFeed.Change> published = new ArrayList<>();
+            changes.poll(100, published::add);
+            assertEquals(List.of("SOLD " + car.getId()), describe(published));
+        }
+    }
+
+    @Test
+    void testSubscribersPullAtTheirOwnPace() {
+        InventoryChangeFeed feed = new InventoryChangeFeed(8);
+        feed.added(1); // Nobody is subscribed yet
+        InventoryChangeFeed.Subscription fast = feed.subscribe();
+        InventoryChangeFeed.Subscription slow = feed.subscribe();
+        for (int id = 2; id <= 5; id++) {
+            feed.added(id);
+        }
+
+        List<InventoryChangeFeed.Change> seen = new ArrayList<>();
+        assertEquals(3, fast.poll(3, seen::add), "At most the requested number of changes are delivered.");
+        assertEquals(1, fast.poll(3, seen::add));
+        assertEquals(List.of("ADDED 2", "ADDED 3", "ADDED 4", "ADDED 5"), describe(seen));
+
+        for (int id = 6; id <= 20; id++) {
+            feed.added(id);
+        }
+        seen.clear();
+        slow.poll(100, seen::add);
+        assertEquals(List.of("RELOADED " + Car.NO_ID), describe(seen), "A subscriber a ring behind is told to reload.");
+        assertEquals(1, slow.getOverruns());
+        feed.removed(3);
+        seen.clear();
+        slow.poll(100, seen::add);
+        assertEquals(List.of("REMOVED 3"), describe(seen), "After the reload it follows the newest changes.");
+
+        fast.close();
+        slow.close();
+        assertFalse(feed.hasSubscribers());
+        assertThrows(IllegalArgumentException.class, () -> new InventoryChangeFeed(12));
+    }
+
+    @Test
+    void testCacheFollowsChangesMadeBehindIt() {
+        InventoryStore store = new MemoryInventoryStore();
+        Car car = new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth");
+        store.addCar(car);
+        try (CarCache cache = new CarCache(store)) {
+            assertEquals(20000, cache.getCar(car.getId()).get().getPrice(), 0.001);
+            assertEquals(1, cache.countCars(null));
+
+            store.updateCar(car.getId(), 18000, "Bluetooth, Sunroof");
+            store.addCar(new Car(2021, "Honda", "Civic", 21000, "Navigation"));
+            assertEquals(18000, cache.getCar(car.getId()).get().getPrice(), 0.001, "Updates patch the cached car.");
+            assertEquals(2, cache.countCars(null), "Any change drops the cached counts.");
+
+            store.removeCar(car.getId());
+            assertTrue(cache.getCar(car.getId()).isEmpty(), "Removals evict the cached car.");
+            assertEquals(1, cache.countCars(null));
+        }
+    }
+
+    private static List<String> describe(List<InventoryChangeFeed.Change> changes) {
+        List<String> described = new ArrayList<>();
+        for (InventoryChangeFeed.Change change : changes) {
+            described.add(change.getKind() + " " + change.getCarId());
+        }
+        return described;
+    }
+}
@@ -0,0 +1,324 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * InventoryMetrics times the operations of one kind of inventory store, such as "memory" or "sqlite".
+ * For every operation it counts calls and failures and keeps a LatencyHistogram, so the p99 of
+ * an add or a purchase can be read while the application runs. All stores of one kind in the
+ * JVM share one InventoryMetrics.
+ * <ul>
+ * <li>Timing a call costs two System.nanoTime calls and a few atomic adds, and allocates nothing:
+ *     take {@code System.nanoTime()} before the call and pass it to record afterwards.</li>
+ * <li>Every operation is registered with the platform MBean server as
+ *     {@code CarDealership:type=InventoryMetrics,store=<store>,operation=<operation>},
+ *     so JConsole or any other JMX client can read its percentiles (see OperationMetricsMXBean).</li>
+ * <li>A Reporter prints a table of the operations that ran in each period. Setting the
+ *     inventory.metrics.interval system property to a number of seconds makes the console and
+ *     the GUI start one on standard output.</li>
+ * </ul>
+ */
+final class InventoryMetrics {
+    /** System property holding the number of seconds between reports on standard output. */
+    static final String INTERVAL_PROPERTY = "inventory.metrics.interval";
+    /** JMX domain the operations are registered under. */
+    static final String JMX_DOMAIN = "CarDealership";
+
+    /**
+     * The timed operations. Stores time the closest thing they have to each one.
+     */
+    enum Operation {
+        ADD_CAR("addCar"),
+        REMOVE_CAR("removeCar"),
+        UPDATE_CAR("updateCar"),
+        UPDATE_CARS("updateCars"),
+        GET_CAR("getCar"),
+        GET_ALL_CARS("getAllCars"),
+        QUERY("query"),
+        MARK_SOLD("markCarAsSold"),
+        PURCHASE("purchaseCar"),
+        LOAD_FILE("loadCarsFromFile"),
+        APPLY_CHANGES("applyChanges");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the name used in JMX and reports
+         */
+        String getName() { return name; }
+    }
+
+    private static final ConcurrentMap<String, InventoryMetrics> STORES = new ConcurrentHashMap<>();
+
+    private final String store;
+    private final OperationMetrics[] operations;
+
+    private InventoryMetrics(String store) {
+        this.store = store;
+        Operation[] values = Operation.values();
+        operations = new OperationMetrics[values.length];
+        for (Operation operation : values) {
+            operations[operation.ordinal()] = new OperationMetrics(store, operation);
+        }
+        register();
+    }
+
+    /**
+     * Returns the metrics of a kind of store, registering them with JMX the first time.
+     *
+     * @param store the kind of store, e.g. "sqlite"
+     * @return the metrics shared by every store of that kind
+     */
+    static InventoryMetrics forStore(String store) {
+        return STORES.computeIfAbsent(store, InventoryMetrics::new);
+    }
+
+    /**
+     * @return the metrics of every kind of store used so far, by name
+     */
+    static List<InventoryMetrics> all() {
+        List<InventoryMetrics> all = new ArrayList<>(STORES.values());
+        all.sort(Comparator.comparing(InventoryMetrics::getStore));
+        return all;
+    }
+
+    /**
+     * @return the kind of store
+     */
+    String getStore() { return store; }
+
+    /**
+     * Records a call that started at the given time and has just ended, successfully or not.
+     *
+     * @param operation the operation
+     * @param startNanos System.nanoTime() when the call started
+     */
+    void record(Operation operation, long startNanos) {
+        operations[operation.ordinal()].histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counts a failed call; it is timed by record like any other.
+     *
+     * @param operation the operation
+     * @param e what went wrong
+     */
+    void failed(Operation operation, Exception e) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        metrics.errors.increment();
+        metrics.lastError = e.toString();
+    }
+
+    /**
+     * @param operation the operation
+     * @return its metrics
+     */
+    OperationMetrics get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Starts counting every operation afresh.
+     */
+    void reset() {
+        for (OperationMetrics metrics : operations) {
+            metrics.reset();
+        }
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (OperationMetrics metrics : operations) {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=InventoryMetrics,store=" + store
+                        + ",operation=" + metrics.operation.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(metrics, name);
+                }
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts a Reporter on standard output if the inventory.metrics.interval property asks for one.
+     *
+     * @return the reporter, or null if the property is not set to a positive number of seconds
+     */
+    static Reporter startReportingFromProperty() {
+        String property = System.getProperty(INTERVAL_PROPERTY);
+        if (property == null || property.isBlank()) {
+            return null;
+        }
+        try {
+            double seconds = Double.parseDouble(property.trim());
+            return seconds > 0 ? new Reporter(System.out, (long) (seconds * 1000)) : null;
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring " + INTERVAL_PROPERTY + "=" + property + ": not a number of seconds");
+            return null;
+        }
+    }
+
+    /**
+     * OperationMetrics holds the counts of one operation of one kind of store.
+     */
+    static class OperationMetrics implements OperationMetricsMXBean {
+        private final String store;
+        private final Operation operation;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private volatile String lastError;
+
+        private OperationMetrics(String store, Operation operation) {
+            this.store = store;
+            this.operation = operation;
+        }
+
+        /**
+         * @return the durations recorded so far
+         */
+        LatencyHistogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+
+        @Override
+        public String getStore() { return store; }
+
+        @Override
+        public String getOperation() { return operation.getName(); }
+
+        @Override
+        public long getCount() { return histogram.snapshot().getCount(); }
+
+        @Override
+        public long getErrors() { return errors.sum(); }
+
+        @Override
+        public String getLastError() { return lastError; }
+
+        @Override
+        public double getMeanMicros() { return histogram.snapshot().getMeanNanos() / 1e3; }
+
+        @Override
+        public double getP50Micros() { return percentileMicros(50); }
+
+        @Override
+        public double getP90Micros() { return percentileMicros(90); }
+
+        @Override
+        public double getP99Micros() { return percentileMicros(99); }
+
+        @Override
+        public double getP999Micros() { return percentileMicros(99.9); }
+
+        @Override
+        public double getMaxMicros() { return histogram.snapshot().getMaxNanos() / 1e3; }
+
+        @Override
+        public void reset() {
+            histogram.reset();
+            errors.reset();
+            lastError = null;
+        }
+
+        private double percentileMicros(double percentile) {
+            return histogram.snapshot().getPercentileNanos(percentile) / 1e3;
+        }
+    }
+
+    /**
+     * Reporter prints, once per period, a table of the operations that ran since the previous
+     * report, with their percentiles over just that period, on a daemon thread.
+     */
+    static class Reporter implements AutoCloseable {
+        private final ScheduledExecutorService timer;
+        private final Map<OperationMetrics, LatencyHistogram.Snapshot> lastSnapshots = new HashMap<>();
+        private final Map<OperationMetrics, Long> lastErrors = new HashMap<>();
+        private long lastReportNanos = System.nanoTime();
+
+        /**
+         * @param out where the reports go
+         * @param periodMillis the time between reports
+         */
+        Reporter(PrintStream out, long periodMillis) {
+            if (periodMillis <= 0) {
+                throw new IllegalArgumentException("periodMillis must be positive");
+            }
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "inventory-metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            report(); // Takes the baseline, so the first report only covers its own period
+            timer.scheduleAtFixedRate(() -> {
+                String report = report();
+                if (!report.isEmpty()) {
+                    out.print(report);
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Builds the report of the operations that ran since the previous one.
+         *
+         * @return the table, or an empty string if nothing ran
+         */
+        synchronized String report() {
+            long now = System.nanoTime();
+            StringBuilder table = new StringBuilder();
+            for (InventoryMetrics metrics : all()) {
+                for (OperationMetrics operation : metrics.operations) {
+                    LatencyHistogram.Snapshot snapshot = operation.snapshot();
+                    long errors = operation.getErrors();
+                    LatencyHistogram.Snapshot previous = lastSnapshots.put(operation, snapshot);
+                    Long previousErrors = lastErrors.put(operation, errors);
+                    LatencyHistogram.Snapshot period = previous == null ? snapshot : snapshot.since(previous);
+                    long periodErrors = Math.max(0, errors - (previousErrors == null ? 0 : previousErrors));
+                    if (period.getCount() == 0 && periodErrors == 0) {
+                        continue;
+                    }
+                    table.append(String.format("%-8s %-17s %9d %7d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                            metrics.getStore(), operation.getOperation(), period.getCount(), periodErrors,
+                            period.getMeanNanos() / 1e3, period.getPercentileNanos(50) / 1e3,
+                            period.getPercentileNanos(90) / 1e3, period.getPercentileNanos(99) / 1e3,
+                            period.getPercentileNanos(99.9) / 1e3, period.getMaxNanos() / 1e3));
+                }
+            }
+            double seconds = (now - lastReportNanos) / 1e9;
+            lastReportNanos = now;
+            if (table.length() == 0) {
+                return "";
+            }
+            return String.format("Inventory operations in the last %.1f s (times in microseconds)%n", seconds)
+                    + String.format("%-8s %-17s %9s %7s %10s %10s %10s %10s %10s %10s%n",
+                    "store", "operation", "calls", "errors", "mean", "p50", "p90", "p99", "p99.9", "max")
+                    + table;
+        }
+
+        /**
+         * Stops the reports.
+         */
+        @Override
+        public void close() {
+            timer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryMetricsTest {
+
+    @Test
+    void testBucketsKeepDurationsWithinTwoPercent() {
+        int previous = -1;
+        for (long nanos = 0; nanos < LatencyHistogram.HIGHEST_TRACKABLE_NANOS; nanos = nanos * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(bucket >= previous, "Buckets should follow the durations in order.");
+            long lowest = LatencyHistogram.lowestNanosOf(bucket);
+            long highest = LatencyHistogram.highestNanosOf(bucket);
+            assertTrue(lowest <= nanos && nanos <= highest, nanos + " should lie in its bucket.");
+            assertTrue(highest - lowest <= Math.max(0, lowest / 64), nanos + " should be known to within 1/64.");
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(LatencyHistogram.HIGHEST_TRACKABLE_NANOS));
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            assertEquals(LatencyHistogram.highestNanosOf(bucket - 1) + 1, LatencyHistogram.lowestNanosOf(bucket),
+                    "Buckets should leave no gaps.");
+        }
+    }
+
+    @Test
+    void testPercentilesOfKnownDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(5_000_500, snapshot.getMeanNanos(), 0.001);
+        assertEquals(10_000_000, snapshot.getMaxNanos());
+        assertEquals(5_000_000, snapshot.getPercentileNanos(50), 5_000_000 / 64.0);
+        assertEquals(9_900_000, snapshot.getPercentileNanos(99), 9_900_000 / 64.0);
+        assertEquals(10_000_000, snapshot.getPercentileNanos(100));
+
+        histogram.record(50_000_000);
+        LatencyHistogram.Snapshot period = histogram.snapshot().since(snapshot);
+        assertEquals(1, period.getCount());
+        assertEquals(50_000_000, period.getPercentileNanos(50), 50_000_000 / 64.0);
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(99));
+    }
+
+    @Test
+    void testInventoryOperationsAreTimedAndReadableOverJmx() throws IOException, JMException {
+        InventoryMetrics metrics = InventoryMetrics.forStore("memory");
+        long adds = count(metrics, InventoryMetrics.Operation.ADD_CAR);
+        long removes = count(metrics, InventoryMetrics.Operation.REMOVE_CAR);
+        long loads = count(metrics, InventoryMetrics.Operation.LOAD_FILE);
+
+        CarInventory inventory = new CarInventory();
+        inventory.addCar(new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth"));
+        inventory.addCar(new Car(2021, "Honda", "Civic", 21000, "Navigation"));
+        inventory.removeCar(0);
+        Path feed = Files.createTempFile("metrics-feed", ".txt");
+        try {
+            Files.write(feed, List.of("2019, Ford, Focus, 15000, Sunroof", "2018, Kia, Rio, 12000, Bluetooth"));
+            assertTrue(inventory.loadCarsFromFile(feed.toString()));
+        } finally {
+            Files.delete(feed);
+        }
+
+        assertEquals(adds + 2, count(metrics, InventoryMetrics.Operation.ADD_CAR), "Loaded cars should not count as adds.");
+        assertEquals(removes + 1, count(metrics, InventoryMetrics.Operation.REMOVE_CAR));
+        assertEquals(loads + 1, count(metrics, InventoryMetrics.Operation.LOAD_FILE));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("CarDealership:type=InventoryMetrics,store=memory,operation=addCar");
+        assertEquals(adds + 2, (long) (Long) server.getAttribute(name, "Count"));
+        double p99 = (Double) server.getAttribute(name, "P99Micros");
+        assertTrue(p99 > 0 && p99 <= (Double) server.getAttribute(name, "MaxMicros"));
+    }
+
+    @Test
+    void testColumnarAndMappedStoresAreTimed() throws IOException {
+        Path dir = Files.createTempDirectory("metrics-test");
+        try {
+            for (String spec : List.of("columnar", "mmap:" + dir.resolve("cars.dat"))) {
+                InventoryMetrics metrics = InventoryMetrics.forStore(spec.split(":")[0]);
+                long adds = count(metrics, InventoryMetrics.Operation.ADD_CAR);
+                long updates = count(metrics, InventoryMetrics.Operation.UPDATE_CAR);
+                long batches = count(metrics, InventoryMetrics.Operation.UPDATE_CARS);
+                long queries = count(metrics, InventoryMetrics.Operation.QUERY);
+                long purchases = count(metrics, InventoryMetrics.Operation.PURCHASE);
+
+                try (InventoryStore store = InventoryStores.open(spec)) {
+                    Car car = new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth");
+                    store.addCar(car);
+                    store.updateCar(car.getId(), 19000, "Bluetooth, Sunroof");
+                    Car repriced = InventoryStores.copyOf(car);
+                    repriced.setPrice(18000);
+                    store.updateCars(List.of(repriced, repriced));
+                    store.countCars(new CarQuery().make("Toyota"));
+                    store.purchaseCar(car.getId(), new PricingEngine().quote(store.getCar(car.getId()).get(), 0, 0));
+                }
+
+                assertEquals(adds + 1, count(metrics, InventoryMetrics.Operation.ADD_CAR), spec);
+                assertEquals(updates + 1, count(metrics, InventoryMetrics.Operation.UPDATE_CAR),
+                        spec + ": a batch should not also count as single updates.");
+                assertEquals(batches + 1, count(metrics, InventoryMetrics.Operation.UPDATE_CARS), spec);
+                assertEquals(queries + 1, count(metrics, InventoryMetrics.Operation.QUERY), spec);
+                assertEquals(purchases + 1, count(metrics, InventoryMetrics.Operation.PURCHASE), spec);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDatabaseErrorsAreCounted() {
+        InventoryMetrics metrics = InventoryMetrics.forStore("sqlite");
+        InventoryMetrics.OperationMetrics removes = metrics.get(InventoryMetrics.Operation.REMOVE_CAR);
+        long errors = removes.getErrors();
+        long calls = removes.getCount();
+
+        assertFalse(new CarInventoryDBHelper().removeCar(1), "A helper that is not connected cannot remove cars.");
+
+        assertEquals(errors + 1, removes.getErrors());
+        assertEquals(calls + 1, removes.getCount(), "Failed calls should be timed too.");
+        assertTrue(removes.getLastError().contains("Not connected"), removes.getLastError());
+    }
+
+    @Test
+    void testReportsCoverOnlyTheOperationsOfTheirPeriod() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InventoryMetrics.Reporter reporter = new InventoryMetrics.Reporter(new PrintStream(out), 3_600_000)) {
+            CarInventory inventory = new CarInventory();
+            inventory.addCar(new Car(2020, "Toyota", "Corolla", 20000, "Bluetooth"));
+            inventory.updateCar(0, 19000, "Bluetooth");
+
+            String report = reporter.report();
+            assertTrue(report.contains("p99"), report);
+            assertTrue(report.contains("memory") && report.contains("updateCar"), report);
+            assertFalse(report.contains("removeCar"), "Operations that did not run should be left out:\n" + report);
+            assertEquals("", reporter.report(), "Nothing ran since the last report.");
+        }
+        assertEquals(0, out.size(), "Nothing should be printed before the first period ends.");
+    }
+
+    private static long count(InventoryMetrics metrics, InventoryMetrics.Operation operation) {
+        return metrics.get(operation).getCount();
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * InventoryStore is the storage behind the console and GUI front-ends. Every store addresses cars
+ * by stable ids it assigns when a car is added, answers the same queries with the same ordering,
+ * and sells a car only if it is still available at the quoted price, so a front-end can run on any of them:
+ * <ul>
+ * <li>MemoryInventoryStore keeps the lot in a CarInventory; nothing survives a restart.</li>
+ * <li>CarInventoryDBHelper keeps it in SQLite and records every sale in the sales ledger.</li>
+ * <li>MappedFileInventoryStore keeps it in fixed-size records of a memory-mapped file.</li>
+ * </ul>
+ * InventoryStores.open picks one from a spec such as "sqlite:cars.db". All stores are thread-safe,
+ * and every store publishes its changes on an InventoryChangeFeed.
+ */
+interface InventoryStore extends AutoCloseable {
+    /** Number of cars read at a time by the default findCars and forEachCar. */
+    int DEFAULT_PAGE_SIZE = 1000;
+
+    /**
+     * Outcome of purchaseCar.
+     */
+    enum PurchaseResult {
+        /** This caller bought the car and the sale was recorded. */
+        SOLD,
+        /** The car does not exist or someone else bought it first. */
+        NOT_AVAILABLE,
+        /** The price changed after the quote was made; quote again and re-confirm. */
+        PRICE_CHANGED,
+        /** The store failed; nothing was changed. */
+        ERROR
+    }
+
+    /**
+     * Adds a car, assigning it the next free id if it does not have one yet.
+     *
+     * @param car the car to add; its id is set on success
+     * @return true if the car was added, false if its id is taken or the store failed
+     */
+    boolean addCar(Car car);
+
+    /**
+     * Looks up one car by its id.
+     *
+     * @param id the id of the car
+     * @return the car, or empty if there is no such car or the lookup failed
+     */
+    Optional<Car> getCar(int id);
+
+    /**
+     * Removes a car.
+     *
+     * @param id the id of the car
+     * @return true if the car was removed
+     */
+    boolean removeCar(int id);
+
+    /**
+     * Updates the price and features of a car.
+     *
+     * @param id the id of the car
+     * @param price the new price
+     * @param features the new features
+     * @return true if the car was updated
+     */
+    boolean updateCar(int id, float price, String features);
+
+    /**
+     * Writes the price and features of many cars at once, e.g. a write-behind flush.
+     * Cars that no longer exist are skipped.
+     *
+     * @param cars the cars to write, identified by their ids
+     * @return true if every update was written, false if none was
+     */
+    boolean updateCars(Collection<Car> cars);
+
+    /**
+     * Counts the cars matching a query.
+     *
+     * @param query the search criteria, or null for every car
+     * @return the number of matching cars, or -1 on error
+     */
+    long countCars(CarQuery query);
+
+    /**
+     * Returns the next page of matching cars in id order: pass the id of the last car of the
+     * previous page, or -1 for the first page.
+     *
+     * @param query the search criteria, or null for every car
+     * @param afterId the id after which the page starts
+     * @param limit the maximum number of cars to return
+     * @param columns the columns needed; stores may fill in more
+     * @return the page; empty at the end or on error
+     */
+    List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns);
+
+    /**
+     * Returns a window of matching cars sorted on a column. Make and model sort without case,
+     * and ties are broken by id in the same direction, so windows never overlap.
+     *
+     * @param query the search criteria, or null for every car
+     * @param sortBy the column to sort on
+     * @param ascending true for ascending order
+     * @param offset the number of matching cars to skip
+     * @param limit the maximum number of cars to return
+     * @param columns the columns needed; stores may fill in more
+     * @return the cars of the window; empty at the end or on error
+     */
+    List<Car> getCarsSorted(CarQuery query, CarColumn sortBy, boolean ascending, long offset, int limit,
+                            Set<CarColumn> columns);
+
+    /**
+     * Buys a car at a quoted price: the car is marked as sold only if it is still available and
+     * its price still matches the quote. When two buyers race for the same car exactly one gets SOLD.
+     *
+     * @param id the id of the car
+     * @param quote the price breakdown the buyer accepted
+     * @return whether this caller bought the car
+     */
+    PurchaseResult purchaseCar(int id, PricingEngine.Quote quote);
+
+    /**
+     * Applies a batch of changes, such as a FeedSync delta, as one unit: removals, then updates of
+     * price and features, then additions. Only available cars are removed or updated: if one of them
+     * was sold or removed meanwhile, nothing is applied. SQLite applies the batch in one transaction.
+     * This default holds the store's own lock throughout, so stores whose methods synchronize on
+     * themselves apply the batch without other callers' changes in between, but a store failure
+     * part way leaves the earlier changes in place.
+     *
+     * @param added the cars to add; their ids are set
+     * @param updated the cars whose price and features to write, identified by their ids
+     * @param removed the ids of the cars to remove
+     * @return true if every change was applied
+     */
+    default boolean applyChanges(Collection<Car> added, Collection<Car> updated, Collection<Integer> removed) {
+        synchronized (this) {
+            Predicate<Integer> available = id -> getCar(id).filter(car -> !car.isSold()).isPresent();
+            for (int id : removed) {
+                if (!available.test(id)) {
+                    return false;
+                }
+            }
+            for (Car car : updated) {
+                if (!available.test(car.getId())) {
+                    return false;
+                }
+            }
+            boolean applied = true;
+            for (int id : removed) {
+                applied &= removeCar(id);
+            }
+            if (!updated.isEmpty()) {
+                applied &= updateCars(updated);
+            }
+            for (Car car : added) {
+                applied &= addCar(car);
+            }
+            return applied;
+        }
+    }
+
+    /**
+     * Adds the cars of a comma-separated feed file. Malformed lines are skipped and can be
+     * inspected with getLoadErrors().
+     *
+     * @param filename the feed file
+     * @return true if every line was loaded, false if the file could not be read or any line was skipped
+     */
+    boolean loadCarsFromFile(String filename);
+
+    /**
+     * @return the problems found by the most recent loadCarsFromFile, or an empty list if it was clean
+     */
+    List<CarFeedReader.LineError> getLoadErrors();
+
+    /**
+     * Returns the feed on which the store publishes every car it adds, updates, removes or sells,
+     * once each change has been applied.
+     *
+     * @return the store's change feed
+     */
+    InventoryChangeFeed getChangeFeed();
+
+    /**
+     * Writes anything still buffered and releases the store.
+     */
+    @Override
+    void close();
+
+    /**
+     * Finds every car matching a query.
+     *
+     * @param query the search criteria, or null for every car
+     * @return the matching cars in id order
+     */
+    default List<Car> findCars(CarQuery query) {
+        List<Car> matches = new ArrayList<>();
+        forEachCar(query, matches::add);
+        return matches;
+    }
+
+    /**
+     * Streams the matching cars in id order, one page at a time.
+     *
+     * @param query the search criteria, or null for every car
+     * @param action receives each car; returning false stops the scan
+     */
+    default void forEachCar(CarQuery query, Predicate<Car> action) {
+        int afterId = -1;
+        while (true) {
+            List<Car> page = getCarsPage(query, afterId, DEFAULT_PAGE_SIZE, CarColumn.ALL);
+            for (Car car : page) {
+                if (!action.test(car)) {
+                    return;
+                }
+            }
+            if (page.size() < DEFAULT_PAGE_SIZE) {
+                return;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Describes the outcome of a purchase for the buyer.
+     *
+     * @param result the outcome of purchaseCar
+     * @param finalPrice the formatted final price
+     * @return the message to show
+     */
+    static String purchaseMessage(PurchaseResult result, String finalPrice) {
+        switch (result) {
+            case SOLD:
+                return "Car purchased successfully! Final price: " + finalPrice;
+            case NOT_AVAILABLE:
+                return "Car not available or already sold.";
+            case PRICE_CHANGED:
+                return "The price of the car changed; please start the purchase again.";
+            default:
+                return "Error during purchase.";
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class InventoryStoreTest {
+    private Path dir;
+    private List<InventoryStore> stores;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("inventory-store-test");
+        stores = new ArrayList<>();
+        stores.add(InventoryStores.open("memory"));
+        stores.add(InventoryStores.open("columnar"));
+        stores.add(InventoryStores.open("mmap:" + dir.resolve("cars.dat")));
+        stores.add(InventoryStores.open("sqlite:" + dir.resolve("cars.db")));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (InventoryStore store : stores) {
+            store.close();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void addSampleCars(InventoryStore store) {
+        store.addCar(new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth"));
+        store.addCar(new Car(2018, "Honda", "Civic", 18000, "Backup Camera"));
+        store.addCar(new Car(2021, "toyota", "Camry", 26000, "Leather Seats"));
+        store.addCar(new Car(2015, "Ford", "Focus", 9000, null));
+    }
+
+    @Test
+    void testStoresAgreeOnQueriesAndOrdering() {
+        List<String> expected = null;
+        for (InventoryStore store : stores) {
+            addSampleCars(store);
+            List<String> answers = new ArrayList<>();
+            answers.add("count=" + store.countCars(null));
+            answers.add("toyotas=" + store.countCars(new CarQuery().make("TOYOTA")));
+            for (Car car : store.getCarsSorted(null, CarColumn.MAKE, true, 1, 2, CarColumn.ALL)) {
+                answers.add(car.getMake() + " " + car.getModel());
+            }
+            for (Car car : store.getCarsSorted(null, CarColumn.PRICE, false, 0, 10, CarColumn.ALL)) {
+                answers.add(car.getModel() + " " + car.getPrice());
+            }
+            for (Car car : store.findCars(new CarQuery().maxPrice(20000))) {
+                answers.add(car.getModel() + " " + car.getFeatures());
+            }
+            if (expected == null) {
+                expected = answers;
+            } else {
+                assertEquals(expected, answers, store + " should answer like the other stores.");
+            }
+        }
+    }
+
+    @Test
+    void testKeysetPagesCoverEveryCarOnce() {
+        for (InventoryStore store : stores) {
+            for (int i = 0; i < 250; i++) {
+                store.addCar(new Car(2000 + i % 20, "Make" + i % 7, "Model", 1000 + i, "F"));
+            }
+            store.removeCar(10);
+            List<Integer> seen = new ArrayList<>();
+            int afterId = -1;
+            List<Car> page;
+            do {
+                page = store.getCarsPage(null, afterId, 64, CarColumn.SUMMARY);
+                for (Car car : page) {
+                    assertTrue(car.getId() > afterId, store + " pages should be in id order.");
+                    seen.add(car.getId());
+                    afterId = car.getId();
+                }
+            } while (page.size() == 64);
+            assertEquals(249, seen.size(), store + " should page through every remaining car.");
+            assertFalse(seen.contains(10));
+        }
+    }
+
+    @Test
+    void testPurchaseChecksAvailabilityAndPrice() {
+        PricingEngine pricing = new PricingEngine();
+        for (InventoryStore store : stores) {
+            Car car = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+            assertTrue(store.addCar(car));
+            PricingEngine.Quote quote = pricing.quote(car, 6, 500);
+
+            store.updateCar(car.getId(), 23000, "Bluetooth, Sunroof");
+            assertEquals(InventoryStore.PurchaseResult.PRICE_CHANGED, store.purchaseCar(car.getId(), quote));
+
+            PricingEngine.Quote requote = pricing.quote(store.getCar(car.getId()).get(), 6, 500);
+            assertEquals(InventoryStore.PurchaseResult.SOLD, store.purchaseCar(car.getId(), requote));
+            assertEquals(InventoryStore.PurchaseResult.NOT_AVAILABLE, store.purchaseCar(car.getId(), requote));
+            assertTrue(store.getCar(car.getId()).get().isSold());
+            assertEquals(0, store.countCars(new CarQuery().availableOnly()));
+        }
+    }
+
+    @Test
+    void testReturnedCarsAreCopies() {
+        InventoryStore store = stores.get(0);
+        Car car = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+        store.addCar(car);
+        car.setPrice(1);
+        store.getCar(car.getId()).get().setPrice(2);
+
+        assertEquals(22000f, store.getCar(car.getId()).get().getPrice(), "Changing a car outside the store should not change it.");
+        assertEquals(1, store.countCars(new CarQuery().prices(21000, 23000)), "The price index should be intact.");
+    }
+
+    @Test
+    void testColumnarViewsReadThroughAndSurviveCompaction() {
+        ColumnarCarInventory inventory = new ColumnarCarInventory();
+        for (int i = 0; i < 200; i++) {
+            inventory.addCar(new Car(2015 + i % 5, i % 2 == 0 ? "Toyota" : "Honda", "Model " + i % 3, 10000 + i, "Bluetooth"));
+        }
+        assertEquals(6, inventory.getDictionarySize(), "Two makes, three models and one feature list are stored once each.");
+        List<Car> views = inventory.asCars();
+        Car last = views.get(199);
+        for (int id = 0; id < 150; id++) { // Enough removals to compact the columns
+            inventory.removeCar(id);
+        }
+        inventory.updateCar(199, 12345.67f, "Sunroof");
+
+        assertEquals(12345.67f, last.getPrice(), "A view should read the current columns.");
+        assertEquals("Sunroof", last.getFeatures());
+        assertEquals(50, inventory.asCars().size());
+        assertThrows(UnsupportedOperationException.class, () -> last.setPrice(1));
+        assertThrows(IllegalStateException.class, () -> views.get(0).getYear());
+        assertEquals(25, inventory.countCars(new CarQuery().make("TOYOTA")));
+    }
+
+    @Test
+    void testMappedFileSurvivesReopening() throws IOException {
+        Path file = dir.resolve("reopen.dat");
+        int id;
+        try (InventoryStore store = InventoryStores.open("mmap:" + file)) {
+            addSampleCars(store);
+            for (int i = 0; i < 3000; i++) { // Enough to grow both mappings
+                store.addCar(new Car(2010, "Kia", "Soul", 12000, "Feature list " + i));
+            }
+            Car car = new Car(2022, "Tesla", "Model 3", 40000, "Autopilot");
+            store.addCar(car);
+            id = car.getId();
+            store.updateCar(id, 39000, "Autopilot, Premium Interior, Extended Range");
+            store.removeCar(0);
+        }
+        try (InventoryStore store = InventoryStores.open("mmap:" + file)) {
+            assertEquals(3004, store.countCars(null));
+            Optional<Car> car = store.getCar(id);
+            assertTrue(car.isPresent());
+            assertEquals(39000f, car.get().getPrice());
+            assertEquals("Autopilot, Premium Interior, Extended Range", car.get().getFeatures());
+            assertFalse(store.getCar(0).isPresent());
+            assertNull(store.findCars(new CarQuery().make("Ford")).get(0).getFeatures());
+
+            Car next = new Car(2023, "Kia", "EV6", 45000, "AWD");
+            assertTrue(store.addCar(next));
+            assertTrue(next.getId() > id, "Ids should keep increasing after reopening.");
+        }
+    }
+
+    @Test
+    void testFeatureQueriesMatchWholeWordsInAnyOrder() {
+        for (InventoryStore store : stores) {
+            Car corolla = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth Sunroof");
+            store.addCar(corolla);
+            store.addCar(new Car(2019, "Honda", "Civic", 20000, "Backup Camera, Heated Seats"));
+            store.addCar(new Car(2018, "Ford", "Focus", 9000, "Sunroofs"));
+            store.addCar(new Car(2017, "Kia", "Soul", 8000, null));
+
+            assertEquals(1, store.countCars(new CarQuery().feature("SUNROOF")), store + " should match whole words only.");
+            assertEquals(1, store.countCars(new CarQuery().feature("seats heated")), store + " should ignore word order.");
+            assertEquals(0, store.countCars(new CarQuery().feature("Heated Steering")));
+            assertEquals(0, store.countCars(new CarQuery().feature("Never Seen Before")));
+            assertEquals("Civic", store.findCars(new CarQuery().feature("camera").maxPrice(25000)).get(0).getModel());
+
+            store.updateCar(corolla.getId(), 21000, "Heated Steering Wheel");
+            assertEquals(1, store.countCars(new CarQuery().feature("Heated Steering")), store + " should see updated features.");
+        }
+    }
+
+    @Test
+    void testFeedLoadSharesStringsAndFeatureSets() throws IOException {
+        Path feed = dir.resolve("feed.txt");
+        Files.writeString(feed, "2020,Toyota,Corolla,22000,Bluetooth Sunroof\n"
+                + "2021, Toyota ,Corolla,23000,Bluetooth Sunroof\n"
+                + "2019,\"Toyota\",Camry,24000,\"Bluetooth, Leather\"\n");
+        List<Car> cars = new ArrayList<>();
+        try (CarFeedReader reader = CarFeedReader.open(feed)) {
+            Car car;
+            while ((car = reader.next()) != null) {
+                cars.add(car);
+            }
+        }
+        assertEquals(3, cars.size());
+        assertSame(cars.get(0).getMake(), cars.get(1).getMake(), "Repeated makes should be one String.");
+        assertSame(cars.get(0).getMake(), cars.get(2).getMake(), "Quoted fields should be canonicalized too.");
+        assertSame(cars.get(0).getFeatures(), cars.get(1).getFeatures());
+        assertSame(cars.get(0).getFeatureSet(), cars.get(1).getFeatureSet(), "Cars with equal features should share a FeatureSet.");
+        assertTrue(cars.get(2).hasFeature("leather"));
+        assertFalse(cars.get(0).hasFeature("Leather"));
+
+        cars.get(0).setFeatures("Leather");
+        assertTrue(cars.get(0).hasFeature("Leather"), "Changing the features should retokenize them.");
+    }
+
+    @Test
+    void testFullVocabularyStillMatchesLateWords() {
+        CarDictionary dictionary = new CarDictionary();
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < CarDictionary.MAX_WORDS; i++) {
+            many.append("word").append(i).append(' ');
+        }
+        dictionary.featureSet(many.toString());
+        assertEquals(CarDictionary.MAX_WORDS, dictionary.getVocabularySize());
+
+        CarDictionary.FeatureSet late = dictionary.featureSet("Bluetooth, Word7");
+        assertTrue(late.matches(dictionary.filter("bluetooth word7")), "Words past the vocabulary limit should still match.");
+        assertFalse(late.matches(dictionary.filter("bluetooth word8")));
+        assertFalse(dictionary.featureSet("word7").matches(dictionary.filter("bluetooth")));
+    }
+
+    @Test
+    void testFeedSyncAppliesOnlyWhatChanged() throws IOException {
+        Path feed = dir.resolve("nightly.txt");
+        Files.writeString(feed, "2022, Kia, Rio, 15000, Bluetooth\n"
+                + "2021, TOYOTA, Camry, 26000, Leather Seats Sunroof\n"
+                + "2020, Toyota, Corolla, 22000, Bluetooth\n"
+                + "2018, Honda, Civic, 17500, Backup Camera\n");
+        Path partial = dir.resolve("partial.txt");
+        Files.writeString(partial, "2022, Kia, Rio, 15000, Bluetooth\n2021, Toyota, Camry, not a price, Sunroof\n");
+        PricingEngine pricing = new PricingEngine();
+        for (InventoryStore store : stores) {
+            Car kept = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+            Car gone = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+            Car repriced = new Car(2018, "Honda", "Civic", 18000, "Backup Camera");
+            Car refitted = new Car(2021, "Toyota", "Camry", 26000, "Leather Seats");
+            Car sold = new Car(2015, "Ford", "Focus", 9000, "Cloth");
+            for (Car car : List.of(kept, gone, repriced, refitted, sold)) {
+                store.addCar(car);
+            }
+            store.purchaseCar(sold.getId(), pricing.quote(sold, 0, 0));
+
+            FeedSync.Delta delta = new FeedSync(store).sync(feed.toString());
+            assertTrue(delta.isApplied(), store + ": " + delta);
+            assertEquals(1, delta.getUnchanged());
+            assertEquals(1, delta.getAdded().size());
+            assertEquals(2, delta.getUpdated().size());
+            assertEquals(List.of(gone.getId()), delta.getRemoved(), "The second Corolla left the lot.");
+
+            assertEquals(5, store.countCars(null), store + " should keep the sold car and add the Rio.");
+            assertTrue(store.getCar(gone.getId()).isEmpty());
+            assertEquals(22000f, store.getCar(kept.getId()).get().getPrice());
+            assertEquals(17500f, store.getCar(repriced.getId()).get().getPrice());
+            assertEquals("Leather Seats Sunroof", store.getCar(refitted.getId()).get().getFeatures());
+            assertEquals("Toyota", store.getCar(refitted.getId()).get().getMake(), "Makes are matched without case.");
+            assertTrue(store.getCar(sold.getId()).get().isSold());
+            Car added = delta.getAdded().get(0);
+            assertEquals("Rio", store.getCar(added.getId()).get().getModel(), "Added cars should get their ids.");
+
+            FeedSync.Delta again = new FeedSync(store).sync(feed.toString());
+            assertTrue(again.isEmpty(), "Syncing the same feed twice should change nothing: " + again);
+            assertEquals(4, again.getUnchanged());
+
+            FeedSync.Delta held = new FeedSync(store).sync(partial.toString());
+            assertTrue(held.areRemovalsHeldBack(), held.toString());
+            assertEquals(3, held.getRemoved().size());
+            assertEquals(5, store.countCars(null), "A feed with malformed lines should not remove cars.");
+        }
+    }
+
+    @Test
+    void testChangesToACarSoldMeanwhileAreRefused() throws IOException {
+        Path feed = dir.resolve("nightly.txt");
+        Files.writeString(feed, "2018, Honda, Civic, 17500, Backup Camera\n2022, Kia, Rio, 15000, Bluetooth\n");
+        for (InventoryStore store : stores) {
+            Car civic = new Car(2018, "Honda", "Civic", 18000, "Backup Camera");
+            Car focus = new Car(2015, "Ford", "Focus", 9000, "Cloth");
+            store.addCar(civic);
+            store.addCar(focus);
+            FeedSync.Delta delta = new FeedSync(store).diff(feed.toString());
+            assertEquals(1, delta.getUpdated().size());
+            assertEquals(List.of(focus.getId()), delta.getRemoved());
+
+            store.purchaseCar(civic.getId(), new PricingEngine().quote(civic, 0, 0)); // Another terminal sells the Civic
+            assertFalse(store.applyChanges(delta.getAdded(), delta.getUpdated(), delta.getRemoved()), store.toString());
+            assertEquals(2, store.countCars(null), store + " should not remove the Focus or add the Rio.");
+            assertEquals(18000f, store.getCar(civic.getId()).get().getPrice(), "The sold car should keep its price.");
+            assertTrue(store.getCar(focus.getId()).isPresent());
+        }
+    }
+
+    @Test
+    void testUnknownSpecIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> InventoryStores.open("postgres://cars"));
+        assertThrows(IOException.class, () -> InventoryStores.open("mmap:" + dir));
+        assertThrows(IllegalArgumentException.class, () -> InventoryStores.open(dir.resolve("columnr").toString()));
+        assertFalse(Files.exists(dir.resolve("columnr")), "A mistyped kind should not create a database file.");
+    }
+
+    @Test
+    void testBarePathsOpenSqliteDatabases() throws IOException {
+        InventoryStores.open("sqlite:" + dir.resolve("inventory")).close();
+        try (InventoryStore existing = InventoryStores.open(dir.resolve("inventory").toString());
+             InventoryStore named = InventoryStores.open(dir.resolve("cars.db").toString());
+             InventoryStore columnar = InventoryStores.open("COLUMNAR")) {
+            assertTrue(existing instanceof CarInventoryDBHelper, "An existing file is a SQLite database.");
+            assertTrue(named instanceof CarInventoryDBHelper);
+            assertTrue(columnar instanceof ColumnarCarInventory);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * InventoryStores opens the store a deployment runs on, from a spec given on the command line
+ * or in the inventory.store system property:
+ * <pre>
+ * memory                 an in-memory CarInventory, emptied on exit
+ * columnar               a compact in-memory ColumnarCarInventory, emptied on exit
+ * sqlite:cars.db         a SQLite database (a bare path ending in .db, or naming an existing file, means the same)
+ * mmap:cars.dat          a memory-mapped record file, created if missing
+ * </pre>
+ * It also holds the ordering shared by the stores that sort in Java rather than in SQL.
+ */
+final class InventoryStores {
+    /** System property holding the store spec when none is given on the command line. */
+    static final String PROPERTY = "inventory.store";
+    /** The spec used by the console when none is given. */
+    static final String DEFAULT_SPEC = "memory";
+
+    private InventoryStores() {
+    }
+
+    /**
+     * Picks the store spec from the first command-line argument or, failing that, the inventory.store property.
+     *
+     * @param args the command-line arguments
+     * @param fallback the spec to use when neither is set; may be null
+     * @return the spec
+     */
+    static String specFrom(String[] args, String fallback) {
+        if (args.length > 0 && !args[0].isBlank()) {
+            return args[0].trim();
+        }
+        String property = System.getProperty(PROPERTY);
+        return property == null || property.isBlank() ? fallback : property.trim();
+    }
+
+    /**
+     * Opens a store.
+     *
+     * @param spec the store spec, e.g. "memory", "columnar", "sqlite:cars.db" or "mmap:cars.dat"
+     * @return the open store
+     * @throws IOException if the store could not be opened
+     * @throws IllegalArgumentException if the spec names no known kind of store
+     */
+    static InventoryStore open(String spec) throws IOException {
+        if (spec == null || spec.isBlank()) {
+            throw new IllegalArgumentException("No inventory store given");
+        }
+        spec = spec.trim();
+        if (spec.equalsIgnoreCase("memory")) {
+            return new MemoryInventoryStore();
+        }
+        if (spec.equalsIgnoreCase("columnar")) {
+            return new ColumnarCarInventory();
+        }
+        if (spec.startsWith("mmap:")) {
+            return MappedFileInventoryStore.open(Paths.get(spec.substring("mmap:".length())));
+        }
+        String dbPath = spec.startsWith("sqlite:") ? spec.substring("sqlite:".length()) : spec;
+        // A bare path must look like a database, so a mistyped kind does not create a database file
+        if (!spec.startsWith("sqlite:") && !dbPath.endsWith(".db") && !isExistingFile(dbPath)) {
+            throw new IllegalArgumentException("Unknown inventory store: " + spec
+                    + " (expected memory, columnar, sqlite:<file> or mmap:<file>)");
+        }
+        CarInventoryDBHelper dbHelper = new CarInventoryDBHelper();
+        if (!dbHelper.connect(dbPath)) {
+            throw new IOException("Could not connect to SQLite database " + dbPath);
+        }
+        return dbHelper;
+    }
+
+    private static boolean isExistingFile(String path) {
+        try {
+            return Files.isRegularFile(Paths.get(path));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The order of InventoryStore.getCarsSorted: make and model without case, nulls first,
+     * unsold before sold, and ties broken by id in the same direction.
+     *
+     * @param sortBy the column to sort on
+     * @param ascending true for ascending order
+     * @return the comparator
+     */
+    static Comparator<Car> order(CarColumn sortBy, boolean ascending) {
+        Comparator<Car> order;
+        switch (sortBy) {
+            case YEAR:
+                order = Comparator.comparingInt(Car::getYear);
+                break;
+            case MAKE:
+                order = Comparator.comparing(Car::getMake, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+                break;
+            case MODEL:
+                order = Comparator.comparing(Car::getModel, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+                break;
+            case PRICE:
+                order = Comparator.comparingDouble(Car::getPrice);
+                break;
+            case FEATURES:
+                order = Comparator.comparing(Car::getFeatures, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+                break;
+            case STATUS:
+                order = Comparator.comparing(Car::isSold);
+                break;
+            default:
+                order = (a, b) -> 0;
+                break;
+        }
+        order = order.thenComparingInt(Car::getId);
+        return ascending ? order : order.reversed();
+    }
+
+    /**
+     * Copies a car, so callers cannot change a store's own objects behind its back.
+     *
+     * @param car the car
+     * @return a car with the same id, fields and status
+     */
+    static Car copyOf(Car car) {
+        Car copy = new Car(car.getYear(), car.getMake(), car.getModel(), car.getPrice(), car.getFeatures());
+        copy.setId(car.getId());
+        if (car.isSold()) {
+            copy.markAsSold();
+        }
+        return copy;
+    }
+
+    /**
+     * SortedResults remembers the last sorted result of a store that sorts in Java, so paging
+     * through one sort order sorts once instead of once per page. Callers hold the store's lock.
+     */
+    static final class SortedResults {
+        private String key;
+        private long version;
+        private List<Car> sorted;
+
+        /**
+         * Returns a window of the sorted matches, sorting again only if the query, the order
+         * or the store's contents changed since the last call.
+         *
+         * @param query the search criteria, or null for every car
+         * @param sortBy the column to sort on
+         * @param ascending true for ascending order
+         * @param offset the number of cars to skip
+         * @param limit the maximum number of cars to return
+         * @param version the store's modification count
+         * @param matches finds the matching cars, in any order, into a new list
+         * @return the cars of the window
+         */
+        List<Car> window(CarQuery query, CarColumn sortBy, boolean ascending, long offset, int limit,
+                         long version, Supplier<List<Car>> matches) {
+            String key = query + " by=" + sortBy + " asc=" + ascending;
+            if (sorted == null || version != this.version || !key.equals(this.key)) {
+                sorted = matches.get();
+                sorted.sort(order(sortBy, ascending));
+                this.key = key;
+                this.version = version;
+            }
+            if (offset >= sorted.size()) {
+                return new ArrayList<>();
+            }
+            int from = (int) offset;
+            return new ArrayList<>(sorted.subList(from, (int) Math.min(sorted.size(), from + (long) limit)));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram records durations in nanoseconds in log-linear buckets, the way HdrHistogram does:
+ * every power of two is split into 64 equal buckets, so a recorded value is known to within 1/64
+ * (about 1.6%) anywhere from a nanosecond to about 4.9 hours, in 2,496 counters.
+ * Recording is lock-free and allocates nothing; threads only contend when they hit the same bucket.
+ * Percentiles are read from snapshots, which are consistent enough for monitoring while
+ * recording goes on but are not taken atomically.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The largest duration told apart from longer ones (2^44 - 1 ns); longer ones share the last bucket. */
+    static final long HIGHEST_TRACKABLE_NANOS = (1L << 44) - 1;
+    /** Number of buckets. */
+    static final int BUCKETS = bucketOf(HIGHEST_TRACKABLE_NANOS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds; negative durations count as 0
+     */
+    void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Forgets everything recorded so far. Durations recorded during the reset may be partly kept.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    /**
+     * @return a copy of the counts recorded so far
+     */
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * @param nanos a duration between 0 and HIGHEST_TRACKABLE_NANOS
+     * @return the bucket counting it
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @param bucket a bucket
+     * @return the shortest duration it counts
+     */
+    static long lowestNanosOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        return (long) ((bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @param bucket a bucket
+     * @return the longest duration it counts
+     */
+    static long highestNanosOf(int bucket) {
+        return lowestNanosOf(bucket + 1) - 1;
+    }
+
+    /**
+     * Snapshot is a copy of a histogram's counts at one moment.
+     */
+    static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * @return the number of recorded durations
+         */
+        long getCount() { return count; }
+
+        /**
+         * @return the average duration in nanoseconds, or 0 if nothing was recorded
+         */
+        double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @return the longest duration in nanoseconds, or 0 if nothing was recorded
+         */
+        long getMaxNanos() { return count == 0 ? 0 : maxNanos; }
+
+        /**
+         * Returns the duration that the given share of the recorded durations do not exceed,
+         * rounded up to the end of its bucket.
+         *
+         * @param percentile the percentile, from 0 to 100, e.g. 99 for the p99
+         * @return the duration in nanoseconds, or 0 if nothing was recorded
+         */
+        long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestNanosOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * Returns what was recorded between an earlier snapshot of the same histogram and this one.
+         * Its maximum is only known to the bucket.
+         *
+         * @param earlier the earlier snapshot
+         * @return the durations recorded in between
+         */
+        Snapshot since(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            long deltaCount = 0;
+            long deltaMax = 0;
+            for (int i = 0; i < counts.length; i++) {
+                delta[i] = Math.max(0, counts[i] - earlier.counts[i]); // A reset in between makes the difference negative
+                deltaCount += delta[i];
+                if (delta[i] > 0) {
+                    deltaMax = Math.min(highestNanosOf(i), maxNanos);
+                }
+            }
+            return new Snapshot(delta, deltaCount, Math.max(0, totalNanos - earlier.totalNanos), deltaMax);
+        }
+    }
+}
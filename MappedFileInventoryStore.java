@@ -0,0 +1,555 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * MappedFileInventoryStore keeps the inventory in a pair of memory-mapped files, so it survives
+ * restarts without a database and reads are plain memory accesses:
+ * <ul>
+ * <li>The record file holds a 64-byte header and one 64-byte record per car, in id order:
+ *     id, flags (live, sold), year, price, and the offset and length of make, model and features.</li>
+ * <li>The string file (the record file's name plus ".strings") holds the UTF-8 text the records point to.</li>
+ * </ul>
+ * An id-to-slot map is rebuilt when the file is opened. Removing a car only clears its live flag,
+ * and features that grow are appended to the string file, so space is not reclaimed.
+ * Queries scan the records, reading text only when a criterion needs it.
+ * Changes reach the disk when the operating system writes the mapped pages back, and at the latest on close().
+ * Every method holds the store's lock. Its operations are timed in the "mmap" InventoryMetrics, and I/O errors are counted there.
+ */
+class MappedFileInventoryStore implements InventoryStore {
+    private static final InventoryMetrics METRICS = InventoryMetrics.forStore("mmap");
+    private static final int RECORDS_MAGIC = 0x43415253; // "CARS"
+    private static final int STRINGS_MAGIC = 0x53545253; // "STRS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 64;
+    private static final int INITIAL_RECORDS = 1024;
+
+    // Header fields
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOTS = 8;
+    private static final int H_NEXT_ID = 12;
+    private static final int H_LIVE = 16;
+    private static final int H_STRINGS_USED = 8; // In the string file's header
+
+    // Record fields
+    private static final int R_ID = 0;
+    private static final int R_FLAGS = 4;
+    private static final int R_YEAR = 8;
+    private static final int R_PRICE = 12;
+    private static final int R_MAKE = 16;
+    private static final int R_MODEL = 24;
+    private static final int R_FEATURES = 32;
+    private static final int R_MAKE_LEN = 40;
+    private static final int R_MODEL_LEN = 44;
+    private static final int R_FEATURES_LEN = 48;
+
+    private static final int LIVE = 1;
+    private static final int SOLD = 2;
+
+    private final Path path;
+    private final FileChannel recordChannel;
+    private final FileChannel stringChannel;
+    private MappedByteBuffer records;
+    private MappedByteBuffer strings;
+    private int slots; // Records written, live or removed
+    private int nextId;
+    private int live;
+    private long stringsUsed;
+    private final IntIntHashMap slotById = new IntIntHashMap();
+    private final InventoryStores.SortedResults sorted = new InventoryStores.SortedResults();
+    private final InventoryChangeFeed changes = new InventoryChangeFeed();
+    private long version; // Bumped by every change, so cached sort results are dropped
+    private List<CarFeedReader.LineError> loadErrors = Collections.emptyList();
+
+    private MappedFileInventoryStore(Path path, FileChannel recordChannel, FileChannel stringChannel) {
+        this.path = path;
+        this.recordChannel = recordChannel;
+        this.stringChannel = stringChannel;
+    }
+
+    /**
+     * Opens a record file, creating it and its string file if they do not exist.
+     *
+     * @param path the record file
+     * @return the open store
+     * @throws IOException if the files cannot be opened or are not inventory files
+     */
+    static MappedFileInventoryStore open(Path path) throws IOException {
+        Path stringPath = Paths.get(path + ".strings");
+        FileChannel recordChannel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel stringChannel;
+        try {
+            stringChannel = FileChannel.open(stringPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            recordChannel.close();
+            throw e;
+        }
+        MappedFileInventoryStore store = new MappedFileInventoryStore(path, recordChannel, stringChannel);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Maps the files, initializing new ones and rebuilding the id map of existing ones.
+     */
+    private void load() throws IOException {
+        boolean created = recordChannel.size() == 0;
+        records = recordChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(recordChannel.size(), HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE));
+        strings = stringChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                Math.max(stringChannel.size(), HEADER_SIZE + 64L * INITIAL_RECORDS));
+        if (created) {
+            records.putInt(H_MAGIC, RECORDS_MAGIC);
+            records.putInt(H_VERSION, FORMAT_VERSION);
+            strings.putInt(H_MAGIC, STRINGS_MAGIC);
+            strings.putLong(H_STRINGS_USED, HEADER_SIZE);
+        } else if (records.getInt(H_MAGIC) != RECORDS_MAGIC || strings.getInt(H_MAGIC) != STRINGS_MAGIC) {
+            throw new IOException(path + " is not an inventory file");
+        } else if (records.getInt(H_VERSION) != FORMAT_VERSION) {
+            throw new IOException(path + " has unsupported format version " + records.getInt(H_VERSION));
+        }
+        slots = records.getInt(H_SLOTS);
+        nextId = records.getInt(H_NEXT_ID);
+        live = records.getInt(H_LIVE);
+        stringsUsed = strings.getLong(H_STRINGS_USED);
+        for (int slot = 0; slot < slots; slot++) {
+            int at = recordAt(slot);
+            if ((records.getInt(at + R_FLAGS) & LIVE) != 0) {
+                slotById.put(records.getInt(at + R_ID), slot);
+            }
+        }
+    }
+
+    /**
+     * Adds a car. A car that already has an id is accepted only if its id is above every id in
+     * the file, which keeps the records in id order, e.g. when copying another store in id order.
+     */
+    @Override
+    public synchronized boolean addCar(Car car) {
+        long start = System.nanoTime();
+        try {
+            if (!append(car)) {
+                return false;
+            }
+            changes.added(car.getId());
+            return true;
+        } catch (IOException e) {
+            METRICS.failed(InventoryMetrics.Operation.ADD_CAR, e);
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.ADD_CAR, start);
+        }
+    }
+
+    /**
+     * Adds a car without publishing it, for the loader.
+     *
+     * @return false if the car's id is not above every id in the file
+     * @throws IOException if the files cannot be grown
+     */
+    private boolean append(Car car) throws IOException {
+        int id = car.getId() == Car.NO_ID ? nextId : car.getId();
+        if (id < nextId) {
+            return false;
+        }
+        ensureRecords(slots + 1);
+        int at = recordAt(slots);
+        records.putInt(at + R_ID, id);
+        records.putInt(at + R_FLAGS, LIVE | (car.isSold() ? SOLD : 0));
+        records.putInt(at + R_YEAR, car.getYear());
+        records.putFloat(at + R_PRICE, car.getPrice());
+        putString(at + R_MAKE, at + R_MAKE_LEN, car.getMake());
+        putString(at + R_MODEL, at + R_MODEL_LEN, car.getModel());
+        putString(at + R_FEATURES, at + R_FEATURES_LEN, car.getFeatures());
+        slotById.put(id, slots);
+        slots++;
+        nextId = id + 1;
+        live++;
+        writeHeader();
+        car.setId(id);
+        return true;
+    }
+
+    @Override
+    public synchronized Optional<Car> getCar(int id) {
+        long start = System.nanoTime();
+        try {
+            int slot = slotById.get(id);
+            return slot == IntIntHashMap.NO_VALUE ? Optional.empty() : Optional.of(readCar(recordAt(slot), true));
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.GET_CAR, start);
+        }
+    }
+
+    @Override
+    public synchronized boolean removeCar(int id) {
+        long start = System.nanoTime();
+        try {
+            int slot = slotById.remove(id);
+            if (slot == IntIntHashMap.NO_VALUE) {
+                return false;
+            }
+            int at = recordAt(slot);
+            records.putInt(at + R_FLAGS, records.getInt(at + R_FLAGS) & ~LIVE);
+            live--;
+            writeHeader();
+            changes.removed(id);
+            return true;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.REMOVE_CAR, start);
+        }
+    }
+
+    @Override
+    public synchronized boolean updateCar(int id, float price, String features) {
+        long start = System.nanoTime();
+        try {
+            return update(id, price, features);
+        } catch (IOException e) {
+            METRICS.failed(InventoryMetrics.Operation.UPDATE_CAR, e);
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CAR, start);
+        }
+    }
+
+    /**
+     * Updates a car without timing it, so a batch is timed once by updateCars.
+     *
+     * @throws IOException if the string file cannot be grown for the new features
+     */
+    private boolean update(int id, float price, String features) throws IOException {
+        int slot = slotById.get(id);
+        if (slot == IntIntHashMap.NO_VALUE) {
+            return false;
+        }
+        int at = recordAt(slot);
+        records.putFloat(at + R_PRICE, price);
+        replaceString(at + R_FEATURES, at + R_FEATURES_LEN, features);
+        version++;
+        changes.updated(id, price, features);
+        return true;
+    }
+
+    /**
+     * Makes room for every new feature text first, so the updates are written either all or not at all.
+     */
+    @Override
+    public synchronized boolean updateCars(Collection<Car> cars) {
+        long start = System.nanoTime();
+        int bytes = 0;
+        for (Car car : cars) {
+            bytes += utf8Length(car.getFeatures());
+        }
+        try {
+            ensureStrings(bytes);
+            for (Car car : cars) {
+                update(car.getId(), car.getPrice(), car.getFeatures());
+            }
+            return true;
+        } catch (IOException e) {
+            METRICS.failed(InventoryMetrics.Operation.UPDATE_CARS, e);
+            e.printStackTrace();
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CARS, start);
+        }
+    }
+
+    @Override
+    public synchronized long countCars(CarQuery query) {
+        long start = System.nanoTime();
+        try {
+            if (query == null) {
+                return live;
+            }
+            long count = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                if (matches(recordAt(slot), query)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        }
+    }
+
+    @Override
+    public synchronized List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns) {
+        long start = System.nanoTime();
+        int lo = 0;
+        int hi = slots;
+        while (lo < hi) { // First record with an id above afterId; removed records keep their ids
+            int mid = (lo + hi) >>> 1;
+            if (records.getInt(recordAt(mid) + R_ID) <= afterId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        boolean features = columns.contains(CarColumn.FEATURES);
+        List<Car> page = new ArrayList<>(Math.min(limit, DEFAULT_PAGE_SIZE));
+        for (int slot = lo; slot < slots && page.size() < limit; slot++) {
+            int at = recordAt(slot);
+            if (matches(at, query)) {
+                page.add(readCar(at, features));
+            }
+        }
+        METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        return page;
+    }
+
+    @Override
+    public synchronized List<Car> getCarsSorted(CarQuery query, CarColumn sortBy, boolean ascending, long offset,
+                                                int limit, Set<CarColumn> columns) {
+        long start = System.nanoTime();
+        List<Car> window = sorted.window(query, sortBy, ascending, offset, limit, version, () -> {
+            List<Car> matches = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                int at = recordAt(slot);
+                if (matches(at, query)) {
+                    matches.add(readCar(at, true));
+                }
+            }
+            return matches;
+        });
+        METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        return window;
+    }
+
+    @Override
+    public synchronized PurchaseResult purchaseCar(int id, PricingEngine.Quote quote) {
+        long start = System.nanoTime();
+        try {
+            int slot = slotById.get(id);
+            if (slot == IntIntHashMap.NO_VALUE) {
+                return PurchaseResult.NOT_AVAILABLE;
+            }
+            int at = recordAt(slot);
+            int flags = records.getInt(at + R_FLAGS);
+            if ((flags & SOLD) != 0) {
+                return PurchaseResult.NOT_AVAILABLE;
+            }
+            if (PricingEngine.toCents(records.getFloat(at + R_PRICE)) != quote.getBaseCents()) {
+                return PurchaseResult.PRICE_CHANGED;
+            }
+            records.putInt(at + R_FLAGS, flags | SOLD);
+            version++;
+            changes.sold(id);
+            return PurchaseResult.SOLD;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.PURCHASE, start);
+        }
+    }
+
+    @Override
+    public synchronized boolean loadCarsFromFile(String filename) {
+        long start = System.nanoTime();
+        try (CarFeedReader reader = CarFeedReader.open(filename)) {
+            Car car;
+            while ((car = reader.next()) != null) {
+                try {
+                    append(car); // Feed cars have no ids, so they always fit
+                } catch (IOException e) {
+                    METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+                    loadErrors = Collections.singletonList(new CarFeedReader.LineError(0,
+                            "Could not write " + path + " after " + reader.getCarsRead() + " cars: " + e.getMessage()));
+                    return false;
+                }
+            }
+            loadErrors = reader.getErrors();
+            return reader.getErrorCount() == 0;
+        } catch (IOException e) {
+            METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+            loadErrors = Collections.singletonList(new CarFeedReader.LineError(0, "Could not read file: " + e.getMessage()));
+            return false;
+        } finally {
+            changes.reloaded(); // Even a failed load may have added cars
+            METRICS.record(InventoryMetrics.Operation.LOAD_FILE, start);
+        }
+    }
+
+    @Override
+    public synchronized List<CarFeedReader.LineError> getLoadErrors() {
+        return loadErrors;
+    }
+
+    @Override
+    public InventoryChangeFeed getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Writes the mapped pages to disk and closes the files.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            if (records != null) {
+                records.force();
+                strings.force();
+            }
+            recordChannel.close();
+            stringChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return e.g. "mmap:cars.dat (1,204 cars)"
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("mmap:%s (%,d cars)", path, live);
+    }
+
+    private static int recordAt(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private void writeHeader() {
+        records.putInt(H_SLOTS, slots);
+        records.putInt(H_NEXT_ID, nextId);
+        records.putInt(H_LIVE, live);
+        version++;
+    }
+
+    /**
+     * Checks a record against a query, reading make, model and features only if the query names them.
+     */
+    private boolean matches(int at, CarQuery query) {
+        int flags = records.getInt(at + R_FLAGS);
+        if ((flags & LIVE) == 0) {
+            return false;
+        }
+        if (query == null) {
+            return true;
+        }
+        int year = records.getInt(at + R_YEAR);
+        float price = records.getFloat(at + R_PRICE);
+        return year >= query.getMinYear() && year <= query.getMaxYear()
+                && price >= query.getMinPrice() && price <= query.getMaxPrice()
+                && !(query.isAvailableOnly() && (flags & SOLD) != 0)
+                && (query.getMake() == null || query.getMake().equalsIgnoreCase(getString(at + R_MAKE, at + R_MAKE_LEN)))
+                && (query.getModel() == null || query.getModel().equalsIgnoreCase(getString(at + R_MODEL, at + R_MODEL_LEN)))
+                && (query.getFeature() == null || CarDictionary.shared()
+                        .featureSet(getString(at + R_FEATURES, at + R_FEATURES_LEN)).matches(query.getFeatureFilter()));
+    }
+
+    private Car readCar(int at, boolean withFeatures) {
+        Car car = new Car(records.getInt(at + R_YEAR), getString(at + R_MAKE, at + R_MAKE_LEN),
+                getString(at + R_MODEL, at + R_MODEL_LEN), records.getFloat(at + R_PRICE),
+                withFeatures ? getString(at + R_FEATURES, at + R_FEATURES_LEN) : null);
+        car.setId(records.getInt(at + R_ID));
+        if ((records.getInt(at + R_FLAGS) & SOLD) != 0) {
+            car.markAsSold();
+        }
+        return car;
+    }
+
+    /**
+     * Reads a string field; a length of -1 stands for null.
+     */
+    private String getString(int offsetField, int lengthField) {
+        int length = records.getInt(lengthField);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        strings.get((int) records.getLong(offsetField), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends a string to the string file and points a record field at it.
+     */
+    private void putString(int offsetField, int lengthField, String value) throws IOException {
+        if (value == null) {
+            records.putLong(offsetField, 0);
+            records.putInt(lengthField, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureStrings(bytes.length);
+        strings.put((int) stringsUsed, bytes);
+        records.putLong(offsetField, stringsUsed);
+        records.putInt(lengthField, bytes.length);
+        stringsUsed += bytes.length;
+        strings.putLong(H_STRINGS_USED, stringsUsed);
+    }
+
+    /**
+     * Replaces a string field, overwriting the old text in place when the new text fits.
+     */
+    private void replaceString(int offsetField, int lengthField, String value) throws IOException {
+        int oldLength = records.getInt(lengthField);
+        if (value != null && oldLength >= 0) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length <= oldLength) {
+                strings.put((int) records.getLong(offsetField), bytes);
+                records.putInt(lengthField, bytes.length);
+                return;
+            }
+        }
+        putString(offsetField, lengthField, value);
+    }
+
+    private static int utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Grows the record mapping, doubling it, until it holds the given number of records.
+     */
+    private void ensureRecords(int count) throws IOException {
+        long needed = recordAt(0) + (long) count * RECORD_SIZE;
+        if (needed > records.capacity()) {
+            records = remap(recordChannel, records, needed);
+        }
+    }
+
+    /**
+     * Grows the string mapping, doubling it, until it has room for the given number of bytes.
+     */
+    private void ensureStrings(int bytes) throws IOException {
+        long needed = stringsUsed + bytes;
+        if (needed > strings.capacity()) {
+            strings = remap(stringChannel, strings, needed);
+        }
+    }
+
+    private static MappedByteBuffer remap(FileChannel channel, MappedByteBuffer old, long needed) throws IOException {
+        long size = old.capacity();
+        while (size < needed) {
+            size *= 2;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Inventory file would exceed 2 GB");
+        }
+        old.force();
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * MemoryInventoryStore is the InventoryStore over an in-memory CarInventory, the console's
+ * original storage. Reads are served from the inventory's secondary indexes, and cars are handed
+ * out as copies so callers cannot change the indexed objects behind the inventory's back.
+ * Every method holds the store's lock, since CarInventory itself is not thread-safe.
+ */
+class MemoryInventoryStore implements InventoryStore {
+    private final CarInventory inventory;
+    private final InventoryStores.SortedResults sorted = new InventoryStores.SortedResults();
+    private long version; // Bumped by every change, so cached sort results are dropped
+    private Car[] byId; // Every car in id order, for keyset pages; null after an add or remove
+
+    /**
+     * Creates a store over a new, empty inventory.
+     */
+    MemoryInventoryStore() {
+        this(new CarInventory());
+    }
+
+    /**
+     * @param inventory the inventory to store the cars in; use it only through this store from now on
+     */
+    MemoryInventoryStore(CarInventory inventory) {
+        this.inventory = inventory;
+    }
+
+    @Override
+    public synchronized boolean addCar(Car car) {
+        Car stored = InventoryStores.copyOf(car);
+        if (!inventory.addCar(stored)) {
+            return false;
+        }
+        car.setId(stored.getId());
+        idsChanged();
+        return true;
+    }
+
+    @Override
+    public synchronized Optional<Car> getCar(int id) {
+        return inventory.getCar(id).map(InventoryStores::copyOf);
+    }
+
+    @Override
+    public synchronized boolean removeCar(int id) {
+        if (!inventory.removeCar(id)) {
+            return false;
+        }
+        idsChanged();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateCar(int id, float price, String features) {
+        version++;
+        return inventory.updateCar(id, price, features);
+    }
+
+    @Override
+    public synchronized boolean updateCars(Collection<Car> cars) {
+        version++;
+        for (Car car : cars) {
+            inventory.updateCar(car.getId(), car.getPrice(), car.getFeatures());
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized long countCars(CarQuery query) {
+        return query == null ? inventory.size() : inventory.findCars(query).size();
+    }
+
+    @Override
+    public synchronized List<Car> getCarsPage(CarQuery query, int afterId, int limit, Set<CarColumn> columns) {
+        Car[] cars = carsById();
+        int lo = 0;
+        int hi = cars.length;
+        while (lo < hi) { // First car with an id above afterId
+            int mid = (lo + hi) >>> 1;
+            if (cars[mid].getId() <= afterId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<Car> page = new ArrayList<>(Math.min(limit, DEFAULT_PAGE_SIZE));
+        for (int i = lo; i < cars.length && page.size() < limit; i++) {
+            if (query == null || query.matches(cars[i])) {
+                page.add(InventoryStores.copyOf(cars[i]));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized List<Car> getCarsSorted(CarQuery query, CarColumn sortBy, boolean ascending, long offset,
+                                                int limit, Set<CarColumn> columns) {
+        List<Car> window = sorted.window(query, sortBy, ascending, offset, limit, version,
+                () -> query == null ? inventory.getCars() : inventory.findCars(query));
+        window.replaceAll(InventoryStores::copyOf);
+        return window;
+    }
+
+    @Override
+    public synchronized List<Car> findCars(CarQuery query) {
+        List<Car> matches = query == null ? new ArrayList<>(List.of(carsById())) : inventory.findCars(query);
+        matches.replaceAll(InventoryStores::copyOf);
+        return matches;
+    }
+
+    @Override
+    public synchronized PurchaseResult purchaseCar(int id, PricingEngine.Quote quote) {
+        Optional<Car> car = inventory.getCar(id);
+        if (car.isEmpty() || car.get().isSold()) {
+            return PurchaseResult.NOT_AVAILABLE;
+        }
+        if (PricingEngine.toCents(car.get().getPrice()) != quote.getBaseCents()) {
+            return PurchaseResult.PRICE_CHANGED;
+        }
+        version++;
+        return inventory.markAsSold(id) ? PurchaseResult.SOLD : PurchaseResult.NOT_AVAILABLE;
+    }
+
+    /**
+     * Loads a feed file, parsing it in parallel once it is large enough to pay off.
+     */
+    @Override
+    public synchronized boolean loadCarsFromFile(String filename) {
+        idsChanged();
+        return new File(filename).length() >= ParallelCarLoader.PARALLEL_THRESHOLD_BYTES
+                ? inventory.loadCarsFromFileParallel(filename)
+                : inventory.loadCarsFromFile(filename);
+    }
+
+    @Override
+    public synchronized List<CarFeedReader.LineError> getLoadErrors() {
+        return inventory.getLoadErrors();
+    }
+
+    /**
+     * @return the inventory's feed, which publishes every change made through this store
+     */
+    @Override
+    public InventoryChangeFeed getChangeFeed() {
+        return inventory.getChangeFeed();
+    }
+
+    /**
+     * Nothing to release; the cars are gone once the store is no longer referenced.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return e.g. "memory (1,204 cars)"
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("memory (%,d cars)", inventory.size());
+    }
+
+    private void idsChanged() {
+        version++;
+        byId = null;
+    }
+
+    /**
+     * Returns every car in id order, sorting the inventory again only after cars were added or removed.
+     * Insertion order is usually id order already, which the sort recognizes in linear time.
+     */
+    private Car[] carsById() {
+        if (byId == null) {
+            byId = inventory.getCars().toArray(new Car[0]);
+            Arrays.sort(byId, Comparator.comparingInt(Car::getId));
+        }
+        return byId;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * OperationMetricsMXBean is the JMX view of one timed inventory operation of one kind of store,
+ * registered by InventoryMetrics. Times are in microseconds and cover every call since start-up
+ * or the last reset. It is public because JMX only exposes public interfaces.
+ */
+public interface OperationMetricsMXBean {
+    /**
+     * @return the name of the kind of store, e.g. "sqlite"
+     */
+    String getStore();
+
+    /**
+     * @return the name of the operation, e.g. "addCar"
+     */
+    String getOperation();
+
+    /**
+     * @return the number of timed calls, failed ones included
+     */
+    long getCount();
+
+    /**
+     * @return the number of calls that failed with an exception
+     */
+    long getErrors();
+
+    /**
+     * @return the most recent failure, or null if there was none
+     */
+    String getLastError();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Starts counting afresh, e.g. after changing the SQLite profile.
+     */
+    void reset();
+}
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * ParallelCarLoader loads very large car feed files by memory-mapping them and parsing
+ * newline-aligned chunks on fork-join workers.
+ * Each chunk is parsed with its own CarFeedReader, and the parsed cars are handed to the
+ * caller in original file order, so the result is the same as a sequential load.
+ */
+class ParallelCarLoader {
+    /** Default size of a chunk handed to one worker. */
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    /** Files at least this large benefit from the parallel loader. */
+    static final long PARALLEL_THRESHOLD_BYTES = 32L * 1024 * 1024;
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * Creates a loader that runs on the common fork-join pool with the default chunk size.
+     */
+    ParallelCarLoader() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a loader with an explicit pool and chunk size.
+     *
+     * @param pool the pool that parses chunks
+     * @param chunkSize the approximate number of bytes per chunk
+     */
+    ParallelCarLoader(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Loads every valid car in the file, passing them to the sink in file order.
+     * The sink is only ever called from the calling thread.
+     *
+     * @param path the feed file
+     * @param sink receives each parsed car
+     * @return the number of cars loaded and the lines that were skipped
+     * @throws IOException if the file cannot be read
+     */
+    LoadResult load(Path path, Consumer<Car> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<ChunkTask> tasks = new ArrayList<>();
+            long start = 0;
+            long size = channel.size();
+            while (start < size) {
+                long end = findChunkEnd(channel, start, size);
+                tasks.add(new ChunkTask(channel, start, end));
+                start = end;
+            }
+            // Keep a bounded number of chunks in flight so parsed cars do not pile up ahead of the merge
+            int window = Math.max(2, pool.getParallelism() * 2);
+            int submitted = 0;
+            for (; submitted < Math.min(window, tasks.size()); submitted++) {
+                pool.execute(tasks.get(submitted));
+            }
+
+            LoadResult result = new LoadResult();
+            int linesBefore = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                Chunk chunk = join(tasks.get(i));
+                tasks.set(i, null);
+                if (submitted < tasks.size()) {
+                    pool.execute(tasks.get(submitted++));
+                }
+                for (Car car : chunk.cars) {
+                    sink.accept(car);
+                }
+                result.loaded += chunk.cars.size();
+                result.errorCount += chunk.errorCount;
+                for (CarFeedReader.LineError error : chunk.errors) {
+                    if (result.errors.size() < CarFeedReader.MAX_REPORTED_ERRORS) {
+                        result.errors.add(new CarFeedReader.LineError(linesBefore + error.getLineNumber(), error.getMessage()));
+                    }
+                }
+                linesBefore += chunk.lineCount;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Finds the end of the chunk starting at {@code start}: the byte after the first newline
+     * at or past {@code start + chunkSize}, or the end of the file.
+     */
+    private long findChunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = start + chunkSize;
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        while (position < size) {
+            scan.clear();
+            int n = channel.read(scan, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /**
+     * Waits for a chunk task, rethrowing any I/O failure it hit.
+     */
+    private static Chunk join(ChunkTask task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Chunk holds the cars parsed from one chunk, with errors numbered relative to the chunk.
+     */
+    private static class Chunk {
+        private final List<Car> cars = new ArrayList<>();
+        private List<CarFeedReader.LineError> errors = Collections.emptyList();
+        private long errorCount;
+        private int lineCount;
+    }
+
+    /**
+     * ChunkTask maps one byte range of the file, decodes it and parses it with a CarFeedReader.
+     */
+    private static class ChunkTask extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Chunk compute() {
+            Chunk chunk = new Chunk();
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                try (CarFeedReader reader = new CarFeedReader(new MappedChunkReader(mapped))) {
+                    Car car;
+                    while ((car = reader.next()) != null) {
+                        chunk.cars.add(car);
+                    }
+                    chunk.errors = reader.getErrors();
+                    chunk.errorCount = reader.getErrorCount();
+                    chunk.lineCount = reader.getLineNumber();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * MappedChunkReader decodes a mapped chunk as UTF-8 on demand, so no chunk-sized
+     * char array is ever allocated. Bytes are staged through a small heap buffer because
+     * the decoder is much faster on array-backed buffers than on mapped ones.
+     */
+    private static class MappedChunkReader extends Reader {
+        private static final int STAGING_SIZE = 64 * 1024;
+
+        private final ByteBuffer mapped;
+        private final ByteBuffer staging = ByteBuffer.allocate(STAGING_SIZE);
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private boolean flushed;
+
+        MappedChunkReader(ByteBuffer mapped) {
+            this.mapped = mapped;
+            staging.flip(); // Start empty, ready for reading
+        }
+
+        @Override
+        public int read(char[] target, int offset, int length) {
+            if (flushed) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(target, offset, length);
+            while (out.hasRemaining() && (staging.hasRemaining() || mapped.hasRemaining())) {
+                if (mapped.hasRemaining()) {
+                    staging.compact();
+                    int n = Math.min(staging.remaining(), mapped.remaining());
+                    staging.put(mapped.slice().limit(n));
+                    mapped.position(mapped.position() + n);
+                    staging.flip();
+                }
+                int before = staging.remaining();
+                decoder.decode(staging, out, !mapped.hasRemaining());
+                if (staging.remaining() == before) {
+                    break; // Output full or waiting on a split character
+                }
+            }
+            if (!staging.hasRemaining() && !mapped.hasRemaining() && decoder.flush(out).isUnderflow()) {
+                flushed = true;
+            }
+            int decoded = out.position() - offset;
+            return decoded == 0 && flushed ? -1 : decoded;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * LoadResult reports how many cars a parallel load produced and which lines it skipped.
+     */
+    static class LoadResult {
+        private long loaded;
+        private long errorCount;
+        private final List<CarFeedReader.LineError> errors = new ArrayList<>();
+
+        /**
+         * @return the number of cars passed to the sink
+         */
+        long getLoaded() { return loaded; }
+
+        /**
+         * @return the total number of malformed lines
+         */
+        long getErrorCount() { return errorCount; }
+
+        /**
+         * @return the first skipped lines, numbered from the start of the file
+         */
+        List<CarFeedReader.LineError> getErrors() { return Collections.unmodifiableList(errors); }
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelCarLoaderTest {
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("parallel-loader-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Writes a feed of at least the given size with a malformed line every {@code malformedEvery} lines.
+     */
+    private Path writeFeed(long minBytes, int malformedEvery) throws IOException {
+        Path feed = dir.resolve("feed.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(feed)) {
+            long written = 0;
+            for (int line = 1; written < minBytes; line++) {
+                String text = line % malformedEvery == 0
+                        ? "2020, Toyota, Corolla, not a price " + line
+                        : (2000 + line % 25) + ", Make" + line % 13 + ", Model " + line % 50 + ", " + (5000 + line) + ", Sunroof, Heated Seats";
+                writer.write(text);
+                writer.write('\n');
+                written += text.length() + 1;
+            }
+        }
+        return feed;
+    }
+
+    @Test
+    void testParallelLoadMatchesSequentialLoad() throws IOException {
+        Path feed = writeFeed(ParallelCarLoader.DEFAULT_CHUNK_SIZE * 5L / 4, 20_000);
+        CarInventory sequential = new CarInventory();
+        CarInventory parallel = new CarInventory();
+        assertFalse(sequential.loadCarsFromFile(feed.toString()));
+        assertFalse(parallel.loadCarsFromFileParallel(feed.toString()), "Malformed lines should be reported.");
+
+        assertEquals(describe(sequential.getCars()), describe(parallel.getCars()), "Cars should be added in file order.");
+        assertTrue(sequential.getLoadErrors().size() > 3, "The feed should have errors in both chunks.");
+        assertEquals(describe(sequential.getLoadErrors()), describe(parallel.getLoadErrors()),
+                "Errors should be numbered from the start of the file.");
+    }
+
+    @Test
+    void testSmallChunksSplitOnLineBoundaries() throws IOException {
+        Path feed = writeFeed(20_000, 17);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CarInventory sequential = new CarInventory();
+            sequential.loadCarsFromFile(feed.toString());
+            List<Car> loaded = new ArrayList<>();
+            ParallelCarLoader.LoadResult result = new ParallelCarLoader(pool, 100).load(feed, loaded::add);
+
+            assertEquals(sequential.size(), result.getLoaded());
+            assertEquals(describe(sequential.getCars()), describe(loaded), "Cars should be passed on in file order.");
+            assertEquals(sequential.getLoadErrors().size(), result.getErrorCount());
+            assertEquals(describe(sequential.getLoadErrors()), describe(result.getErrors()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> describe(List<?> items) {
+        List<String> described = new ArrayList<>();
+        for (Object item : items) {
+            if (item instanceof Car) {
+                Car car = (Car) item;
+                described.add(car.getYear() + " " + car.getMake() + " " + car.getModel() + " " + car.getPrice() + " " + car.getFeatures());
+            } else {
+                described.add(item.toString());
+            }
+        }
+        return described;
+    }
+}
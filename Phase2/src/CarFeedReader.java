@@ -0,0 +1,436 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CarFeedReader is a streaming reader for comma-separated car feed files
+ * ("year, make, model, price, features" per line; the features may be left out).
+ * It scans characters straight out of a reusable buffer without regular expressions,
+ * parses the year and price in place, and supports double-quoted fields containing commas
+ * (a doubled quote inside a quoted field stands for one quote character).
+ * Lines that cannot be parsed are recorded as LineErrors and skipped, so one bad line
+ * does not abort the whole feed.
+ */
+class CarFeedReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIELD_COUNT = 5;
+    /** Maximum number of LineErrors kept in memory; later errors are only counted. */
+    static final int MAX_REPORTED_ERRORS = 1000;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    private char[] line = new char[256];
+    private int lineLength;
+    private int lineNumber;
+
+    // Field boundaries within the current line, reused for every line
+    private final int[] fieldStart = new int[FIELD_COUNT];
+    private final int[] fieldEnd = new int[FIELD_COUNT];
+    private final boolean[] fieldQuoted = new boolean[FIELD_COUNT];
+    private final StringBuilder unquoted = new StringBuilder();
+
+    private final List<LineError> errors = new ArrayList<>();
+    private long errorCount;
+    private long carsRead;
+
+    /**
+     * Creates a feed reader over an already opened character stream.
+     * The reader does its own buffering, so there is no need to wrap the stream in a BufferedReader.
+     *
+     * @param in the character stream to read from
+     */
+    CarFeedReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Opens a feed file through a FileChannel, decoding it as UTF-8.
+     * Malformed bytes are replaced rather than failing the whole load.
+     *
+     * @param filename the path of the feed file
+     * @return a reader positioned at the start of the file
+     * @throws IOException if the file cannot be opened
+     */
+    static CarFeedReader open(String filename) throws IOException {
+        return open(Paths.get(filename));
+    }
+
+    /**
+     * Opens a feed file through a FileChannel, decoding it as UTF-8.
+     *
+     * @param path the path of the feed file
+     * @return a reader positioned at the start of the file
+     * @throws IOException if the file cannot be opened
+     */
+    static CarFeedReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new CarFeedReader(Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE));
+    }
+
+    /**
+     * Reads the next valid car from the feed, skipping blank lines and recording malformed ones.
+     *
+     * @return the next Car, or null when the end of the feed is reached
+     * @throws IOException if reading the underlying stream fails
+     */
+    Car next() throws IOException {
+        while (readLine()) {
+            Car car = parseLine();
+            if (car != null) {
+                carsRead++;
+                return car;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the errors recorded so far (at most MAX_REPORTED_ERRORS of them)
+     */
+    List<LineError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the total number of malformed lines seen so far
+     */
+    long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return the number of cars successfully read so far
+     */
+    long getCarsRead() {
+        return carsRead;
+    }
+
+    /**
+     * @return the 1-based number of the last line read
+     */
+    int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Copies the next line (without its terminator) into the line buffer.
+     *
+     * @return false if there are no more lines
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean sawAny = false;
+        while (true) {
+            if (position == limit) {
+                if (!fill()) {
+                    if (sawAny) {
+                        lineNumber++;
+                        return true;
+                    }
+                    return false;
+                }
+            }
+            sawAny = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            appendToLine(start, position - start);
+            if (position < limit) {
+                position++; // Skip the newline
+                lineNumber++;
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Refills the read buffer from the underlying stream.
+     *
+     * @return false at the end of input
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            endOfInput = true;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Appends a run of buffered characters to the current line, growing the line buffer if needed.
+     */
+    private void appendToLine(int start, int length) {
+        if (lineLength + length > line.length) {
+            char[] grown = new char[Math.max(line.length * 2, lineLength + length)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        System.arraycopy(buffer, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Splits the current line into fields and builds a Car from them.
+     *
+     * @return the parsed Car, or null if the line is blank or malformed
+     */
+    private Car parseLine() {
+        int end = trimEnd(0, lineLength);
+        int i = skipWhitespace(lineNumber == 1 && lineLength > 0 && line[0] == '\uFEFF' ? 1 : 0, end);
+        if (i == end) {
+            return null; // Blank line
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            i = skipWhitespace(i, end);
+            boolean last = field == FIELD_COUNT - 1;
+            if (i < end && line[i] == '"') {
+                int close = findClosingQuote(i + 1, end);
+                if (close < 0) {
+                    return reject("unterminated quoted field");
+                }
+                fieldStart[field] = i + 1;
+                fieldEnd[field] = close;
+                fieldQuoted[field] = true;
+                i = skipWhitespace(close + 1, end);
+                if (last ? i != end : (i == end || line[i] != ',')) {
+                    return reject(i == end ? "expected " + FIELD_COUNT + " fields" : "unexpected text after quoted field");
+                }
+            } else {
+                // The features field is unquoted to the end of the line, so stray commas stay in it
+                int stop = i;
+                while (stop < end && (last || line[stop] != ',')) {
+                    stop++;
+                }
+                fieldStart[field] = i;
+                fieldEnd[field] = trimEnd(i, stop);
+                fieldQuoted[field] = false;
+                if (!last && stop == end) {
+                    if (field != FIELD_COUNT - 2) {
+                        return reject("expected " + FIELD_COUNT + " fields");
+                    }
+                    // "year, make, model, price" has no features, as the old split-on-4 loader allowed
+                    fieldStart[FIELD_COUNT - 1] = end;
+                    fieldEnd[FIELD_COUNT - 1] = end;
+                    fieldQuoted[FIELD_COUNT - 1] = false;
+                    break;
+                }
+                i = stop;
+            }
+            i++; // Skip the comma
+        }
+
+        int year = parseYear(fieldStart[0], fieldEnd[0]);
+        if (year < 0) {
+            return reject("invalid year '" + fieldText(0) + "'");
+        }
+        float price = parsePrice(fieldStart[3], fieldEnd[3]);
+        if (Float.isNaN(price)) {
+            return reject("invalid price '" + fieldText(3) + "'");
+        }
+        return new Car(year, fieldText(1), fieldText(2), price, fieldText(4));
+    }
+
+    /**
+     * Finds the quote that closes a quoted field, skipping doubled quotes.
+     *
+     * @return the index of the closing quote, or -1 if there is none
+     */
+    private int findClosingQuote(int from, int end) {
+        int i = from;
+        while (i < end) {
+            if (line[i] == '"') {
+                if (i + 1 < end && line[i + 1] == '"') {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Materializes the text of a field, collapsing doubled quotes in quoted fields.
+     */
+    private String fieldText(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (!fieldQuoted[field]) {
+            return new String(line, start, end - start);
+        }
+        unquoted.setLength(0);
+        for (int i = start; i < end; i++) {
+            unquoted.append(line[i]);
+            if (line[i] == '"') {
+                i++; // Skip the second quote of a doubled pair
+            }
+        }
+        return unquoted.toString();
+    }
+
+    /**
+     * Parses a non-negative year directly from the line buffer.
+     *
+     * @return the year, or -1 if the text is not a valid number
+     */
+    private int parseYear(int start, int end) {
+        if (start == end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parses a plain decimal price directly from the line buffer, falling back to
+     * Float.parseFloat for anything more exotic (exponents, very long numbers).
+     *
+     * @return the price, or NaN if the text is not a valid number
+     */
+    private float parsePrice(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = line[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= 18) {
+            double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return (float) (negative ? -value : value);
+        }
+        try {
+            return Float.parseFloat(new String(line, start, end - start));
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    private int skipWhitespace(int i, int end) {
+        while (i < end && Character.isWhitespace(line[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && Character.isWhitespace(line[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Records the current line as malformed.
+     *
+     * @param message a description of the problem
+     * @return always null, so callers can {@code return reject(...)}
+     */
+    private Car reject(String message) {
+        errorCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new LineError(lineNumber, message));
+        }
+        return null;
+    }
+
+    /**
+     * LineError describes a feed line that was skipped because it could not be parsed.
+     */
+    static class LineError {
+        private final int lineNumber;
+        private final String message;
+
+        /**
+         * @param lineNumber the 1-based line number, or 0 if the error is not tied to a line
+         * @param message a description of the problem
+         */
+        LineError(int lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /**
+         * @return the 1-based line number of the skipped line
+         */
+        int getLineNumber() { return lineNumber; }
+
+        /**
+         * @return a description of the problem
+         */
+        String getMessage() { return message; }
+
+        /**
+         * @return a formatted description such as "Line 3: invalid price 'abc'"
+         */
+        @Override
+        public String toString() {
+            return lineNumber > 0 ? "Line " + lineNumber + ": " + message : message;
+        }
+    }
+}
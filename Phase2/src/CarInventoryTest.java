@@ -69,4 +69,21 @@ class CarInventoryTest {
         assertEquals(2, inventory.getCars().size(), "Should contain 2 cars after loading.");
     }
 
+    @Test
+    void testLoadCarsWithoutFeatures() {
+        String testFile = "test_cars.txt";
+        try (PrintWriter writer = new PrintWriter(new FileWriter(testFile))) {
+            writer.println("2020,Toyota,Corolla,22000");
+            writer.println("2019,Honda,Civic,20000,Backup Camera, Heated Seats");
+            writer.println("2018,Ford,Focus");
+        } catch (IOException e) {
+            fail("Setup failed: Could not create test file.");
+        }
+
+        assertFalse(inventory.loadCarsFromFile(testFile), "The line without a price should be reported.");
+        assertEquals(2, inventory.getCars().size(), "Lines without features should still load.");
+        assertEquals("", inventory.getCars().get(0).getFeatures());
+        assertEquals("Backup Camera, Heated Seats", inventory.getCars().get(1).getFeatures());
+    }
+
 }
\ No newline at end of file
@@ -1,13 +1,13 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 // CarInventory class manages all car-related operations
 class CarInventory {
     private ArrayList<Car> cars = new ArrayList<>();
+    private List<CarFeedReader.LineError> loadErrors = Collections.emptyList();
 
     public boolean addCar(Car car) {
         return cars.add(car);
@@ -45,35 +45,25 @@ class CarInventory {
 
 
 
+    // Streams the file through CarFeedReader; bad lines are skipped and kept in loadErrors
     public boolean loadCarsFromFile(String filename) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-
-                String[] details = line.split("\\s*,\\s*", 4); // Fix: Features field allows commas
-                if (details.length == 4) {
-                    try {
-                        int year = Integer.parseInt(details[0]);
-                        String make = details[1];
-                        String model = details[2];
-                        String[] priceAndFeatures = details[3].split("\\s*,\\s*", 2);
-                        float price = Float.parseFloat(priceAndFeatures[0]);
-                        String features = priceAndFeatures.length > 1 ? priceAndFeatures[1] : "";
-
-                        addCar(new Car(year, make, model, price, features));
-                    } catch (NumberFormatException e) {
-                        return false;
-                    }
-                }
+        try (CarFeedReader reader = CarFeedReader.open(filename)) {
+            Car car;
+            while ((car = reader.next()) != null) {
+                addCar(car);
             }
-            return true;
+            loadErrors = reader.getErrors();
+            return reader.getErrorCount() == 0;
         } catch (IOException e) {
+            loadErrors = Collections.singletonList(new CarFeedReader.LineError(0, "Could not read file: " + e.getMessage()));
             return false;
         }
     }
 
+    public List<CarFeedReader.LineError> getLoadErrors() {
+        return loadErrors;
+    }
+
 
 
 }
\ No newline at end of file
@@ -0,0 +1,298 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PricingEngine computes what a buyer pays for a car: the price, plus sales tax from a
+ * jurisdiction's TaxTable, minus stacked DiscountRules. The order is the dealership's
+ * long-standing one: tax is charged on the full price, then the discounts come off the taxed
+ * total, which never goes below zero.
+ * <p>
+ * All amounts are whole cents in longs and all rates are parts per million, so quotes are exact
+ * and repeatable; BigDecimal is only used at the edges to read rates and amounts typed in by users.
+ * Configure an engine (jurisdictions and standing promotions) before sharing it between threads.
+ */
+class PricingEngine {
+    private static final long PPM = 1_000_000;
+
+    private final Map<String, TaxTable> jurisdictions = new HashMap<>();
+    private final List<DiscountRule> promotions = new ArrayList<>();
+
+    /**
+     * Registers the tax table of a jurisdiction.
+     *
+     * @param table the table, registered under its jurisdiction name
+     * @return this engine
+     */
+    PricingEngine jurisdiction(TaxTable table) {
+        jurisdictions.put(table.getJurisdiction(), table);
+        return this;
+    }
+
+    /**
+     * @param jurisdiction the jurisdiction name
+     * @return the registered tax table
+     * @throws IllegalArgumentException if the jurisdiction is unknown
+     */
+    TaxTable getTaxTable(String jurisdiction) {
+        TaxTable table = jurisdictions.get(jurisdiction);
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown tax jurisdiction: " + jurisdiction);
+        }
+        return table;
+    }
+
+    /**
+     * Adds a promotion applied to every quote, before any discounts given for a single purchase.
+     *
+     * @param rule the promotion
+     * @return this engine
+     */
+    PricingEngine promotion(DiscountRule rule) {
+        promotions.add(rule);
+        return this;
+    }
+
+    /**
+     * Quotes one purchase.
+     *
+     * @param baseCents the price of the car in cents
+     * @param tax the tax table to apply
+     * @param discounts discounts for this purchase, applied in order after the standing promotions
+     * @return the quote
+     */
+    Quote quote(long baseCents, TaxTable tax, DiscountRule... discounts) {
+        if (baseCents < 0) {
+            throw new IllegalArgumentException("A price cannot be negative");
+        }
+        long taxCents = tax.taxCents(baseCents);
+        long remaining = applyDiscounts(promotions, baseCents + taxCents);
+        remaining = applyDiscounts(Arrays.asList(discounts), remaining);
+        return new Quote(baseCents, taxCents, baseCents + taxCents - remaining, remaining);
+    }
+
+    /**
+     * Quotes the purchase of a car with the rate and discount typed in at the counter,
+     * the way the console and GUI purchase screens ask for them.
+     *
+     * @param car the car
+     * @param taxPercent the sales tax rate in percent
+     * @param discount the discount in dollars
+     * @return the quote
+     * @throws IllegalArgumentException if the rate or discount is negative
+     */
+    Quote quote(Car car, float taxPercent, float discount) {
+        return quote(toCents(car.getPrice()),
+                TaxTable.flat("Sales tax", new BigDecimal(Float.toString(taxPercent))),
+                DiscountRule.amount("Discount", toCents(discount)));
+    }
+
+    /**
+     * Quotes many cars at once, e.g. to re-price the whole lot after a tax change.
+     * The work runs column by column over primitive arrays so the loops stay tight and
+     * free of per-car allocation.
+     *
+     * @param baseCents the prices in cents
+     * @param tax the tax table to apply
+     * @param discounts discounts for every car, applied in order after the standing promotions
+     * @return the quotes, in the order of the prices
+     */
+    BatchQuote quoteAll(long[] baseCents, TaxTable tax, DiscountRule... discounts) {
+        int n = baseCents.length;
+        BatchQuote batch = new BatchQuote(baseCents.clone());
+        long[] base = batch.base;
+        long[] taxes = batch.tax;
+        long[] remaining = batch.total;
+        for (long price : base) {
+            if (price < 0) {
+                throw new IllegalArgumentException("A price cannot be negative");
+            }
+        }
+        for (int c = 0; c < tax.size(); c++) {
+            long rate = tax.rateAt(c);
+            long cap = tax.capAt(c);
+            for (int i = 0; i < n; i++) {
+                taxes[i] += applyPpm(Math.min(base[i], cap), rate);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            remaining[i] = base[i] + taxes[i];
+        }
+        List<DiscountRule> rules = new ArrayList<>(promotions);
+        Collections.addAll(rules, discounts);
+        for (DiscountRule rule : rules) {
+            for (int i = 0; i < n; i++) {
+                remaining[i] -= Math.min(rule.discountCents(remaining[i]), remaining[i]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            batch.discount[i] = base[i] + taxes[i] - remaining[i];
+        }
+        return batch;
+    }
+
+    /**
+     * Quotes a collection of cars at once.
+     *
+     * @param cars the cars
+     * @param tax the tax table to apply
+     * @param discounts discounts for every car
+     * @return the quotes, in the iteration order of the cars
+     * @see #quoteAll(long[], TaxTable, DiscountRule...)
+     */
+    BatchQuote quoteAll(Collection<Car> cars, TaxTable tax, DiscountRule... discounts) {
+        long[] base = new long[cars.size()];
+        int i = 0;
+        for (Car car : cars) {
+            base[i++] = toCents(car.getPrice());
+        }
+        return quoteAll(base, tax, discounts);
+    }
+
+    /**
+     * Applies discount rules in order, never taking the amount below zero.
+     */
+    private static long applyDiscounts(List<DiscountRule> rules, long remaining) {
+        for (DiscountRule rule : rules) {
+            remaining -= Math.min(rule.discountCents(remaining), remaining);
+        }
+        return remaining;
+    }
+
+    /**
+     * Applies a rate to an amount, rounding half up to the cent.
+     *
+     * @param cents a non-negative amount in cents
+     * @param ppm the rate in parts per million
+     * @return the rate's share of the amount in cents
+     */
+    static long applyPpm(long cents, long ppm) {
+        return (cents * ppm + PPM / 2) / PPM;
+    }
+
+    /**
+     * @param percent a percentage, e.g. 6.5
+     * @return the percentage in parts per million, rounded half up
+     */
+    static long toPpm(BigDecimal percent) {
+        return percent.movePointRight(4).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Converts a dollar amount to cents using its decimal spelling, so 19999.99f is 1999999 cents
+     * and not the nearest binary fraction.
+     *
+     * @param dollars the amount in dollars
+     * @return the amount in cents, rounded half up
+     */
+    static long toCents(float dollars) {
+        return new BigDecimal(Float.toString(dollars)).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * @param cents an amount in cents
+     * @return the amount as dollars, e.g. "$24,310.00"
+     */
+    static String formatCents(long cents) {
+        return String.format("$%,.2f", BigDecimal.valueOf(cents, 2));
+    }
+
+    /**
+     * Quote is the price breakdown of one purchase.
+     */
+    static class Quote {
+        private final long baseCents;
+        private final long taxCents;
+        private final long discountCents;
+        private final long totalCents;
+
+        private Quote(long baseCents, long taxCents, long discountCents, long totalCents) {
+            this.baseCents = baseCents;
+            this.taxCents = taxCents;
+            this.discountCents = discountCents;
+            this.totalCents = totalCents;
+        }
+
+        /**
+         * @return the price of the car in cents
+         */
+        long getBaseCents() { return baseCents; }
+
+        /**
+         * @return the sales tax in cents
+         */
+        long getTaxCents() { return taxCents; }
+
+        /**
+         * @return the discounts actually given in cents
+         */
+        long getDiscountCents() { return discountCents; }
+
+        /**
+         * @return what the buyer pays in cents
+         */
+        long getTotalCents() { return totalCents; }
+
+        /**
+         * @return the breakdown, e.g. "Price $22,000.00 + tax $1,320.00 - discount $500.00 = $22,820.00"
+         */
+        @Override
+        public String toString() {
+            return "Price " + formatCents(baseCents) + " + tax " + formatCents(taxCents)
+                    + " - discount " + formatCents(discountCents) + " = " + formatCents(totalCents);
+        }
+    }
+
+    /**
+     * BatchQuote holds the quotes of a batch as parallel arrays.
+     */
+    static class BatchQuote {
+        private final long[] base;
+        private final long[] tax;
+        private final long[] discount;
+        private final long[] total;
+
+        private BatchQuote(long[] base) {
+            this.base = base;
+            this.tax = new long[base.length];
+            this.discount = new long[base.length];
+            this.total = new long[base.length];
+        }
+
+        /**
+         * @return the number of quotes
+         */
+        int size() { return base.length; }
+
+        /**
+         * @param i the index of the car in the batch
+         * @return the quote of that car
+         */
+        Quote get(int i) {
+            return new Quote(base[i], tax[i], discount[i], total[i]);
+        }
+
+        /**
+         * @param i the index of the car in the batch
+         * @return what the buyer of that car pays in cents
+         */
+        long getTotalCents(int i) { return total[i]; }
+
+        /**
+         * @return the sum of all totals in cents, e.g. the value of the lot
+         */
+        long sumTotalCents() {
+            long sum = 0;
+            for (long value : total) {
+                sum += value;
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import org.junit.jupiter.api.*;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineTest {
+    private PricingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new PricingEngine();
+    }
+
+    @Test
+    void testTaxIsChargedBeforeTheDiscount() {
+        PricingEngine.Quote quote = engine.quote(new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth"), 6, 500);
+
+        assertEquals(2_200_000, quote.getBaseCents());
+        assertEquals(132_000, quote.getTaxCents());
+        assertEquals(50_000, quote.getDiscountCents());
+        assertEquals(2_282_000, quote.getTotalCents(), "Total should be price + 6% tax - $500.");
+    }
+
+    @Test
+    void testAmountsAreExactToTheCent() {
+        PricingEngine.Quote quote = engine.quote(new Car(2019, "Honda", "Civic", 19999.99f, "Backup Camera"), 7, 0.1f);
+
+        assertEquals(1_999_999, quote.getBaseCents(), "19999.99 should not pick up float error.");
+        assertEquals(140_000, quote.getTaxCents(), "7% of 19999.99 is 1399.9993, rounded half up to 1400.00.");
+        assertEquals(2_139_989, quote.getTotalCents());
+    }
+
+    @Test
+    void testCappedSurtaxAppliesToTheFirstPartOfThePrice() {
+        TaxTable table = new TaxTable("FL-Orange")
+                .add("State", new BigDecimal("6"), 0)
+                .add("County", new BigDecimal("0.5"), 500_000);
+        engine.jurisdiction(table);
+
+        PricingEngine.Quote quote = engine.quote(3_000_000, engine.getTaxTable("FL-Orange"));
+
+        assertEquals(180_000 + 2_500, quote.getTaxCents(), "6% of $30,000 plus 0.5% of the first $5,000.");
+        assertThrows(IllegalArgumentException.class, () -> engine.getTaxTable("XX"));
+    }
+
+    @Test
+    void testDiscountsStackInOrderAndNeverGoBelowZero() {
+        engine.promotion(DiscountRule.percent("Spring sale", new BigDecimal("10")));
+        TaxTable noTax = new TaxTable("None");
+
+        PricingEngine.Quote quote = engine.quote(1_000_000, noTax, DiscountRule.amount("Trade-in", 100_000));
+        assertEquals(800_000, quote.getTotalCents(), "10% off $10,000, then $1,000 off.");
+
+        PricingEngine.Quote free = engine.quote(1_000_000, noTax, DiscountRule.amount("Trade-in", 5_000_000));
+        assertEquals(0, free.getTotalCents(), "A discount larger than the price should stop at zero.");
+        assertEquals(1_000_000, free.getDiscountCents(), "Only the discount actually given should be reported.");
+    }
+
+    @Test
+    void testBatchQuotesMatchSingleQuotes() {
+        TaxTable table = new TaxTable("Test")
+                .add("State", new BigDecimal("6.25"), 0)
+                .add("City", new BigDecimal("1.5"), 250_000);
+        engine.promotion(DiscountRule.percent("Promo", new BigDecimal("2.5")));
+        DiscountRule credit = DiscountRule.amount("Credit", 12_345);
+
+        long[] prices = new long[5000];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = 500_000 + i * 997L;
+        }
+        PricingEngine.BatchQuote batch = engine.quoteAll(prices, table, credit);
+
+        assertEquals(prices.length, batch.size());
+        long sum = 0;
+        for (int i = 0; i < prices.length; i++) {
+            PricingEngine.Quote single = engine.quote(prices[i], table, credit);
+            assertEquals(single.toString(), batch.get(i).toString(), "Quote " + i + " should match.");
+            sum += single.getTotalCents();
+        }
+        assertEquals(sum, batch.sumTotalCents());
+    }
+
+    @Test
+    void testNegativeRatesAndDiscountsAreRejected() {
+        Car car = new Car(2021, "Ford", "Mustang", 30000, "Leather Seats");
+
+        assertThrows(IllegalArgumentException.class, () -> engine.quote(car, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> engine.quote(car, 6, -100));
+        assertThrows(IllegalArgumentException.class, () -> DiscountRule.percent("Too much", new BigDecimal("150")));
+    }
+
+    @Test
+    void testInventoryBuyCarUsesTheEngine() {
+        CarInventory inventory = new CarInventory();
+        inventory.addCar(new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth"));
+
+        Optional<PricingEngine.Quote> quote = inventory.quotePurchase(0, 6, 500);
+        assertTrue(quote.isPresent());
+        assertEquals(2_282_000, quote.get().getTotalCents());
+
+        assertFalse(inventory.buyCar(0, 6, 500, "no").isPresent(), "No purchase without confirmation.");
+        Optional<Car> bought = inventory.buyCar(0, 6, 500, "yes");
+        assertTrue(bought.isPresent());
+        assertTrue(bought.get().isSold());
+        assertFalse(inventory.buyCar(0, 6, 500, "yes").isPresent(), "A sold car cannot be bought again.");
+        assertFalse(inventory.quotePurchase(0, 6, 500).isPresent());
+    }
+}
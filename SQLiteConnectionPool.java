@@ -0,0 +1,176 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQLiteConnectionPool is a small fixed-size pool of SQLite connections.
+ * Each pooled connection keeps its own cache of prepared statements keyed by SQL text,
+ * so hot statements are parsed once per connection instead of once per call.
+ * A thread borrows a connection, uses it exclusively, and closes the PooledConnection
+ * to hand it back, which lets several threads share one CarInventoryDBHelper safely.
+ */
+class SQLiteConnectionPool implements AutoCloseable {
+    /** Maximum number of prepared statements cached per connection. */
+    static final int STATEMENT_CACHE_SIZE = 64;
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Opens every connection of the pool up front and applies the profile to each one.
+     *
+     * @param url the JDBC URL, e.g. "jdbc:sqlite:car_inventory.db"
+     * @param size the number of connections
+     * @param profile the pragmas to apply to every connection
+     * @throws SQLException if a connection cannot be opened; connections already opened are closed
+     */
+    SQLiteConnectionPool(String url, int size, SQLiteProfile profile) throws SQLException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        idle = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                PooledConnection pooled = new PooledConnection(DriverManager.getConnection(url));
+                all.add(pooled);
+                profile.apply(pooled.getConnection());
+                idle.add(pooled);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Borrows a connection, waiting if all of them are in use.
+     * Close the returned PooledConnection to give it back.
+     *
+     * @return a connection reserved for the calling thread
+     * @throws SQLException if the pool is closed or no connection frees up in time
+     */
+    PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            PooledConnection pooled = idle.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (pooled == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+            return pooled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * Closes every connection and its cached statements.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (PooledConnection pooled : all) {
+            pooled.closeQuietly();
+        }
+    }
+
+    /**
+     * PooledConnection wraps one connection of the pool together with its statement cache.
+     */
+    class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > STATEMENT_CACHE_SIZE) {
+                            closeStatement(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * @return the underlying JDBC connection
+         */
+        Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns the cached prepared statement for the SQL text, preparing it on first use.
+         * The statement belongs to the cache: callers must not close it, but must close any ResultSet they open.
+         *
+         * @param sql the SQL text
+         * @return a prepared statement with its parameters cleared
+         * @throws SQLException if the statement cannot be prepared
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Hands the connection back to the pool, rolling back any transaction left open.
+         */
+        @Override
+        public void close() {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            if (closed) {
+                closeQuietly();
+            } else {
+                idle.offer(this);
+            }
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement statement : statements.values()) {
+                closeStatement(statement);
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void closeStatement(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
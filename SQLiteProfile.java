@@ -0,0 +1,174 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SQLiteProfile is a set of SQLite pragmas applied to every connection when it is opened.
+ * Use one of the presets and adjust it with the chainable setters, e.g.
+ * <pre>
+ * SQLiteProfile.performance().synchronous(SQLiteProfile.Synchronous.FULL)
+ * </pre>
+ * A null setting leaves SQLite's own default in place.
+ */
+class SQLiteProfile {
+    /** SQLite journal modes (PRAGMA journal_mode). */
+    enum JournalMode { DELETE, TRUNCATE, PERSIST, MEMORY, WAL, OFF }
+
+    /** SQLite sync levels (PRAGMA synchronous). */
+    enum Synchronous { OFF, NORMAL, FULL, EXTRA }
+
+    /** Where SQLite keeps temporary tables and indexes (PRAGMA temp_store). */
+    enum TempStore { DEFAULT, FILE, MEMORY }
+
+    private JournalMode journalMode;
+    private Synchronous synchronous;
+    private Long mmapSizeBytes;
+    private Integer cacheSizeKib;
+    private TempStore tempStore;
+    private Integer busyTimeoutMillis;
+    private boolean readOnly;
+
+    /**
+     * Leaves every pragma at SQLite's default: rollback journal and a full sync on every commit.
+     *
+     * @return a new profile with no settings
+     */
+    static SQLiteProfile defaults() {
+        return new SQLiteProfile();
+    }
+
+    /**
+     * Tuned for the dealership workload: WAL so readers never block on the writer,
+     * NORMAL sync (durable in WAL mode except for the last commits on power loss),
+     * memory-mapped reads, a 64 MB page cache and in-memory temp storage.
+     *
+     * @return a new performance profile
+     */
+    static SQLiteProfile performance() {
+        return new SQLiteProfile()
+                .journalMode(JournalMode.WAL)
+                .synchronous(Synchronous.NORMAL)
+                .mmapSize(256L * 1024 * 1024)
+                .cacheSize(64 * 1024)
+                .tempStore(TempStore.MEMORY)
+                .busyTimeout(5000);
+    }
+
+    /**
+     * For reporting replicas: the same read-side tuning as performance(),
+     * but the connection refuses writes and leaves the journal mode alone.
+     *
+     * @return a new read-only profile
+     */
+    static SQLiteProfile readOnly() {
+        return new SQLiteProfile()
+                .mmapSize(256L * 1024 * 1024)
+                .cacheSize(64 * 1024)
+                .tempStore(TempStore.MEMORY)
+                .busyTimeout(5000)
+                .readOnly(true);
+    }
+
+    /**
+     * @param journalMode the journal mode, or null to keep the database's current mode
+     * @return this profile
+     */
+    SQLiteProfile journalMode(JournalMode journalMode) {
+        this.journalMode = journalMode;
+        return this;
+    }
+
+    /**
+     * @param synchronous how hard SQLite syncs to disk on commit
+     * @return this profile
+     */
+    SQLiteProfile synchronous(Synchronous synchronous) {
+        this.synchronous = synchronous;
+        return this;
+    }
+
+    /**
+     * @param bytes the maximum number of bytes of the database file to memory-map, 0 to disable
+     * @return this profile
+     */
+    SQLiteProfile mmapSize(long bytes) {
+        this.mmapSizeBytes = bytes;
+        return this;
+    }
+
+    /**
+     * @param kib the page cache size per connection in KiB
+     * @return this profile
+     */
+    SQLiteProfile cacheSize(int kib) {
+        this.cacheSizeKib = kib;
+        return this;
+    }
+
+    /**
+     * @param tempStore where temporary tables and indexes are kept
+     * @return this profile
+     */
+    SQLiteProfile tempStore(TempStore tempStore) {
+        this.tempStore = tempStore;
+        return this;
+    }
+
+    /**
+     * @param millis how long a connection waits on a locked database before failing with SQLITE_BUSY
+     * @return this profile
+     */
+    SQLiteProfile busyTimeout(int millis) {
+        this.busyTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param readOnly true to make connections reject every write
+     * @return this profile
+     */
+    SQLiteProfile readOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+        return this;
+    }
+
+    /**
+     * @return true if connections opened with this profile reject writes
+     */
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Applies the profile to a freshly opened connection.
+     *
+     * @param connection the connection to configure
+     * @throws SQLException if a pragma fails, e.g. switching to WAL while another connection holds a lock
+     */
+    void apply(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // Set the busy timeout first so the journal mode switch waits for other connections
+            if (busyTimeoutMillis != null) {
+                stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            }
+            if (journalMode != null && !readOnly) {
+                stmt.execute("PRAGMA journal_mode = " + journalMode);
+            }
+            if (synchronous != null) {
+                stmt.execute("PRAGMA synchronous = " + synchronous);
+            }
+            if (cacheSizeKib != null) {
+                stmt.execute("PRAGMA cache_size = " + (-cacheSizeKib)); // Negative values are in KiB
+            }
+            if (mmapSizeBytes != null) {
+                stmt.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+            }
+            if (tempStore != null) {
+                stmt.execute("PRAGMA temp_store = " + tempStore);
+            }
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * SalesLedger is the record of every sale: car, time, price, tax, discount and final price.
+ * The sales table is append-only (triggers reject updates and deletes), and an insert trigger keeps
+ * the sales_daily and sales_by_make rollups current, so the reports below read a handful of rollup
+ * rows instead of scanning years of ledger. Days are UTC calendar days.
+ */
+class SalesLedger {
+    /** Inserts one sale; the make is taken from the cars table when the sale does not carry one. */
+    static final String INSERT_SQL = "INSERT INTO sales "
+            + "(car_id, sold_at, base_cents, tax_cents, discount_cents, total_cents, make) "
+            + "VALUES (?, ?, ?, ?, ?, ?, COALESCE(?, (SELECT make FROM cars WHERE id = ?)))";
+
+    private final CarInventoryDBHelper dbHelper;
+
+    /**
+     * @param dbHelper the database holding the ledger
+     */
+    SalesLedger(CarInventoryDBHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    /**
+     * Binds a sale to a statement prepared from INSERT_SQL.
+     *
+     * @param pstmt the insert statement
+     * @param sale the sale
+     * @throws SQLException if binding fails
+     */
+    static void bind(PreparedStatement pstmt, Sale sale) throws SQLException {
+        pstmt.setInt(1, sale.carId);
+        pstmt.setLong(2, sale.soldAtMillis);
+        pstmt.setLong(3, sale.baseCents);
+        pstmt.setLong(4, sale.taxCents);
+        pstmt.setLong(5, sale.discountCents);
+        pstmt.setLong(6, sale.totalCents);
+        pstmt.setString(7, sale.make);
+        pstmt.setInt(8, sale.carId);
+    }
+
+    /**
+     * Appends many sales in one transaction, sent to SQLite in JDBC batches,
+     * e.g. when bringing over the history of another system.
+     *
+     * @param sales the sales to append
+     * @return the number of sales recorded, or -1 if the transaction failed and nothing was recorded
+     */
+    int recordAll(Collection<Sale> sales) {
+        try (SQLiteConnectionPool.PooledConnection conn = dbHelper.borrow()) {
+            Connection connection = conn.getConnection();
+            PreparedStatement pstmt = conn.prepare(INSERT_SQL);
+            connection.setAutoCommit(false); // Closing the pooled connection rolls back anything left uncommitted
+            int batched = 0;
+            try {
+                for (Sale sale : sales) {
+                    bind(pstmt, sale);
+                    pstmt.addBatch();
+                    if (++batched == CarInventoryDBHelper.DEFAULT_BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    pstmt.executeBatch();
+                }
+                connection.commit();
+                return sales.size();
+            } catch (SQLException e) {
+                pstmt.clearBatch(); // The statement is cached, so drop any rows still queued on it
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the sales made in a period, oldest first.
+     *
+     * @param fromMillis the start of the period (inclusive), in epoch milliseconds
+     * @param toMillis the end of the period (exclusive), in epoch milliseconds
+     * @return the sales; empty on error
+     */
+    List<Sale> getSales(long fromMillis, long toMillis) {
+        String sql = "SELECT car_id, make, sold_at, base_cents, tax_cents, discount_cents, total_cents "
+                + "FROM sales WHERE sold_at >= ? AND sold_at < ? ORDER BY sold_at, id";
+        List<Sale> sales = new ArrayList<>();
+        try (SQLiteConnectionPool.PooledConnection conn = dbHelper.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            pstmt.setLong(1, fromMillis);
+            pstmt.setLong(2, toMillis);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    sales.add(new Sale(rs.getInt(1), rs.getString(2), rs.getLong(3),
+                            rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7)));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            sales.clear();
+        }
+        return sales;
+    }
+
+    /**
+     * Revenue per day, from the daily rollup.
+     *
+     * @param from the first day (inclusive)
+     * @param to the last day (inclusive)
+     * @return one row per day with sales, oldest first; empty on error
+     */
+    List<ReportRow> revenueByDay(LocalDate from, LocalDate to) {
+        return report("SELECT day, sales, revenue_cents, discount_cents FROM sales_daily "
+                + "WHERE day BETWEEN ? AND ? ORDER BY day", from.toString(), to.toString());
+    }
+
+    /**
+     * Revenue per make over all time, from the per-make rollup.
+     *
+     * @return one row per make, highest revenue first; empty on error
+     */
+    List<ReportRow> revenueByMake() {
+        return report("SELECT make, sales, revenue_cents, discount_cents FROM sales_by_make ORDER BY revenue_cents DESC");
+    }
+
+    /**
+     * Totals for a period, e.g. a month-end summary; getAverageDiscountCents gives the average discount.
+     *
+     * @param from the first day (inclusive)
+     * @param to the last day (inclusive)
+     * @return the totals, labelled "from..to"; null on error
+     */
+    ReportRow totals(LocalDate from, LocalDate to) {
+        List<ReportRow> rows = report("SELECT ? || '..' || ?, COALESCE(SUM(sales), 0), COALESCE(SUM(revenue_cents), 0), "
+                + "COALESCE(SUM(discount_cents), 0) FROM sales_daily WHERE day BETWEEN ? AND ?",
+                from.toString(), to.toString(), from.toString(), to.toString());
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Runs a rollup query returning (key, sales, revenue, discount) rows.
+     */
+    private List<ReportRow> report(String sql, String... params) {
+        List<ReportRow> rows = new ArrayList<>();
+        try (SQLiteConnectionPool.PooledConnection conn = dbHelper.borrow()) {
+            PreparedStatement pstmt = conn.prepare(sql);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new ReportRow(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            rows.clear();
+        }
+        return rows;
+    }
+
+    /**
+     * Sale is one entry of the ledger.
+     */
+    static class Sale {
+        private final int carId;
+        private final String make;
+        private final long soldAtMillis;
+        private final long baseCents;
+        private final long taxCents;
+        private final long discountCents;
+        private final long totalCents;
+
+        /**
+         * @param carId the ID of the car sold
+         * @param make the make of the car, or null to take it from the cars table
+         * @param soldAtMillis when the car was sold, in epoch milliseconds
+         * @param quote the price the buyer paid
+         */
+        Sale(int carId, String make, long soldAtMillis, PricingEngine.Quote quote) {
+            this(carId, make, soldAtMillis, quote.getBaseCents(), quote.getTaxCents(),
+                    quote.getDiscountCents(), quote.getTotalCents());
+        }
+
+        private Sale(int carId, String make, long soldAtMillis, long baseCents, long taxCents,
+                     long discountCents, long totalCents) {
+            this.carId = carId;
+            this.make = make;
+            this.soldAtMillis = soldAtMillis;
+            this.baseCents = baseCents;
+            this.taxCents = taxCents;
+            this.discountCents = discountCents;
+            this.totalCents = totalCents;
+        }
+
+        /**
+         * @return the ID of the car sold
+         */
+        int getCarId() { return carId; }
+
+        /**
+         * @return the make of the car, or null if unknown
+         */
+        String getMake() { return make; }
+
+        /**
+         * @return when the car was sold, in epoch milliseconds
+         */
+        long getSoldAtMillis() { return soldAtMillis; }
+
+        /**
+         * @return the price of the car in cents
+         */
+        long getBaseCents() { return baseCents; }
+
+        /**
+         * @return the sales tax in cents
+         */
+        long getTaxCents() { return taxCents; }
+
+        /**
+         * @return the discount given in cents
+         */
+        long getDiscountCents() { return discountCents; }
+
+        /**
+         * @return what the buyer paid in cents
+         */
+        long getTotalCents() { return totalCents; }
+    }
+
+    /**
+     * ReportRow is one line of a sales report.
+     */
+    static class ReportRow {
+        private final String key;
+        private final long sales;
+        private final long revenueCents;
+        private final long discountCents;
+
+        private ReportRow(String key, long sales, long revenueCents, long discountCents) {
+            this.key = key;
+            this.sales = sales;
+            this.revenueCents = revenueCents;
+            this.discountCents = discountCents;
+        }
+
+        /**
+         * @return what the row is about: a day (yyyy-mm-dd), a make, or a period
+         */
+        String getKey() { return key; }
+
+        /**
+         * @return the number of cars sold
+         */
+        long getSales() { return sales; }
+
+        /**
+         * @return the revenue in cents
+         */
+        long getRevenueCents() { return revenueCents; }
+
+        /**
+         * @return the total discount given in cents
+         */
+        long getDiscountCents() { return discountCents; }
+
+        /**
+         * @return the average discount per sale in cents, 0 if nothing was sold
+         */
+        long getAverageDiscountCents() {
+            return sales == 0 ? 0 : Math.round((double) discountCents / sales);
+        }
+
+        /**
+         * @return the row, e.g. "Toyota: 12 sold, revenue $301,200.00, average discount $350.00"
+         */
+        @Override
+        public String toString() {
+            return key + ": " + sales + " sold, revenue " + PricingEngine.formatCents(revenueCents)
+                    + ", average discount " + PricingEngine.formatCents(getAverageDiscountCents());
+        }
+    }
+}
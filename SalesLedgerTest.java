@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesLedgerTest {
+    private static final LocalDate JANUARY = LocalDate.of(2026, 1, 1);
+    private static final LocalDate FEBRUARY = LocalDate.of(2026, 2, 1);
+
+    private Path dir;
+    private String dbPath;
+    private CarInventoryDBHelper db;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("sales-ledger-test");
+        dbPath = dir.resolve("cars.db").toString();
+        db = (CarInventoryDBHelper) InventoryStores.open("sqlite:" + dbPath);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        db.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static long millis(LocalDate day, int hour) {
+        return day.atTime(hour, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Records five sales of Toyotas and Hondas over two days in January and one in February.
+     */
+    private void recordSales() {
+        PricingEngine pricing = new PricingEngine();
+        Car corolla = new Car(2020, "Toyota", "Corolla", 22000, "Bluetooth");
+        Car camry = new Car(2021, "toyota", "Camry", 26000, "Sunroof");
+        Car civic = new Car(2019, "Honda", "Civic", 20000, "Navigation");
+        for (Car car : List.of(corolla, camry, civic)) {
+            db.addCar(car);
+        }
+        List<SalesLedger.Sale> sales = List.of(
+                new SalesLedger.Sale(corolla.getId(), null, millis(JANUARY, 9), pricing.quote(corolla, 6, 500)),
+                new SalesLedger.Sale(civic.getId(), null, millis(JANUARY, 23), pricing.quote(civic, 6, 0)),
+                new SalesLedger.Sale(camry.getId(), null, millis(JANUARY.plusDays(14), 12), pricing.quote(camry, 7, 1000)),
+                new SalesLedger.Sale(civic.getId(), "Honda", millis(FEBRUARY, 10), pricing.quote(civic, 6, 250)),
+                new SalesLedger.Sale(corolla.getId(), "TOYOTA", millis(FEBRUARY.plusDays(27), 18), pricing.quote(corolla, 0, 0)));
+        assertEquals(5, db.getSalesLedger().recordAll(sales));
+    }
+
+    @Test
+    void testRollupsMatchTheLedger() throws SQLException {
+        recordSales();
+        SalesLedger ledger = db.getSalesLedger();
+
+        List<String> byMake = new ArrayList<>();
+        for (String row : describe(ledger.revenueByMake())) {
+            byMake.add(row.toLowerCase()); // The rollup keeps the spelling of the make's first sale
+        }
+        assertEquals(query("SELECT lower(make), COUNT(*), SUM(total_cents), SUM(discount_cents) FROM sales "
+                + "GROUP BY lower(make) ORDER BY 3 DESC"), byMake, "Makes are grouped without case.");
+        assertEquals(query("SELECT date(sold_at / 1000, 'unixepoch'), COUNT(*), SUM(total_cents), SUM(discount_cents) "
+                        + "FROM sales GROUP BY 1 ORDER BY 1"),
+                describe(ledger.revenueByDay(JANUARY, FEBRUARY.plusMonths(1))));
+        assertEquals(2, ledger.revenueByDay(JANUARY, JANUARY.plusDays(30)).size(), "January had sales on two days.");
+
+        SalesLedger.ReportRow january = ledger.totals(JANUARY, JANUARY.plusDays(30));
+        assertEquals(query("SELECT '" + JANUARY + ".." + JANUARY.plusDays(30) + "', COUNT(*), SUM(total_cents), "
+                        + "SUM(discount_cents) FROM sales WHERE sold_at < " + millis(FEBRUARY, 0)),
+                describe(List.of(january)));
+        assertEquals(3, january.getSales());
+        assertEquals(50000, january.getAverageDiscountCents(), "$500, $0 and $1,000 off average to $500.");
+        assertEquals(0, ledger.totals(JANUARY.minusYears(1), JANUARY.minusDays(1)).getSales());
+
+        List<SalesLedger.Sale> february = ledger.getSales(millis(FEBRUARY, 0), millis(FEBRUARY.plusMonths(1), 0));
+        assertEquals(2, february.size());
+        assertEquals("Honda", february.get(0).getMake());
+    }
+
+    @Test
+    void testLedgerIsAppendOnly() throws SQLException {
+        recordSales();
+        List<String> before = query("SELECT id, car_id, sold_at, total_cents FROM sales ORDER BY id");
+        List<String> rollups = query("SELECT make, sales, revenue_cents FROM sales_by_make ORDER BY make");
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = connection.createStatement()) {
+            SQLException update = assertThrows(SQLException.class,
+                    () -> stmt.executeUpdate("UPDATE sales SET total_cents = 0 WHERE id = 1"));
+            assertTrue(update.getMessage().contains("append-only"), update.getMessage());
+            SQLException delete = assertThrows(SQLException.class, () -> stmt.executeUpdate("DELETE FROM sales"));
+            assertTrue(delete.getMessage().contains("append-only"), delete.getMessage());
+        }
+        assertEquals(before, query("SELECT id, car_id, sold_at, total_cents FROM sales ORDER BY id"));
+        assertEquals(rollups, query("SELECT make, sales, revenue_cents FROM sales_by_make ORDER BY make"));
+    }
+
+    /**
+     * Runs a query on a separate connection and returns each row as its columns joined by spaces.
+     */
+    private List<String> query(String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder(rs.getString(1));
+                for (int i = 2; i <= columns; i++) {
+                    row.append(' ').append(rs.getString(i));
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+
+    private static List<String> describe(List<SalesLedger.ReportRow> rows) {
+        List<String> described = new ArrayList<>();
+        for (SalesLedger.ReportRow row : rows) {
+            described.add(row.getKey() + " " + row.getSales() + " " + row.getRevenueCents() + " " + row.getDiscountCents());
+        }
+        return described;
+    }
+}
@@ -0,0 +1,145 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * SchemaMigrator upgrades a car inventory database in place to the latest schema.
+ * The schema version is kept in SQLite's user_version header field; each migration
+ * runs once, in order, inside an immediate transaction, so two processes starting
+ * against the same file cannot apply the same step twice.
+ */
+class SchemaMigrator {
+    /**
+     * MIGRATIONS[i] upgrades a database from version i to version i + 1.
+     * Append new steps to the end; never edit a step that has shipped.
+     */
+    private static final String[][] MIGRATIONS = {
+            // 1: the original cars table, for databases created from scratch
+            {
+                    "CREATE TABLE IF NOT EXISTS cars ("
+                            + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "year INTEGER, "
+                            + "make TEXT, "
+                            + "model TEXT, "
+                            + "price REAL, "
+                            + "features TEXT, "
+                            + "status TEXT DEFAULT 'Available')"
+            },
+            // 2: indexes for searches by make/model, year and price, plus a partial index over unsold cars
+            {
+                    "CREATE INDEX IF NOT EXISTS idx_cars_make_model_year ON cars (make COLLATE NOCASE, model COLLATE NOCASE, year)",
+                    "CREATE INDEX IF NOT EXISTS idx_cars_year ON cars (year)",
+                    "CREATE INDEX IF NOT EXISTS idx_cars_price ON cars (price)",
+                    "CREATE INDEX IF NOT EXISTS idx_cars_available ON cars (make COLLATE NOCASE, price) WHERE status != 'Sold'",
+                    "ANALYZE"
+            },
+            // 3: one row per sale with its final price, written in the same transaction that marks the car as sold
+            {
+                    "CREATE TABLE IF NOT EXISTS sales ("
+                            + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "car_id INTEGER NOT NULL, "
+                            + "sold_at INTEGER NOT NULL, "
+                            + "base_cents INTEGER NOT NULL, "
+                            + "tax_cents INTEGER NOT NULL, "
+                            + "discount_cents INTEGER NOT NULL, "
+                            + "total_cents INTEGER NOT NULL)",
+                    "CREATE INDEX IF NOT EXISTS idx_sales_car ON sales (car_id)"
+            },
+            // 4: the sales table becomes an append-only ledger that remembers the make, with per-day and
+            //    per-make rollups kept current by a trigger so reports never scan the ledger
+            {
+                    "ALTER TABLE sales ADD COLUMN make TEXT",
+                    "UPDATE sales SET make = (SELECT make FROM cars WHERE cars.id = sales.car_id)",
+                    "CREATE INDEX IF NOT EXISTS idx_sales_sold_at ON sales (sold_at)",
+                    "CREATE TABLE IF NOT EXISTS sales_daily ("
+                            + "day TEXT PRIMARY KEY, "
+                            + "sales INTEGER NOT NULL, "
+                            + "revenue_cents INTEGER NOT NULL, "
+                            + "discount_cents INTEGER NOT NULL) WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS sales_by_make ("
+                            + "make TEXT PRIMARY KEY COLLATE NOCASE, "
+                            + "sales INTEGER NOT NULL, "
+                            + "revenue_cents INTEGER NOT NULL, "
+                            + "discount_cents INTEGER NOT NULL) WITHOUT ROWID",
+                    "INSERT INTO sales_daily (day, sales, revenue_cents, discount_cents) "
+                            + "SELECT date(sold_at / 1000, 'unixepoch'), COUNT(*), SUM(total_cents), SUM(discount_cents) "
+                            + "FROM sales GROUP BY 1",
+                    "INSERT INTO sales_by_make (make, sales, revenue_cents, discount_cents) "
+                            + "SELECT COALESCE(make, 'Unknown'), COUNT(*), SUM(total_cents), SUM(discount_cents) "
+                            + "FROM sales GROUP BY COALESCE(make, 'Unknown') COLLATE NOCASE",
+                    "CREATE TRIGGER IF NOT EXISTS sales_rollup AFTER INSERT ON sales BEGIN "
+                            + "INSERT INTO sales_daily (day, sales, revenue_cents, discount_cents) "
+                            + "VALUES (date(NEW.sold_at / 1000, 'unixepoch'), 1, NEW.total_cents, NEW.discount_cents) "
+                            + "ON CONFLICT (day) DO UPDATE SET sales = sales + 1, "
+                            + "revenue_cents = revenue_cents + excluded.revenue_cents, "
+                            + "discount_cents = discount_cents + excluded.discount_cents; "
+                            + "INSERT INTO sales_by_make (make, sales, revenue_cents, discount_cents) "
+                            + "VALUES (COALESCE(NEW.make, 'Unknown'), 1, NEW.total_cents, NEW.discount_cents) "
+                            + "ON CONFLICT (make) DO UPDATE SET sales = sales + 1, "
+                            + "revenue_cents = revenue_cents + excluded.revenue_cents, "
+                            + "discount_cents = discount_cents + excluded.discount_cents; "
+                            + "END",
+                    "CREATE TRIGGER IF NOT EXISTS sales_no_update BEFORE UPDATE ON sales BEGIN "
+                            + "SELECT RAISE(ABORT, 'The sales ledger is append-only'); END",
+                    "CREATE TRIGGER IF NOT EXISTS sales_no_delete BEFORE DELETE ON sales BEGIN "
+                            + "SELECT RAISE(ABORT, 'The sales ledger is append-only'); END"
+            }
+    };
+
+    /**
+     * @return the schema version this code expects
+     */
+    static int latestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Brings the database up to the latest schema version.
+     *
+     * @param connection an open, writable connection in auto-commit mode
+     * @return the number of migrations applied
+     * @throws SQLException if a migration fails; the failed step is rolled back
+     */
+    static int migrate(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE"); // Take the write lock before reading the version
+            try {
+                int version = readVersion(stmt);
+                if (version > MIGRATIONS.length) {
+                    throw new SQLException("Database schema version " + version
+                            + " is newer than this application supports (" + MIGRATIONS.length + ")");
+                }
+                for (int v = version; v < MIGRATIONS.length; v++) {
+                    for (String sql : MIGRATIONS[v]) {
+                        stmt.execute(sql);
+                    }
+                }
+                stmt.execute("PRAGMA user_version = " + MIGRATIONS.length);
+                stmt.execute("COMMIT");
+                return MIGRATIONS.length - version;
+            } catch (SQLException e) {
+                stmt.execute("ROLLBACK");
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the query planner statistics for every table and index.
+     *
+     * @param connection an open, writable connection
+     * @throws SQLException if ANALYZE fails
+     */
+    static void refreshStatistics(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    private static int readVersion(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+    /** The cars table as the original car_inventory.db has it, before any migration. */
+    private static final String BASELINE_SCHEMA = "CREATE TABLE \"cars\" ("
+            + "\"id\" INTEGER, "
+            + "\"year\" INTEGER NOT NULL, "
+            + "\"make\" TEXT NOT NULL, "
+            + "\"model\" TEXT NOT NULL, "
+            + "\"price\" REAL NOT NULL, "
+            + "\"features\" TEXT, "
+            + "\"Status\" TEXT DEFAULT \"Available\", "
+            + "PRIMARY KEY(\"id\" AUTOINCREMENT))";
+    private static final String[] MAKES = {"Toyota", "Honda", "Ford", "Chevrolet"};
+
+    private Path dir;
+    private String dbPath;
+
+    @BeforeEach
+    void setUp() throws IOException, SQLException {
+        dir = Files.createTempDirectory("schema-migrator-test");
+        dbPath = dir.resolve("car_inventory.db").toString();
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute(BASELINE_SCHEMA);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO cars (year, make, model, price, features, Status) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < 20; i++) {
+                    insert.setInt(1, 2010 + i % 12);
+                    insert.setString(2, MAKES[i % MAKES.length]);
+                    insert.setString(3, "Model " + i);
+                    insert.setFloat(4, 15000 + 500 * i);
+                    insert.setString(5, "Bluetooth, Backup Camera");
+                    insert.setString(6, i == 7 ? "Sold" : "Available");
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dbPath);
+    }
+
+    @Test
+    void testBaselineDatabaseMigratesInPlace() throws IOException, SQLException {
+        assertEquals(0, userVersion(), "The fixture should look like a database from before migrations.");
+        try (InventoryStore store = InventoryStores.open("sqlite:" + dbPath)) {
+            assertEquals(20, store.countCars(null), "Every car should survive the migration.");
+            assertEquals(19, store.countCars(new CarQuery().availableOnly()), "The existing Status column is used.");
+            assertEquals("Model 3", store.getCar(4).get().getModel());
+            assertEquals(5, store.countCars(new CarQuery().make("toyota")));
+
+            Car car = store.getCar(1).get();
+            assertEquals(InventoryStore.PurchaseResult.SOLD, store.purchaseCar(1, new PricingEngine().quote(car, 6, 0)));
+            List<SalesLedger.Sale> sales = ((CarInventoryDBHelper) store).getSalesLedger().getSales(0, Long.MAX_VALUE);
+            assertEquals(1, sales.size());
+            assertEquals("Toyota", sales.get(0).getMake(), "The ledger should take the make from the cars table.");
+        }
+
+        assertEquals(SchemaMigrator.latestVersion(), userVersion());
+        List<String> objects = schemaObjects();
+        for (String expected : List.of("index idx_cars_make_model_year", "index idx_cars_year", "index idx_cars_price",
+                "index idx_cars_available", "table sales", "index idx_sales_car", "index idx_sales_sold_at",
+                "table sales_daily", "table sales_by_make", "trigger sales_rollup", "trigger sales_no_update",
+                "trigger sales_no_delete")) {
+            assertTrue(objects.contains(expected), expected + " should exist: " + objects);
+        }
+        try (Connection connection = connect()) {
+            assertEquals(0, SchemaMigrator.migrate(connection), "A migrated database needs nothing more.");
+        }
+    }
+
+    @Test
+    void testNewerDatabaseIsRefused() throws SQLException {
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA user_version = " + (SchemaMigrator.latestVersion() + 1));
+            SQLException e = assertThrows(SQLException.class, () -> SchemaMigrator.migrate(connection));
+            assertTrue(e.getMessage().contains("newer"), e.getMessage());
+        }
+        assertEquals(SchemaMigrator.latestVersion() + 1, userVersion(), "Nothing should be changed.");
+        assertFalse(schemaObjects().contains("table sales"));
+    }
+
+    private int userVersion() throws SQLException {
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * @return the tables, indexes and triggers of the database, e.g. "index idx_cars_year"
+     */
+    private List<String> schemaObjects() throws SQLException {
+        List<String> objects = new ArrayList<>();
+        try (Connection connection = connect();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT type, name FROM sqlite_master")) {
+            while (rs.next()) {
+                objects.add(rs.getString(1) + " " + rs.getString(2));
+            }
+        }
+        return objects;
+    }
+}
@@ -1,124 +1,474 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 /**
- * CarInventory manages an in-memory list of Car objects.
+ * CarInventory manages an in-memory collection of Car objects addressed by stable ids.
  * It provides methods to add, remove, update, view, and simulate purchasing of cars.
+ * Cars are kept in insertion order in a slot array; an id-to-slot hash map gives O(1)
+ * lookups, and removals leave a tombstone that is compacted away once tombstones
+ * outnumber live cars, so ids never shift and removal stays O(1) amortized.
+ * Secondary indexes on make, model, year, price and availability are kept up to date
+ * by every mutation and back findCars.
+ * Its public operations are timed in the "memory" InventoryMetrics, and its changes are
+ * published on an InventoryChangeFeed.
  */
 class CarInventory {
-    private ArrayList<Car> cars = new ArrayList<>();
+    private static final int MIN_COMPACTION_TOMBSTONES = 64;
+    private static final InventoryMetrics METRICS = InventoryMetrics.forStore("memory");
+
+    private Car[] slots = new Car[16]; // Insertion order; null marks a removed car
+    private int slotCount; // Number of used slots, live or tombstoned
+    private int liveCount;
+    private int modCount; // Bumped on every add and remove so live views can fail fast
+    private final IntIntHashMap slotById = new IntIntHashMap();
+    private final CarIndex index = new CarIndex();
+    private int nextId;
+    private List<CarFeedReader.LineError> loadErrors = Collections.emptyList();
+    private final Collection<Car> carsView = new CarsView();
+    private PricingEngine pricing = new PricingEngine();
+    private final InventoryChangeFeed changes = new InventoryChangeFeed();
     /**
-     * Adds a car to the inventory.
+     * Adds a car to the inventory, assigning it the next free id if it does not have one yet.
      *
      * @param car the Car object to add
-     * @return true if the car is successfully added
+     * @return true if the car is successfully added, false if a car with the same id is already present
      */
     public boolean addCar(Car car) {
-        return cars.add(car);
+        long start = System.nanoTime();
+        boolean added = add(car);
+        if (added) {
+            changes.added(car.getId());
+        }
+        METRICS.record(InventoryMetrics.Operation.ADD_CAR, start);
+        return added;
+    }
+    /**
+     * Adds a car without timing it, for the loaders.
+     */
+    private boolean add(Car car) {
+        int id = car.getId();
+        if (id == Car.NO_ID) {
+            id = nextId++;
+            car.setId(id);
+        } else if (slotById.containsKey(id)) {
+            return false;
+        } else {
+            nextId = Math.max(nextId, id + 1);
+        }
+        if (slotCount == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        slots[slotCount] = car;
+        slotById.put(id, slotCount);
+        index.add(car);
+        slotCount++;
+        liveCount++;
+        modCount++;
+        return true;
     }
     /**
-     * Removes a car from inventory by its index.
+     * Looks up a car by its id.
      *
-     * @param index the index of the car in the list
+     * @param id the id of the car
+     * @return an Optional containing the car, or empty if no car has that id
+     */
+    public Optional<Car> getCar(int id) {
+        return Optional.ofNullable(find(id));
+    }
+    /**
+     * Removes a car from inventory by its id.
+     *
+     * @param id the id of the car
      * @return true if the car was successfully removed
      */
-    public boolean removeCar(int index) {
-        if (index >= 0 && index < cars.size()) {
-            cars.remove(index);
+    public boolean removeCar(int id) {
+        long start = System.nanoTime();
+        try {
+            if (id == Car.NO_ID) {
+                return false;
+            }
+            int slot = slotById.remove(id);
+            if (slot == IntIntHashMap.NO_VALUE) {
+                return false;
+            }
+            index.remove(slots[slot]);
+            slots[slot] = null;
+            liveCount--;
+            modCount++;
+            int tombstones = slotCount - liveCount;
+            if (tombstones >= MIN_COMPACTION_TOMBSTONES && tombstones > liveCount) {
+                compact();
+            }
+            changes.removed(id);
             return true;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.REMOVE_CAR, start);
         }
-        return false;
     }
     /**
-     * Updates the price and features of a car at the specified index.
+     * Updates the price and features of the car with the specified id.
      *
-     * @param index the index of the car in the list
+     * @param id the id of the car
      * @param price the new price
      * @param features the new features
      * @return true if the update was successful
      */
-    public boolean updateCar(int index, float price, String features) {
-        if (index >= 0 && index < cars.size()) {
-            cars.get(index).setPrice(price);
-            cars.get(index).setFeatures(features);
-            return true;
+    public boolean updateCar(int id, float price, String features) {
+        long start = System.nanoTime();
+        try {
+            Car car = find(id);
+            if (car != null) {
+                float oldPrice = car.getPrice();
+                car.setPrice(price);
+                car.setFeatures(features);
+                index.priceChanged(car, oldPrice);
+                changes.updated(id, price, features);
+                return true;
+            }
+            return false;
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.UPDATE_CAR, start);
         }
-        return false;
     }
     /**
-     * Retrieves a copy of the current inventory list.
+     * @return the number of cars in the inventory
+     */
+    public int size() {
+        return liveCount;
+    }
+    /**
+     * @return true if the inventory holds no cars
+     */
+    public boolean isEmpty() {
+        return liveCount == 0;
+    }
+    /**
+     * Returns a read-only live view of the inventory in insertion order, without copying it.
+     * The view reflects later changes; iterating it while cars are added or removed
+     * throws ConcurrentModificationException.
+     *
+     * @return an unmodifiable view of the cars
+     */
+    public Collection<Car> cars() {
+        return carsView;
+    }
+    /**
+     * Retrieves one page of the inventory in insertion order.
+     *
+     * @param offset the number of cars to skip
+     * @param limit the maximum number of cars to return
+     * @return a list of at most {@code limit} cars
+     */
+    public List<Car> getCars(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        List<Car> page = new ArrayList<>(Math.min(limit, Math.max(0, liveCount - offset)));
+        if (slotCount == liveCount) {
+            // No tombstones, so positions map straight onto slots
+            for (int i = offset; i < slotCount && page.size() < limit; i++) {
+                page.add(slots[i]);
+            }
+            return page;
+        }
+        int skipped = 0;
+        for (int i = 0; i < slotCount && page.size() < limit; i++) {
+            if (slots[i] != null && skipped++ >= offset) {
+                page.add(slots[i]);
+            }
+        }
+        return page;
+    }
+    /**
+     * Retrieves a copy of the current inventory list in insertion order.
+     * Prefer size(), isEmpty(), cars() or getCars(offset, limit) when a full copy is not needed.
      *
      * @return a list of Car objects
      */
     public List<Car> getCars() {
-        return new ArrayList<>(cars);
+        long start = System.nanoTime();
+        List<Car> cars = new ArrayList<>(liveCount);
+        for (int i = 0; i < slotCount; i++) {
+            if (slots[i] != null) {
+                cars.add(slots[i]);
+            }
+        }
+        METRICS.record(InventoryMetrics.Operation.GET_ALL_CARS, start);
+        return cars;
+    }
+    /**
+     * Finds every car matching a query, using the most selective secondary index.
+     *
+     * @param query the search criteria
+     * @return the matching cars in id order
+     */
+    public List<Car> findCars(CarQuery query) {
+        long start = System.nanoTime();
+        Collection<Integer> ids = index.candidates(query);
+        List<Car> matches = new ArrayList<>();
+        if (ids == null) {
+            for (int i = 0; i < slotCount; i++) {
+                if (slots[i] != null && query.matches(slots[i])) {
+                    matches.add(slots[i]);
+                }
+            }
+        } else {
+            for (int id : ids) {
+                Car car = find(id);
+                if (car != null && query.matches(car)) {
+                    matches.add(car);
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Car::getId));
+        METRICS.record(InventoryMetrics.Operation.QUERY, start);
+        return matches;
+    }
+    /**
+     * Marks the car with the specified id as sold.
+     *
+     * @param id the id of the car
+     * @return true if the car exists and was not already sold
+     */
+    public boolean markAsSold(int id) {
+        long start = System.nanoTime();
+        Car car = find(id);
+        boolean marked = car != null && !car.isSold();
+        if (marked) {
+            markAsSold(car);
+        }
+        METRICS.record(InventoryMetrics.Operation.MARK_SOLD, start);
+        return marked;
     }
     /**
      * Processes a car purchase by marking it as sold.
      *
-     * @param index the index of the car to purchase
+     * @param id the id of the car to purchase
      * @param confirmation the user's confirmation input ("yes")
-     * @return an Optional containing the purchased Car if successful
+     * @return an Optional containing the purchased Car if successful, or empty if it was already sold
      */
-    public Optional<Car> buyCar(int index, String confirmation) {
-        if (index >= 0 && index < cars.size() && confirmation.equalsIgnoreCase("yes")) {
-            Car car = cars.get(index);
-            car.markAsSold(); // Ensure the car is marked as sold
-            return Optional.of(car);
+    public Optional<Car> buyCar(int id, String confirmation) {
+        long start = System.nanoTime();
+        try {
+            Car car = find(id);
+            if (car != null && !car.isSold() && confirmation.equalsIgnoreCase("yes")) {
+                markAsSold(car);
+                return Optional.of(car);
+            }
+            return Optional.empty();
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.PURCHASE, start);
+        }
+    }
+    /**
+     * Finds the car with the given id.
+     *
+     * @param id the id of the car
+     * @return the car, or null if no car has that id
+     */
+    private Car find(int id) {
+        if (id == Car.NO_ID) {
+            return null;
         }
-        return Optional.empty();
+        int slot = slotById.get(id);
+        return slot == IntIntHashMap.NO_VALUE ? null : slots[slot];
+    }
+    /**
+     * Marks a car as sold and drops it from the availability index.
+     */
+    private void markAsSold(Car car) {
+        car.markAsSold();
+        index.sold(car);
+        changes.sold(car.getId());
+    }
+    /**
+     * CarsView is the read-only, copy-free view returned by cars().
+     */
+    private class CarsView extends AbstractCollection<Car> {
+        @Override
+        public int size() {
+            return liveCount;
+        }
+
+        @Override
+        public Iterator<Car> iterator() {
+            return new Iterator<Car>() {
+                private final int expectedModCount = modCount;
+                private int next = advance(0);
+
+                private int advance(int from) {
+                    while (from < slotCount && slots[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < slotCount;
+                }
+
+                @Override
+                public Car next() {
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (next >= slotCount) {
+                        throw new NoSuchElementException();
+                    }
+                    Car car = slots[next];
+                    next = advance(next + 1);
+                    return car;
+                }
+            };
+        }
+    }
+    /**
+     * Squeezes out tombstones, keeping cars in insertion order and re-pointing their ids at the new slots.
+     */
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < slotCount; i++) {
+            Car car = slots[i];
+            if (car != null) {
+                if (live != i) {
+                    slots[live] = car;
+                    slotById.put(car.getId(), live);
+                }
+                live++;
+            }
+        }
+        Arrays.fill(slots, live, slotCount, null);
+        slotCount = live;
     }
     /**
      * Loads car data from a comma-separated text file.
+     * Malformed lines are skipped and can be inspected with getLoadErrors().
      *
      * @param filename the name of the file to load
-     * @return true if the file was loaded successfully, false if an error occurred
+     * @return true if every line was loaded, false if the file could not be read or any line was skipped
      */
     public boolean loadCarsFromFile(String filename) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-
-                String[] details = line.split("\\s*,\\s*"); // Split by commas with optional spaces
-                if (details.length >= 5) { // Ensure all fields are present
-                    try {
-                        int year = Integer.parseInt(details[0]);
-                        String make = details[1];
-                        String model = details[2];
-                        float price = Float.parseFloat(details[3]);
-                        String features = details[4];
-
-                        addCar(new Car(year, make, model, price, features));
-                    } catch (NumberFormatException e) {
-                        return false; // Invalid number format
-                    }
-                } else {
-                    return false; // Invalid file format
-                }
+        long start = System.nanoTime();
+        try (CarFeedReader reader = CarFeedReader.open(filename)) {
+            Car car;
+            while ((car = reader.next()) != null) {
+                add(car);
             }
-            return true;
+            loadErrors = reader.getErrors();
+            return reader.getErrorCount() == 0;
         } catch (IOException e) {
+            METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+            loadErrors = Collections.singletonList(new CarFeedReader.LineError(0, "Could not read file: " + e.getMessage()));
+            return false;
+        } finally {
+            changes.reloaded(); // Even a failed load may have added cars
+            METRICS.record(InventoryMetrics.Operation.LOAD_FILE, start);
+        }
+    }
+
+    /**
+     * Loads car data from a comma-separated text file by memory-mapping it and parsing
+     * chunks of it in parallel. Cars are added in the same order as loadCarsFromFile would add them.
+     *
+     * @param filename the name of the file to load
+     * @return true if every line was loaded, false if the file could not be read or any line was skipped
+     */
+    public boolean loadCarsFromFileParallel(String filename) {
+        long start = System.nanoTime();
+        try {
+            ParallelCarLoader.LoadResult result = new ParallelCarLoader().load(Paths.get(filename), this::add);
+            loadErrors = result.getErrors();
+            return result.getErrorCount() == 0;
+        } catch (IOException | InvalidPathException e) {
+            METRICS.failed(InventoryMetrics.Operation.LOAD_FILE, e);
+            loadErrors = Collections.singletonList(new CarFeedReader.LineError(0, "Could not read file: " + e.getMessage()));
             return false;
+        } finally {
+            changes.reloaded(); // Even a failed load may have added cars
+            METRICS.record(InventoryMetrics.Operation.LOAD_FILE, start);
+        }
+    }
+
+    /**
+     * Returns the problems found by the most recent call to loadCarsFromFile.
+     *
+     * @return the skipped lines, or an empty list if the last load was clean
+     */
+    public List<CarFeedReader.LineError> getLoadErrors() {
+        return loadErrors;
+    }
+
+    /**
+     * @return the feed on which every add, update, removal, sale and load is published
+     */
+    public InventoryChangeFeed getChangeFeed() { return changes; }
+
+    /**
+     * @return the pricing engine used to quote purchases
+     */
+    public PricingEngine getPricingEngine() { return pricing; }
+
+    /**
+     * Replaces the pricing engine, e.g. with one that has jurisdictions and promotions configured.
+     *
+     * @param pricing the pricing engine used to quote purchases
+     */
+    public void setPricingEngine(PricingEngine pricing) { this.pricing = pricing; }
+
+    /**
+     * Quotes the purchase of an available car without buying it.
+     *
+     * @param id id of the car to quote
+     * @param taxRate sales tax rate in percent
+     * @param discount discount amount in dollars
+     * @return the quote, or empty if there is no such car or it has been sold
+     * @throws IllegalArgumentException if the tax rate or discount is negative
+     */
+    public Optional<PricingEngine.Quote> quotePurchase(int id, float taxRate, float discount) {
+        Car car = find(id);
+        if (car == null || car.isSold()) {
+            return Optional.empty();
         }
+        return Optional.of(pricing.quote(car, taxRate, discount));
     }
 
     /**
-     * Placeholder for future enhanced car purchase method with tax and discount.
+     * Processes a car purchase with tax and discount: quotes it with the pricing engine and,
+     * if the buyer confirmed, marks the car as sold.
      *
-     * @param indexToBuy index of the car to buy
-     * @param taxRate applicable tax rate
-     * @param discount discount amount
+     * @param idToBuy id of the car to buy
+     * @param taxRate sales tax rate in percent
+     * @param discount discount amount in dollars
      * @param confirmation purchase confirmation ("yes")
-     * @return an Optional that currently returns empty (not implemented)
+     * @return an Optional containing the purchased Car if successful
+     * @throws IllegalArgumentException if the tax rate or discount is negative
      */
-    public Optional<Car> buyCar(int indexToBuy, float taxRate, float discount, String confirmation) {
-        return Optional.empty();
+    public Optional<Car> buyCar(int idToBuy, float taxRate, float discount, String confirmation) {
+        long start = System.nanoTime();
+        try {
+            Optional<PricingEngine.Quote> quote = quotePurchase(idToBuy, taxRate, discount);
+            if (quote.isEmpty() || !"yes".equalsIgnoreCase(confirmation)) {
+                return Optional.empty();
+            }
+            Car car = find(idToBuy);
+            markAsSold(car);
+            return Optional.of(car);
+        } finally {
+            METRICS.record(InventoryMetrics.Operation.PURCHASE, start);
+        }
     }
 }
 
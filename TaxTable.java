@@ -0,0 +1,115 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TaxTable is the sales tax of one jurisdiction, made of one or more components
+ * such as a state rate plus a county surtax. Each component may apply only to the
+ * first part of the price, e.g. a surtax charged on the first $5,000:
+ * <pre>
+ * new TaxTable("FL-Orange").add("State", new BigDecimal("6"), 0).add("County", new BigDecimal("0.5"), 500_000)
+ * </pre>
+ * Rates are kept in parts per million of the price, so every calculation is exact integer arithmetic.
+ */
+class TaxTable {
+    private final String jurisdiction;
+    private final List<String> names = new ArrayList<>();
+    private long[] ratesPpm = new long[0];
+    private long[] capsCents = new long[0];
+
+    /**
+     * Creates a table with no components, i.e. no tax.
+     *
+     * @param jurisdiction the name of the jurisdiction
+     */
+    TaxTable(String jurisdiction) {
+        this.jurisdiction = jurisdiction;
+    }
+
+    /**
+     * Creates a table with a single rate on the whole price, e.g. the rate typed in at the counter.
+     *
+     * @param jurisdiction the name of the jurisdiction
+     * @param percent the tax rate in percent, e.g. 6.5
+     * @return the new table
+     */
+    static TaxTable flat(String jurisdiction, BigDecimal percent) {
+        return new TaxTable(jurisdiction).add(jurisdiction, percent, 0);
+    }
+
+    /**
+     * Adds a tax component.
+     *
+     * @param name the name of the component, e.g. "State"
+     * @param percent the rate in percent
+     * @param capCents the part of the price the rate applies to, in cents, or 0 for the whole price
+     * @return this table
+     * @throws IllegalArgumentException if the rate or cap is negative
+     */
+    TaxTable add(String name, BigDecimal percent, long capCents) {
+        if (percent.signum() < 0 || capCents < 0) {
+            throw new IllegalArgumentException("Tax rates and caps cannot be negative");
+        }
+        int n = names.size();
+        names.add(name);
+        ratesPpm = Arrays.copyOf(ratesPpm, n + 1);
+        capsCents = Arrays.copyOf(capsCents, n + 1);
+        ratesPpm[n] = PricingEngine.toPpm(percent);
+        capsCents[n] = capCents == 0 ? Long.MAX_VALUE : capCents;
+        return this;
+    }
+
+    /**
+     * @return the name of the jurisdiction
+     */
+    String getJurisdiction() { return jurisdiction; }
+
+    /**
+     * @return the number of components
+     */
+    int size() { return names.size(); }
+
+    /**
+     * @param i the index of a component
+     * @return the rate of the component in parts per million
+     */
+    long rateAt(int i) { return ratesPpm[i]; }
+
+    /**
+     * @param i the index of a component
+     * @return the part of the price the component applies to in cents, Long.MAX_VALUE if uncapped
+     */
+    long capAt(int i) { return capsCents[i]; }
+
+    /**
+     * Computes the tax on a price. Each component is rounded half up to the cent on its own,
+     * as it would be on a receipt.
+     *
+     * @param baseCents the taxable price in cents
+     * @return the total tax in cents
+     */
+    long taxCents(long baseCents) {
+        long tax = 0;
+        for (int i = 0; i < ratesPpm.length; i++) {
+            tax += PricingEngine.applyPpm(Math.min(baseCents, capsCents[i]), ratesPpm[i]);
+        }
+        return tax;
+    }
+
+    /**
+     * @return the table as "jurisdiction: name rate%, ..."
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(jurisdiction).append(':');
+        for (int i = 0; i < names.size(); i++) {
+            text.append(i == 0 ? " " : ", ").append(names.get(i)).append(' ')
+                    .append(BigDecimal.valueOf(ratesPpm[i], 4).stripTrailingZeros().toPlainString()).append('%');
+            if (capsCents[i] != Long.MAX_VALUE) {
+                text.append(" on the first ").append(PricingEngine.formatCents(capsCents[i]));
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of ConcurrentCarInventory under a sales-floor workload (90% lookups,
+ * 8% price updates and 2% purchases of random cars) at 1 to 64 threads, next to a CarInventory
+ * behind a single lock as the baseline. JMH fixes the thread count of a benchmark method, so each
+ * count of the sweep is its own method; the score is operations per second across all threads.
+ * Purchases are never undone, so later iterations mostly find the car already sold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConcurrentInventoryBenchmark {
+    @Param({"100000"})
+    int cars;
+
+    @Param({"concurrent", "locked"})
+    String inventory;
+
+    private Object target;
+    private boolean concurrent;
+
+    /**
+     * Fills the shared inventory once; every thread works on the same one.
+     */
+    @Setup(Level.Trial)
+    public void fill() {
+        concurrent = "concurrent".equals(inventory);
+        target = concurrent ? Dealership.newConcurrentInventory() : Dealership.newInventory();
+        FeedData data = new FeedData(42);
+        for (int i = 0; i < cars; i++) {
+            if (concurrent) {
+                Dealership.concurrentAddCar(target, data.nextCar());
+            } else {
+                Dealership.addCar(target, data.nextCar());
+            }
+        }
+    }
+
+    /**
+     * Runs one operation of the workload on a random car.
+     */
+    private Object operate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int id = random.nextInt(cars);
+        int roll = random.nextInt(100);
+        if (concurrent) {
+            if (roll < 90) {
+                return Dealership.concurrentGetCar(target, id);
+            }
+            return roll < 98
+                    ? Dealership.concurrentUpdateCar(target, id, random.nextInt(10000, 50000), "Updated")
+                    : Dealership.concurrentMarkAsSold(target, id);
+        }
+        synchronized (target) {
+            if (roll < 90) {
+                return Dealership.getCar(target, id);
+            }
+            return roll < 98
+                    ? Dealership.updateCar(target, id, random.nextInt(10000, 50000), "Updated")
+                    : Dealership.markAsSold(target, id);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads01() {
+        return operate();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public Object threads02() {
+        return operate();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads04() {
+        return operate();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object threads08() {
+        return operate();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16() {
+        return operate();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Object threads32() {
+        return operate();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object threads64() {
+        return operate();
+    }
+}
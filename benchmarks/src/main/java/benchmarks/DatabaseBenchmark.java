@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures CarInventoryDBHelper latency against a temporary SQLite file holding {@code cars} cars:
+ * single-row inserts and price updates, a lookup by id, an indexed count and a keyset page.
+ * Latencies are sampled, so the JSON results carry percentiles as well as the mean.
+ * Inserts add to the table for the whole trial, which is large enough for that not to matter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatabaseBenchmark {
+    @Param({"100000"})
+    int cars;
+
+    private Path dir;
+    private Object db;
+    private FeedData data;
+    private int maxId;
+
+    /**
+     * Creates and fills the database once; filling it is not timed.
+     */
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException {
+        dir = Files.createTempDirectory("cars-db-benchmark");
+        db = Dealership.connect(dir.resolve("cars.db").toString());
+        data = new FeedData(42);
+        for (int i = 0; i < cars; i++) {
+            Object car = data.nextCar();
+            Dealership.dbAddCar(db, car);
+            maxId = Dealership.carId(car);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws IOException {
+        Dealership.disconnect(db);
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean insert() {
+        return Dealership.dbAddCar(db, data.nextCar());
+    }
+
+    @Benchmark
+    public boolean updatePrice() {
+        return Dealership.dbUpdateCar(db, 1 + data.nextInt(maxId), 8000 + data.nextInt(40000), "Bluetooth");
+    }
+
+    @Benchmark
+    public Optional<?> getCar() {
+        return Dealership.dbGetCar(db, 1 + data.nextInt(maxId));
+    }
+
+    @Benchmark
+    public long countByMakeAndPrice() {
+        int low = 8000 + data.nextInt(30000);
+        return Dealership.dbCountCars(db, Dealership.query(data.nextMake(), low, low + 5000));
+    }
+
+    @Benchmark
+    public List<?> page() {
+        return Dealership.dbCarsPage(db, null, data.nextInt(maxId), 100, Dealership.SUMMARY_COLUMNS);
+    }
+}
@@ -0,0 +1,490 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Dealership gives the benchmarks access to the application classes. Those live in the default
+ * package, which Java code in a named package cannot refer to, and JMH refuses to generate
+ * benchmarks in the default package. So every entry point is a method handle looked up once
+ * by class name and held in a static final field, which the JIT treats as a constant and inlines;
+ * the calls cost the same as direct ones. Cars, inventories and queries are passed as Objects.
+ */
+final class Dealership {
+    private static final Class<?> CAR = find("Car");
+    private static final Class<?> INVENTORY = find("CarInventory");
+    private static final Class<?> CONCURRENT_INVENTORY = find("ConcurrentCarInventory");
+    private static final Class<?> STORE = find("InventoryStore");
+    private static final Class<?> STORES = find("InventoryStores");
+    private static final Class<?> DB_HELPER = find("CarInventoryDBHelper");
+    private static final Class<?> QUERY = find("CarQuery");
+    private static final Class<?> COLUMN = find("CarColumn");
+    private static final Class<?> GENERATOR = find("FeedGenerator");
+
+    private static final MethodHandle NEW_CAR = constructor(CAR,
+            int.class, String.class, String.class, float.class, String.class);
+    private static final MethodHandle CAR_ID = method(CAR, "getId", int.class);
+
+    private static final MethodHandle NEW_INVENTORY = constructor(INVENTORY);
+    private static final MethodHandle ADD_CAR = method(INVENTORY, "addCar", boolean.class, CAR);
+    private static final MethodHandle REMOVE_CAR = method(INVENTORY, "removeCar", boolean.class, int.class);
+    private static final MethodHandle GET_CARS = method(INVENTORY, "getCars", List.class);
+    private static final MethodHandle BUY_CAR = method(INVENTORY, "buyCar", Optional.class,
+            int.class, float.class, float.class, String.class);
+    private static final MethodHandle SIZE = method(INVENTORY, "size", int.class);
+    private static final MethodHandle GET_CAR = method(INVENTORY, "getCar", Optional.class, int.class);
+    private static final MethodHandle UPDATE_CAR = method(INVENTORY, "updateCar", boolean.class,
+            int.class, float.class, String.class);
+    private static final MethodHandle MARK_SOLD = method(INVENTORY, "markAsSold", boolean.class, int.class);
+    private static final MethodHandle LOAD = method(INVENTORY, "loadCarsFromFile", boolean.class, String.class);
+    private static final MethodHandle LOAD_PARALLEL = method(INVENTORY, "loadCarsFromFileParallel", boolean.class, String.class);
+
+    private static final MethodHandle NEW_CONCURRENT_INVENTORY = constructor(CONCURRENT_INVENTORY);
+    private static final MethodHandle CONCURRENT_ADD_CAR = method(CONCURRENT_INVENTORY, "addCar", boolean.class, CAR);
+    private static final MethodHandle CONCURRENT_GET_CAR = method(CONCURRENT_INVENTORY, "getCar", Optional.class, int.class);
+    private static final MethodHandle CONCURRENT_UPDATE_CAR = method(CONCURRENT_INVENTORY, "updateCar", boolean.class,
+            int.class, float.class, String.class);
+    private static final MethodHandle CONCURRENT_MARK_SOLD = method(CONCURRENT_INVENTORY, "markAsSold", boolean.class, int.class);
+
+    private static final MethodHandle OPEN_STORE = staticMethod(STORES, "open", STORE, String.class);
+    private static final MethodHandle STORE_ADD_CAR = method(STORE, "addCar", boolean.class, CAR);
+    private static final MethodHandle STORE_GET_CAR = method(STORE, "getCar", Optional.class, int.class);
+    private static final MethodHandle STORE_UPDATE_CAR = method(STORE, "updateCar", boolean.class,
+            int.class, float.class, String.class);
+    private static final MethodHandle STORE_COUNT = method(STORE, "countCars", long.class, QUERY);
+    private static final MethodHandle STORE_FOR_EACH = method(STORE, "forEachCar", void.class, QUERY, Predicate.class);
+    private static final MethodHandle STORE_SORTED = method(STORE, "getCarsSorted", List.class,
+            QUERY, COLUMN, boolean.class, long.class, int.class, Set.class);
+    private static final MethodHandle STORE_CLOSE = method(STORE, "close", void.class);
+
+    private static final MethodHandle NEW_DB_HELPER = constructor(DB_HELPER);
+    private static final MethodHandle CONNECT = method(DB_HELPER, "connect", boolean.class, String.class);
+    private static final MethodHandle DISCONNECT = method(DB_HELPER, "disconnect", void.class);
+    private static final MethodHandle DB_ADD_CAR = method(DB_HELPER, "addCar", boolean.class, CAR);
+    private static final MethodHandle DB_UPDATE_CAR = method(DB_HELPER, "updateCar", boolean.class,
+            int.class, float.class, String.class);
+    private static final MethodHandle DB_GET_CAR = method(DB_HELPER, "getCar", Optional.class, int.class);
+    private static final MethodHandle DB_COUNT = method(DB_HELPER, "countCars", long.class, QUERY);
+    private static final MethodHandle DB_PAGE = method(DB_HELPER, "getCarsPage", List.class,
+            QUERY, int.class, int.class, Set.class);
+
+    private static final MethodHandle NEW_QUERY = constructor(QUERY);
+    private static final MethodHandle QUERY_MAKE = method(QUERY, "make", QUERY, String.class);
+    private static final MethodHandle QUERY_PRICES = method(QUERY, "prices", QUERY, float.class, float.class);
+
+    private static final MethodHandle NEW_GENERATOR = constructor(GENERATOR, long.class);
+    private static final MethodHandle WRITE_FEED = method(GENERATOR, "writeFeed", long.class, Path.class, long.class);
+
+    /** CarColumn.SUMMARY, the columns of an inventory listing. */
+    static final Set<?> SUMMARY_COLUMNS = (Set<?>) staticField(COLUMN, "SUMMARY", Set.class);
+    /** CarColumn.PRICE, for sorting by price. */
+    static final Object PRICE_COLUMN = staticField(COLUMN, "PRICE", COLUMN);
+
+    private Dealership() {
+    }
+
+    static Object newCar(int year, String make, String model, float price, String features) {
+        try {
+            return (Object) NEW_CAR.invokeExact(year, make, model, price, features);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int carId(Object car) {
+        try {
+            return (int) CAR_ID.invokeExact(car);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object newInventory() {
+        try {
+            return (Object) NEW_INVENTORY.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean addCar(Object inventory, Object car) {
+        try {
+            return (boolean) ADD_CAR.invokeExact(inventory, car);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean removeCar(Object inventory, int id) {
+        try {
+            return (boolean) REMOVE_CAR.invokeExact(inventory, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> getCars(Object inventory) {
+        try {
+            return (List<?>) GET_CARS.invokeExact(inventory);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Optional<?> buyCar(Object inventory, int id, float taxRate, float discount, String confirmation) {
+        try {
+            return (Optional<?>) BUY_CAR.invokeExact(inventory, id, taxRate, discount, confirmation);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int size(Object inventory) {
+        try {
+            return (int) SIZE.invokeExact(inventory);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Optional<?> getCar(Object inventory, int id) {
+        try {
+            return (Optional<?>) GET_CAR.invokeExact(inventory, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean updateCar(Object inventory, int id, float price, String features) {
+        try {
+            return (boolean) UPDATE_CAR.invokeExact(inventory, id, price, features);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean markAsSold(Object inventory, int id) {
+        try {
+            return (boolean) MARK_SOLD.invokeExact(inventory, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean loadCarsFromFile(Object inventory, String filename) {
+        try {
+            return (boolean) LOAD.invokeExact(inventory, filename);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean loadCarsFromFileParallel(Object inventory, String filename) {
+        try {
+            return (boolean) LOAD_PARALLEL.invokeExact(inventory, filename);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object newConcurrentInventory() {
+        try {
+            return (Object) NEW_CONCURRENT_INVENTORY.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean concurrentAddCar(Object inventory, Object car) {
+        try {
+            return (boolean) CONCURRENT_ADD_CAR.invokeExact(inventory, car);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Optional<?> concurrentGetCar(Object inventory, int id) {
+        try {
+            return (Optional<?>) CONCURRENT_GET_CAR.invokeExact(inventory, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean concurrentUpdateCar(Object inventory, int id, float price, String features) {
+        try {
+            return (boolean) CONCURRENT_UPDATE_CAR.invokeExact(inventory, id, price, features);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean concurrentMarkAsSold(Object inventory, int id) {
+        try {
+            return (boolean) CONCURRENT_MARK_SOLD.invokeExact(inventory, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Opens an InventoryStore from a spec such as "memory" or "sqlite:cars.db", like the application does.
+     *
+     * @throws IOException if the store cannot be opened
+     */
+    static Object openStore(String spec) throws IOException {
+        try {
+            return (Object) OPEN_STORE.invokeExact(spec);
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean storeAddCar(Object store, Object car) {
+        try {
+            return (boolean) STORE_ADD_CAR.invokeExact(store, car);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Optional<?> storeGetCar(Object store, int id) {
+        try {
+            return (Optional<?>) STORE_GET_CAR.invokeExact(store, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean storeUpdateCar(Object store, int id, float price, String features) {
+        try {
+            return (boolean) STORE_UPDATE_CAR.invokeExact(store, id, price, features);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long storeCountCars(Object store, Object query) {
+        try {
+            return (long) STORE_COUNT.invokeExact(store, query);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Passes every matching car to the action in id order until it returns false.
+     */
+    static void storeForEachCar(Object store, Object query, Predicate<Object> action) {
+        try {
+            STORE_FOR_EACH.invokeExact(store, query, (Predicate) action);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> storeCarsSorted(Object store, Object query, Object sortBy, boolean ascending, long offset, int limit,
+                                   Set<?> columns) {
+        try {
+            return (List<?>) STORE_SORTED.invokeExact(store, query, sortBy, ascending, offset, limit, columns);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void closeStore(Object store) {
+        try {
+            STORE_CLOSE.invokeExact(store);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Connects a new CarInventoryDBHelper with its default (performance) profile.
+     *
+     * @throws IllegalStateException if the database cannot be opened
+     */
+    static Object connect(String dbPath) {
+        try {
+            Object helper = (Object) NEW_DB_HELPER.invokeExact();
+            if (!(boolean) CONNECT.invokeExact(helper, dbPath)) {
+                throw new IllegalStateException("Could not open " + dbPath + " (is sqlite-jdbc on the class path?)");
+            }
+            return helper;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void disconnect(Object helper) {
+        try {
+            DISCONNECT.invokeExact(helper);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean dbAddCar(Object helper, Object car) {
+        try {
+            return (boolean) DB_ADD_CAR.invokeExact(helper, car);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static boolean dbUpdateCar(Object helper, int id, float price, String features) {
+        try {
+            return (boolean) DB_UPDATE_CAR.invokeExact(helper, id, price, features);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Optional<?> dbGetCar(Object helper, int id) {
+        try {
+            return (Optional<?>) DB_GET_CAR.invokeExact(helper, id);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long dbCountCars(Object helper, Object query) {
+        try {
+            return (long) DB_COUNT.invokeExact(helper, query);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static List<?> dbCarsPage(Object helper, Object query, int afterId, int limit, Set<?> columns) {
+        try {
+            return (List<?>) DB_PAGE.invokeExact(helper, query, afterId, limit, columns);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * @return a CarQuery for one make within an inclusive price range
+     */
+    static Object query(String make, float minPrice, float maxPrice) {
+        try {
+            Object query = (Object) NEW_QUERY.invokeExact();
+            query = (Object) QUERY_MAKE.invokeExact(query, make);
+            return (Object) QUERY_PRICES.invokeExact(query, minPrice, maxPrice);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Writes a realistic feed with FeedGenerator.
+     *
+     * @param file the file to write
+     * @param lines the number of lines, all of them valid
+     * @param seed the generator seed
+     * @throws IOException if the file cannot be written
+     */
+    static void writeFeed(Path file, long lines, long seed) throws IOException {
+        try {
+            Object generator = (Object) NEW_GENERATOR.invokeExact(seed);
+            long malformed = (long) WRITE_FEED.invokeExact(generator, file, lines);
+        } catch (IOException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static Class<?> find(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns a private lookup into a default-package class, since most of them are package-private.
+     */
+    private static MethodHandles.Lookup lookupIn(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    /**
+     * Looks up a constructor and erases the class it creates to Object.
+     */
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            MethodHandle handle = lookupIn(type).findConstructor(type, MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Looks up an instance method and erases every application class in its type to Object.
+     */
+    private static MethodHandle method(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodHandle handle = lookupIn(type).findVirtual(type, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Looks up a static method and erases every application class in its type to Object.
+     */
+    private static MethodHandle staticMethod(Class<?> type, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodHandle handle = lookupIn(type).findStatic(type, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static Object staticField(Class<?> type, String name, Class<?> fieldType) {
+        try {
+            return lookupIn(type).findStaticVarHandle(type, name, fieldType).get();
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodType erase(MethodType type) {
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationClass(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        return isApplicationClass(type.returnType()) ? type.changeReturnType(Object.class) : type;
+    }
+
+    private static boolean isApplicationClass(Class<?> type) {
+        return !type.isPrimitive() && type.getPackageName().isEmpty();
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IllegalStateException(t);
+    }
+}
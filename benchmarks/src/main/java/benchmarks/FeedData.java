@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * FeedData generates the seeded cars the in-memory and database benchmarks work on, so every run
+ * and every release measures exactly the same data. Feed files come from FeedGenerator.
+ */
+final class FeedData {
+    private static final String[] MAKES = {"Toyota", "Honda", "Ford", "Chevrolet", "Nissan", "Hyundai", "Kia", "Subaru"};
+    private static final String[] MODELS = {"Corolla", "Civic", "Mustang", "Malibu", "Altima", "Elantra", "Sportage", "Outback"};
+    private static final String[] FEATURES = {"Bluetooth Sunroof", "Backup Camera, Heated Seats", "Navigation",
+            "Apple CarPlay", "Leather Seats", "AWD, Roof Rack"};
+
+    private final SplittableRandom random;
+
+    /**
+     * @param seed the seed; equal seeds give equal data
+     */
+    FeedData(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * @return a new Car (as an Object, see Dealership) that has not been added anywhere
+     */
+    Object nextCar() {
+        int make = random.nextInt(MAKES.length);
+        return Dealership.newCar(2005 + random.nextInt(20), MAKES[make], MODELS[make],
+                8000 + random.nextInt(40000), FEATURES[random.nextInt(FEATURES.length)]);
+    }
+
+    /**
+     * @return a random make from the ones the cars use
+     */
+    String nextMake() {
+        return MAKES[random.nextInt(MAKES.length)];
+    }
+
+    /**
+     * @param bound the exclusive upper bound
+     * @return a random int from 0 up to the bound
+     */
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+}
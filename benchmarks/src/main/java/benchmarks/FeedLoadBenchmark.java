@@ -0,0 +1,83 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading a FeedGenerator feed of {@code lines} lines into a new CarInventory, with the
+ * sequential loader and with the memory-mapped parallel one. Each load is one shot, so the
+ * score is the time per load; divide {@code lines} by it for lines per second.
+ * A 10,000,000-line feed needs about 4 GB of heap for the loaded cars; the fork asks for 8 GB,
+ * so on a smaller machine leave that size out with e.g. {@code -p lines=10000,100000,1000000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeedLoadBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int lines;
+
+    @Param({"sequential", "parallel"})
+    String loader;
+
+    private Path feed;
+    private Object inventory;
+
+    /**
+     * Writes the feed once per parameter combination.
+     */
+    @Setup(Level.Trial)
+    public void writeFeed() throws IOException {
+        feed = Files.createTempFile("cars-feed", ".txt");
+        Dealership.writeFeed(feed, lines, 42);
+    }
+
+    /**
+     * Drops the previous load's cars before the next one, so collecting them is not timed.
+     */
+    @Setup(Level.Iteration)
+    public void newInventory() {
+        inventory = null;
+        System.gc();
+        inventory = Dealership.newInventory();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFeed() throws IOException {
+        Files.deleteIfExists(feed);
+    }
+
+    /**
+     * @throws IllegalStateException if the loader reports a problem or loses cars
+     */
+    @Benchmark
+    public Object load() {
+        String filename = feed.toString();
+        boolean loaded = "parallel".equals(loader)
+                ? Dealership.loadCarsFromFileParallel(inventory, filename)
+                : Dealership.loadCarsFromFile(inventory, filename);
+        if (!loaded || Dealership.size(inventory) != lines) {
+            throw new IllegalStateException("Loaded " + Dealership.size(inventory) + " of " + lines + " cars");
+        }
+        return inventory;
+    }
+}
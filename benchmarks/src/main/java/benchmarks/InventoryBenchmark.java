@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the in-memory CarInventory operations on an inventory of {@code cars} cars.
+ * Adds, removals and purchases change the inventory, so they run as single shots of
+ * BATCH calls against an inventory refilled before every iteration; their score is the
+ * time for the whole batch, so divide by BATCH for the time per call. getCars does not
+ * change anything and is timed per call.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InventoryBenchmark {
+    /** Calls per single-shot iteration of the benchmarks that change the inventory. */
+    static final int BATCH = 10_000;
+
+    @Param({"10000", "100000"})
+    int cars;
+
+    private Object inventory;
+    private Object[] newCars;
+    private int nextRemove;
+    private int nextBuy;
+    private int nextAdd;
+
+    /**
+     * Fills a new inventory with the same seeded cars before every iteration.
+     */
+    @Setup(Level.Iteration)
+    public void fill() {
+        inventory = Dealership.newInventory();
+        FeedData data = new FeedData(42);
+        for (int i = 0; i < cars; i++) {
+            Dealership.addCar(inventory, data.nextCar());
+        }
+        newCars = new Object[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            newCars[i] = data.nextCar();
+        }
+        nextRemove = 0;
+        nextBuy = 0;
+        nextAdd = 0;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(batchSize = BATCH)
+    @Warmup(batchSize = BATCH)
+    public boolean addCar() {
+        return Dealership.addCar(inventory, newCars[nextAdd++]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(batchSize = BATCH)
+    @Warmup(batchSize = BATCH)
+    public boolean removeCar() {
+        return Dealership.removeCar(inventory, nextRemove++ * (cars / BATCH));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Measurement(batchSize = BATCH)
+    @Warmup(batchSize = BATCH)
+    public Optional<?> buyCar() {
+        return Dealership.buyCar(inventory, nextBuy++ * (cars / BATCH), 6, 500, "yes");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public List<?> getCars() {
+        return Dealership.getCars(inventory);
+    }
+}
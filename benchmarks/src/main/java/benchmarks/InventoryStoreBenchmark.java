@@ -0,0 +1,120 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the same workload against each InventoryStore so a deployment can compare the backends by
+ * their latency percentiles: single adds, lookups by id, price updates, a filtered count, a full
+ * scan in id order and a page sorted by price from the middle of the inventory. Each store is opened
+ * with the spec the application would use (mmap and sqlite in a temporary directory) and filled
+ * with the same {@code cars} seeded cars once per trial. Adds grow the store for the whole trial,
+ * which is large enough for that not to matter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InventoryStoreBenchmark {
+    @Param({"100000"})
+    int cars;
+
+    @Param({"memory", "columnar", "mmap", "sqlite"})
+    String store;
+
+    private Path dir;
+    private Object inventory;
+    private FeedData data;
+    private int[] ids;
+
+    /**
+     * Opens and fills the store once; filling it is not timed.
+     */
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        dir = Files.createTempDirectory("store-benchmark");
+        String spec = store;
+        if ("mmap".equals(store)) {
+            spec = "mmap:" + dir.resolve("cars.dat");
+        } else if ("sqlite".equals(store)) {
+            spec = "sqlite:" + dir.resolve("cars.db");
+        }
+        inventory = Dealership.openStore(spec);
+        data = new FeedData(42);
+        ids = new int[cars];
+        for (int i = 0; i < cars; i++) {
+            Object car = data.nextCar();
+            Dealership.storeAddCar(inventory, car);
+            ids[i] = Dealership.carId(car);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        Dealership.closeStore(inventory);
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addCar() {
+        return Dealership.storeAddCar(inventory, data.nextCar());
+    }
+
+    @Benchmark
+    public Optional<?> getCar() {
+        return Dealership.storeGetCar(inventory, ids[data.nextInt(cars)]);
+    }
+
+    @Benchmark
+    public boolean updatePrice() {
+        return Dealership.storeUpdateCar(inventory, ids[data.nextInt(cars)], 8000 + data.nextInt(40000), "Updated");
+    }
+
+    @Benchmark
+    public long countByMakeAndPrice() {
+        int low = 8000 + data.nextInt(30000);
+        return Dealership.storeCountCars(inventory, Dealership.query(data.nextMake(), low, low + 5000));
+    }
+
+    @Benchmark
+    public long scan() {
+        long[] scanned = new long[1];
+        Dealership.storeForEachCar(inventory, null, car -> {
+            scanned[0]++;
+            return true;
+        });
+        return scanned[0];
+    }
+
+    @Benchmark
+    public List<?> sortedPage() {
+        return Dealership.storeCarsSorted(inventory, null, Dealership.PRICE_COLUMN, false, cars / 2, 200,
+                Dealership.SUMMARY_COLUMNS);
+    }
+}
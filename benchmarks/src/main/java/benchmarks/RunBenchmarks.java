@@ -0,0 +1,36 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RunBenchmarks is the entry point of benchmarks.jar. It takes the usual JMH options and, unless
+ * they choose a result format, writes the results as JSON to jmh-result-&lt;version&gt;.json,
+ * so results from successive releases can be kept side by side and compared.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                    # everything
+ * java -jar benchmarks/target/benchmarks.jar FeedLoad -p lines=10000,100000
+ * java -jar benchmarks/target/benchmarks.jar -h                 # every JMH option
+ * </pre>
+ */
+public final class RunBenchmarks {
+    private RunBenchmarks() {
+    }
+
+    /**
+     * @param args JMH command line options and benchmark name patterns
+     * @throws Exception if JMH fails to run
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.addAll(0, List.of("-rf", "json"));
+            if (!options.contains("-rff")) {
+                String version = RunBenchmarks.class.getPackage().getImplementationVersion();
+                options.addAll(0, List.of("-rff", "jmh-result-" + (version == null ? "dev" : version) + ".json"));
+            }
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
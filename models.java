@@ -1,14 +1,35 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
 /**
  * The Car class represents a car object in the dealership system.
  * It stores information such as year, make, model, price, features, and status.
+ * The mutable fields are volatile so that concurrent inventories can read cars without locking,
+ * and the sold status supports an atomic compare-and-set for race-free purchases.
  */
 class Car {
+    /** Id value of a car that has not been added to an inventory yet. */
+    static final int NO_ID = -1;
+
+    private int id = NO_ID;
     private int year;
     private String make;
     private String model;
-    private boolean status; // false = not sold, true = sold
-    private float price;
-    private String features;
+    private volatile boolean status; // false = not sold, true = sold
+    private volatile float price;
+    private volatile String features;
+    private volatile CarDictionary.FeatureSet featureSet; // Tokenized features, rebuilt when they change
+
+    private static final VarHandle STATUS;
+
+    static {
+        try {
+            STATUS = MethodHandles.lookup().findVarHandle(Car.class, "status", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
     /**
      * Constructs a new Car object.
      *
@@ -26,6 +47,18 @@ class Car {
         this.features = features;
         this.status = false; // Default: not sold
     }
+    /**
+     * @return the stable inventory id of the car, or NO_ID if it has not been added to an inventory
+     */
+    public int getId() { return id; }
+
+    /**
+     * Assigns the stable inventory id. Called by the inventory when the car is added.
+     *
+     * @param id the id of the car
+     */
+    void setId(int id) { this.id = id; }
+
     /**
      * @return the manufacturing year of the car
      */
@@ -69,11 +102,52 @@ class Car {
      */
     public void setFeatures(String features) { this.features = features; }
 
+    /**
+     * Returns the car's features tokenized against the shared vocabulary.
+     * Cars loaded from a feed share the set built by the load; others tokenize on first use.
+     *
+     * @return the feature set of the current features
+     */
+    CarDictionary.FeatureSet getFeatureSet() {
+        String text = features;
+        CarDictionary.FeatureSet set = featureSet;
+        if (set == null || !Objects.equals(set.getText(), text)) {
+            set = CarDictionary.shared().featureSet(text);
+            featureSet = set;
+        }
+        return set;
+    }
+
+    /**
+     * Attaches an already tokenized feature set, as the feed reader does for every car it builds.
+     *
+     * @param featureSet the feature set of the car's current features
+     */
+    void setFeatureSet(CarDictionary.FeatureSet featureSet) { this.featureSet = featureSet; }
+
+    /**
+     * @param feature a feature word or phrase, e.g. "Sunroof"
+     * @return true if the features contain every word of the phrase, ignoring case and order
+     */
+    public boolean hasFeature(String feature) {
+        return getFeatureSet().matches(CarDictionary.shared().filter(feature));
+    }
+
     /**
      * Marks the car as sold.
      */
     public void markAsSold() { this.status = true; }
 
+    /**
+     * Atomically marks the car as sold if it is still available.
+     * When several threads race to buy the same car, exactly one of them wins.
+     *
+     * @return true if this call sold the car, false if it was already sold
+     */
+    public boolean markAsSoldIfAvailable() {
+        return STATUS.compareAndSet(this, false, true);
+    }
+
     /**
      * @return a formatted string representing the car's information
      */